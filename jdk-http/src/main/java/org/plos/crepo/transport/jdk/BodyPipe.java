@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.plos.crepo.transport.jdk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands bytes written on one thread to a reader on another, a bounded number of chunks at a time.
+ * <p>
+ * Unlike {@link java.io.PipedInputStream}, neither end is tied to a particular thread, since the JDK client reads a
+ * request body from whichever of its threads is free. A failure on the writing end is rethrown to the reader, and a
+ * reader that gives up releases a blocked writer.
+ */
+class BodyPipe {
+
+  private static final byte[] END = new byte[0];
+  private static final long POLL_MILLIS = 100;
+
+  private final BlockingQueue<byte[]> chunks;
+  private volatile Throwable failure;
+  private volatile boolean abandoned;
+
+  BodyPipe(int capacity) {
+    this.chunks = new ArrayBlockingQueue<>(capacity);
+  }
+
+  /**
+   * Mark the written body as complete, or as failed if {@code cause} is not null. Must be called exactly once, after
+   * the last write.
+   */
+  void finish(Throwable cause) throws InterruptedIOException {
+    failure = cause;
+    put(END);
+  }
+
+  private void put(byte[] chunk) throws InterruptedIOException {
+    try {
+      while (!abandoned && !chunks.offer(chunk, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+        // wait for the reader to catch up or give up
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+
+  final OutputStream sink = new OutputStream() {
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (abandoned) throw new IOException("Request body is no longer being read");
+      if (len > 0) {
+        put(Arrays.copyOfRange(b, off, off + len));
+      }
+    }
+  };
+
+  final InputStream source = new InputStream() {
+    private byte[] current;
+    private int position;
+
+    private boolean fill() throws IOException {
+      while (current != END && (current == null || position == current.length)) {
+        try {
+          current = chunks.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+        position = 0;
+      }
+      if (current == END) {
+        if (failure != null) throw new IOException("Could not write request body", failure);
+        return false;
+      }
+      return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+      return fill() ? (current[position++] & 0xff) : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) return 0;
+      if (!fill()) return -1;
+      int n = Math.min(len, current.length - position);
+      System.arraycopy(current, position, b, off, n);
+      position += n;
+      return n;
+    }
+
+    @Override
+    public void close() {
+      abandoned = true;
+      chunks.clear();
+    }
+  };
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.plos.crepo.transport.jdk;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.plos.crepo.transport.RepoRequest;
+import org.plos.crepo.transport.RepoRequestBody;
+import org.plos.crepo.transport.RepoResponse;
+import org.plos.crepo.transport.RepoTransport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Sends requests with the JDK's {@link HttpClient}, which multiplexes concurrent requests to the server over a single
+ * HTTP/2 connection where the server supports it, and falls back to HTTP/1.1 otherwise.
+ * <p>
+ * Requires Java 11.
+ */
+public class JdkHttpRepoTransport implements RepoTransport {
+
+  private static final int PIPE_CHUNKS = 16;
+
+  /**
+   * Headers that the JDK client sets itself and refuses to accept from the caller.
+   */
+  private static final Set<String> RESTRICTED_HEADERS = ImmutableSet.of(
+      "connection", "content-length", "expect", "host", "upgrade");
+
+  private final HttpClient client;
+  private final Duration requestTimeout;
+  private final ExecutorService bodyWriters;
+
+  /**
+   * Use a client that prefers HTTP/2.
+   *
+   * @param connectTimeout how long to wait for a connection to the server
+   * @param requestTimeout how long to wait for each response to begin, or {@code null} for no limit
+   */
+  public JdkHttpRepoTransport(Duration connectTimeout, Duration requestTimeout) {
+    this(HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_2)
+        .connectTimeout(connectTimeout)
+        .build(), requestTimeout);
+  }
+
+  /**
+   * @param client         the client with which to send requests
+   * @param requestTimeout how long to wait for each response to begin, or {@code null} for no limit
+   */
+  public JdkHttpRepoTransport(HttpClient client, Duration requestTimeout) {
+    this.client = Objects.requireNonNull(client);
+    this.requestTimeout = requestTimeout;
+    this.bodyWriters = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+        .setNameFormat("crepo-request-body-%d").setDaemon(true).build());
+  }
+
+  @Override
+  public RepoResponse execute(RepoRequest request) throws IOException {
+    HttpRequest.Builder builder = HttpRequest.newBuilder(request.getUri());
+    if (requestTimeout != null) {
+      builder.timeout(requestTimeout);
+    }
+    for (Map.Entry<String, String> header : request.getHeaders()) {
+      if (!RESTRICTED_HEADERS.contains(header.getKey().toLowerCase())) {
+        builder.header(header.getKey(), header.getValue());
+      }
+    }
+
+    Optional<RepoRequestBody> body = request.getBody();
+    if (body.isPresent()) {
+      String contentType = body.get().getContentType();
+      if (contentType != null) {
+        builder.setHeader("Content-Type", contentType);
+      }
+      builder.method(request.getMethod(), publish(body.get()));
+    } else {
+      builder.method(request.getMethod(), HttpRequest.BodyPublishers.noBody());
+    }
+
+    HttpResponse<InputStream> response;
+    try {
+      response = client.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while sending " + request);
+    }
+    return new JdkResponse(response);
+  }
+
+  /**
+   * Publish a body by writing it to a pipe on another thread. If writing fails, the failure is rethrown to the client
+   * reading from the pipe, so that a truncated body is never sent as if it were complete.
+   */
+  private HttpRequest.BodyPublisher publish(RepoRequestBody body) {
+    HttpRequest.BodyPublisher publisher = HttpRequest.BodyPublishers.ofInputStream(() -> {
+      BodyPipe pipe = new BodyPipe(PIPE_CHUNKS);
+      bodyWriters.execute(() -> {
+        Throwable failure = null;
+        try {
+          body.writeTo(pipe.sink);
+        } catch (IOException | RuntimeException e) {
+          failure = e;
+        }
+        try {
+          pipe.finish(failure);
+        } catch (InterruptedIOException e) {
+          // shutting down; the reader is abandoned along with the request
+        }
+      });
+      return pipe.source;
+    });
+    long length = body.getContentLength();
+    return (length > 0) ? HttpRequest.BodyPublishers.fromPublisher(publisher, length) : publisher;
+  }
+
+  @Override
+  public void close() {
+    bodyWriters.shutdownNow();
+  }
+
+  private static class JdkResponse implements RepoResponse {
+    private final HttpResponse<InputStream> response;
+
+    private JdkResponse(HttpResponse<InputStream> response) {
+      this.response = response;
+    }
+
+    @Override
+    public int getStatusCode() {
+      return response.statusCode();
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaders() {
+      return response.headers().map();
+    }
+
+    @Override
+    public InputStream getBody() {
+      return response.body();
+    }
+
+    @Override
+    public void close() throws IOException {
+      response.body().close();
+    }
+  }
+
+}
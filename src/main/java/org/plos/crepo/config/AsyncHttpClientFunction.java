@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.config;
+
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * The non-blocking counterpart of {@link HttpClientFunction}. Instead of returning an open response, it passes the
+ * response to a consumer as it arrives and completes a future with the consumer's result, so no thread waits on the
+ * request while it is in flight.
+ * <p>
+ * As with {@link HttpClientFunction}, the implementation doesn't provide any information about repo URIs. All such
+ * information would be provided in the {@code request} argument.
+ */
+public interface AsyncHttpClientFunction {
+
+  /**
+   * Send a request and consume its response.
+   * <p>
+   * The future may be completed on one of the client's I/O threads, so dependent stages that block must be run on
+   * another executor.
+   *
+   * @param request  a request to a URI
+   * @param consumer the consumer to which to pass the response as it arrives
+   * @return a future of the consumer's result, which is completed exceptionally if the request or the consumer fails.
+   * Cancelling it cancels the request.
+   */
+  <T> CompletableFuture<T> execute(HttpUriRequest request, HttpAsyncResponseConsumer<T> consumer);
+
+  /**
+   * @param client a client, which must already be started
+   */
+  public static AsyncHttpClientFunction from(HttpAsyncClient client) {
+    return new AsyncHttpClientFunction() {
+      @Override
+      public <T> CompletableFuture<T> execute(HttpUriRequest request, HttpAsyncResponseConsumer<T> consumer) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<T> pending = client.execute(HttpAsyncMethods.create(request), consumer, new FutureCallback<T>() {
+          @Override
+          public void completed(T value) {
+            result.complete(value);
+          }
+
+          @Override
+          public void failed(Exception e) {
+            result.completeExceptionally(e);
+          }
+
+          @Override
+          public void cancelled() {
+            result.cancel(false);
+          }
+        });
+        result.whenComplete((value, e) -> {
+          if (result.isCancelled()) {
+            pending.cancel(true);
+          }
+        });
+        return result;
+      }
+    };
+  }
+
+}
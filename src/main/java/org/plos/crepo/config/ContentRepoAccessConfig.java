@@ -24,6 +24,8 @@ package org.plos.crepo.config;
 
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.plos.crepo.json.GsonRepoJsonCodec;
+import org.plos.crepo.json.RepoJsonCodec;
 
 import java.io.IOException;
 import java.util.Objects;
@@ -32,10 +34,16 @@ public class ContentRepoAccessConfig {
 
   private final String repoServer;
   private final HttpClientFunction client;
+  private final RepoJsonCodec jsonCodec;
 
   public ContentRepoAccessConfig(String repoServer, HttpClientFunction client) {
+    this(repoServer, client, GsonRepoJsonCodec.getInstance());
+  }
+
+  public ContentRepoAccessConfig(String repoServer, HttpClientFunction client, RepoJsonCodec jsonCodec) {
     this.repoServer = Objects.requireNonNull(repoServer);
     this.client = Objects.requireNonNull(client);
+    this.jsonCodec = Objects.requireNonNull(jsonCodec);
   }
 
   /**
@@ -47,6 +55,13 @@ public class ContentRepoAccessConfig {
     return repoServer;
   }
 
+  /**
+   * @return the codec with which to read and write JSON
+   */
+  public RepoJsonCodec getJsonCodec() {
+    return jsonCodec;
+  }
+
   public CloseableHttpResponse open(HttpUriRequest request) throws IOException {
     return client.open(request);
   }
@@ -36,6 +36,9 @@ import java.io.IOException;
  * <p/>
  * The implementation of this interface doesn't provide any information about repo URIs. All such information would be
  * provided in the {@code request} argument.
+ * <p/>
+ * To send requests with something other than an Apache client, implement {@link
+ * org.plos.crepo.transport.RepoTransport} and wrap it in a {@link org.plos.crepo.transport.TransportClientFunction}.
  */
 @FunctionalInterface
 public interface HttpClientFunction {
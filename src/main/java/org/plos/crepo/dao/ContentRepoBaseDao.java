@@ -31,6 +31,7 @@ import org.plos.crepo.config.ContentRepoAccessConfig;
 import org.plos.crepo.exceptions.ContentRepoException;
 import org.plos.crepo.exceptions.ErrorType;
 import org.plos.crepo.exceptions.NotFoundException;
+import org.plos.crepo.json.RepoJsonCodec;
 import org.plos.crepo.util.HttpResponseUtil;
 import org.slf4j.Logger;
 
@@ -48,6 +49,10 @@ public abstract class ContentRepoBaseDao {
     return accessConfig.getRepoServer();
   }
 
+  protected RepoJsonCodec getJsonCodec() {
+    return accessConfig.getJsonCodec();
+  }
+
   protected CloseableHttpResponse executeRequest(HttpRequestBase request, ErrorType errorType) {
     CloseableHttpResponse response;
     try {
@@ -64,9 +69,9 @@ public abstract class ContentRepoBaseDao {
       final int statusCode = response.getStatusLine().getStatusCode();
 
       if( statusCode == HttpStatus.SC_NOT_FOUND) {
-        throw new NotFoundException(HttpResponseUtil.getErrorMessage(response));
+        throw new NotFoundException(HttpResponseUtil.getErrorMessage(response, getJsonCodec()));
       } else if ( statusCode != HttpStatus.SC_OK && statusCode != HttpStatus.SC_CREATED) {
-        final String cause = HttpResponseUtil.getErrorMessage(response);
+        final String cause = HttpResponseUtil.getErrorMessage(response, getJsonCodec());
 
         getLog().error("uri: " + request.getURI().toString() + " repoMessage: " + cause);
         throw new ContentRepoException.ContentRepoExceptionBuilder(errorType)
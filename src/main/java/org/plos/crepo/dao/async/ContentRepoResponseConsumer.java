@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.dao.async;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.ContentInputStream;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.apache.http.nio.util.SimpleInputBuffer;
+import org.apache.http.protocol.HttpContext;
+import org.plos.crepo.exceptions.ContentRepoException;
+import org.plos.crepo.exceptions.ErrorType;
+import org.plos.crepo.exceptions.NotFoundException;
+import org.plos.crepo.json.RepoJsonCodec;
+import org.plos.crepo.util.HttpResponseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Consumes a response from the content repo as it arrives. A successful response is passed on to the subclass; the
+ * body of an error response is collected and turned into the same exception that {@link
+ * org.plos.crepo.dao.ContentRepoBaseDao} would throw for it.
+ */
+public abstract class ContentRepoResponseConsumer<T> extends AbstractAsyncResponseConsumer<T> {
+
+  private static final Logger log = LoggerFactory.getLogger(ContentRepoResponseConsumer.class);
+
+  private static final int ERROR_BUFFER_SIZE = 1024;
+
+  private final HttpUriRequest request;
+  private final ErrorType errorType;
+  private final RepoJsonCodec jsonCodec;
+
+  private HttpResponse errorResponse;
+  private SimpleInputBuffer errorBody;
+
+  /**
+   * @param jsonCodec the codec with which to read the body of an error response
+   */
+  protected ContentRepoResponseConsumer(HttpUriRequest request, ErrorType errorType, RepoJsonCodec jsonCodec) {
+    this.request = request;
+    this.errorType = errorType;
+    this.jsonCodec = Objects.requireNonNull(jsonCodec);
+  }
+
+  /**
+   * Wrap a failure to send the request or receive its response, if it isn't already one of this library's exceptions.
+   */
+  public RuntimeException translate(Throwable e) {
+    if (e instanceof RuntimeException) {
+      return (RuntimeException) e;
+    }
+    log.error("Error handling the response, uri: " + request.getURI().toString() + " repoMessage: ", e);
+    return new ContentRepoException.ContentRepoExceptionBuilder(errorType)
+        .baseException(e instanceof Exception ? (Exception) e : new RuntimeException(e))
+        .url(request.getURI().toString())
+        .build();
+  }
+
+  @Override
+  protected final void onResponseReceived(HttpResponse response) throws IOException {
+    int statusCode = response.getStatusLine().getStatusCode();
+    if (statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_CREATED) {
+      onSuccess(response);
+    } else {
+      errorResponse = response;
+      errorBody = new SimpleInputBuffer(ERROR_BUFFER_SIZE, HeapByteBufferAllocator.INSTANCE);
+    }
+  }
+
+  @Override
+  protected final void onEntityEnclosed(HttpEntity entity, ContentType contentType) {
+  }
+
+  @Override
+  protected final void onContentReceived(ContentDecoder decoder, IOControl ioctrl) throws IOException {
+    if (errorBody != null) {
+      errorBody.consumeContent(decoder);
+    } else {
+      onContent(decoder, ioctrl);
+    }
+  }
+
+  @Override
+  protected final T buildResult(HttpContext context) throws Exception {
+    if (errorResponse != null) {
+      throw buildError();
+    }
+    return buildSuccessResult();
+  }
+
+  private RuntimeException buildError() {
+    errorResponse.setEntity(new InputStreamEntity(new ContentInputStream(errorBody)));
+    String message = HttpResponseUtil.getErrorMessage(errorResponse, jsonCodec);
+    if (errorResponse.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+      return new NotFoundException(message);
+    }
+    log.error("uri: " + request.getURI().toString() + " repoMessage: " + message);
+    return new ContentRepoException.ContentRepoExceptionBuilder(errorType)
+        .url(request.getURI().toString())
+        .repoMessage(message)
+        .build();
+  }
+
+  @Override
+  protected void releaseResources() {
+    errorBody = null;
+  }
+
+  /**
+   * Called when a successful response's head has arrived.
+   */
+  protected abstract void onSuccess(HttpResponse response) throws IOException;
+
+  /**
+   * Called each time part of a successful response's body arrives.
+   */
+  protected abstract void onContent(ContentDecoder decoder, IOControl ioctrl) throws IOException;
+
+  /**
+   * Called when all of a successful response has arrived.
+   */
+  protected abstract T buildSuccessResult() throws IOException;
+
+}
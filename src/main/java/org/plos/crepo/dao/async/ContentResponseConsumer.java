@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.dao.async;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.apache.http.nio.util.SharedInputBuffer;
+import org.plos.crepo.exceptions.ErrorType;
+import org.plos.crepo.json.RepoJsonCodec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Streams a response body to a reader through a bounded buffer. The stream is handed over as soon as the response's
+ * head arrives; while the reader falls behind and the buffer is full, the connection stops reading, so memory use
+ * stays constant regardless of the size of the body.
+ * <p>
+ * The consumer's own result is only the completion of the response. Call {@link #completed(Throwable)} when it
+ * completes, so that a reader still waiting for the stream or for more bytes is released.
+ */
+public class ContentResponseConsumer extends ContentRepoResponseConsumer<Void> {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final SharedInputBuffer buffer = new SharedInputBuffer(BUFFER_SIZE, HeapByteBufferAllocator.INSTANCE);
+  private final CompletableFuture<InputStream> stream = new CompletableFuture<>();
+  private final Executor executor;
+
+  // Guarded by this
+  private Runnable onClose;
+  private boolean streamClosed;
+
+  /**
+   * @param executor the executor on which to hand over the stream, so that the reader doesn't block an I/O thread
+   */
+  public ContentResponseConsumer(HttpUriRequest request, ErrorType errorType, RepoJsonCodec jsonCodec,
+                                 Executor executor) {
+    super(request, errorType, jsonCodec);
+    this.executor = executor;
+  }
+
+  /**
+   * @return a future of the response body, completed when the response's head has arrived
+   */
+  public CompletableFuture<InputStream> getStream() {
+    return stream;
+  }
+
+  /**
+   * Set what to do when the reader closes the stream, for example to cancel the rest of the response. The stream may be
+   * handed over, and even closed, as soon as the request is executed; if it has already been closed, {@code onClose}
+   * is run right away.
+   *
+   * @param onClose called once when the reader closes the stream
+   */
+  public void setOnClose(Runnable onClose) {
+    synchronized (this) {
+      if (!streamClosed) {
+        this.onClose = onClose;
+        return;
+      }
+    }
+    onClose.run();
+  }
+
+  private void closeStream() {
+    Runnable hook;
+    synchronized (this) {
+      if (streamClosed) return;
+      streamClosed = true;
+      hook = onClose;
+    }
+    buffer.shutdown();
+    if (hook != null) {
+      hook.run();
+    }
+  }
+
+  /**
+   * Release the reader once the response has completed.
+   *
+   * @param failure the reason the response failed, or {@code null} if it completed successfully
+   */
+  public void completed(Throwable failure) {
+    if (failure != null) {
+      buffer.shutdown();
+      stream.completeExceptionally(translate(failure));
+    }
+  }
+
+  @Override
+  protected void onSuccess(HttpResponse response) {
+    InputStream body = new BufferStream();
+    executor.execute(() -> stream.complete(body));
+  }
+
+  @Override
+  protected void onContent(ContentDecoder decoder, IOControl ioctrl) throws IOException {
+    buffer.consumeContent(decoder, ioctrl);
+  }
+
+  @Override
+  protected Void buildSuccessResult() {
+    return null;
+  }
+
+  private class BufferStream extends InputStream {
+    @Override
+    public int read() throws IOException {
+      return buffer.read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      return buffer.read(b, off, len);
+    }
+
+    @Override
+    public int available() {
+      return buffer.available();
+    }
+
+    @Override
+    public void close() {
+      closeStream();
+    }
+  }
+
+}
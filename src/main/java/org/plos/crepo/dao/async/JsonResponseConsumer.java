@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.dao.async;
+
+import com.google.common.base.Charsets;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.ContentInputStream;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.apache.http.nio.util.SimpleInputBuffer;
+import org.plos.crepo.exceptions.ErrorType;
+import org.plos.crepo.json.JsonDecoder;
+import org.plos.crepo.json.RepoJsonCodec;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Objects;
+
+/**
+ * Collects a JSON response body as it arrives and parses it once it is complete. The buffer is sized from the
+ * response's content length when the server sends one.
+ */
+public class JsonResponseConsumer<T> extends ContentRepoResponseConsumer<T> {
+
+  private static final int DEFAULT_BUFFER_SIZE = 4 * 1024;
+  private static final int MAXIMUM_INITIAL_BUFFER_SIZE = 1024 * 1024;
+
+  private final JsonDecoder<T> decoder;
+
+  private SimpleInputBuffer body;
+
+  public JsonResponseConsumer(HttpUriRequest request, ErrorType errorType, RepoJsonCodec jsonCodec,
+                              JsonDecoder<T> decoder) {
+    super(request, errorType, jsonCodec);
+    this.decoder = Objects.requireNonNull(decoder);
+  }
+
+  @Override
+  protected void onSuccess(HttpResponse response) {
+    HttpEntity entity = response.getEntity();
+    long length = (entity == null) ? -1 : entity.getContentLength();
+    int bufferSize = (length < 0) ? DEFAULT_BUFFER_SIZE : (int) Math.min(Math.max(length, 1), MAXIMUM_INITIAL_BUFFER_SIZE);
+    body = new SimpleInputBuffer(bufferSize, HeapByteBufferAllocator.INSTANCE);
+  }
+
+  @Override
+  protected void onContent(ContentDecoder decoder, IOControl ioctrl) throws IOException {
+    body.consumeContent(decoder);
+  }
+
+  @Override
+  protected T buildSuccessResult() throws IOException {
+    return decoder.decode(new InputStreamReader(new ContentInputStream(body), Charsets.UTF_8));
+  }
+
+  @Override
+  protected void releaseResources() {
+    super.releaseResources();
+    body = null;
+  }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.dao.collections.impl;
+
+import com.google.common.base.Charsets;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.plos.crepo.json.RepoJsonCodec;
+import org.plos.crepo.model.input.RepoCollectionEntity;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Objects;
+
+/**
+ * The JSON body of a collection write. The JSON is written straight to the connection as the request is sent, so a
+ * collection with many members is never held in memory as a whole document.
+ */
+class CollectionJsonEntity extends AbstractHttpEntity {
+
+  private final RepoJsonCodec codec;
+  private final RepoCollectionEntity collection;
+
+  CollectionJsonEntity(RepoJsonCodec codec, RepoCollectionEntity collection) {
+    this.codec = Objects.requireNonNull(codec);
+    this.collection = Objects.requireNonNull(collection);
+    setContentType(ContentType.APPLICATION_JSON.toString());
+  }
+
+  @Override
+  public boolean isRepeatable() {
+    return true;
+  }
+
+  @Override
+  public long getContentLength() {
+    return -1; // sent chunked
+  }
+
+  /**
+   * Buffers the whole body; used only by clients that read the entity instead of writing it.
+   */
+  @Override
+  public InputStream getContent() throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    writeTo(buffer);
+    return new ByteArrayInputStream(buffer.toByteArray());
+  }
+
+  @Override
+  public void writeTo(OutputStream outstream) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(outstream, Charsets.UTF_8));
+    codec.writeCollection(collection, writer);
+    writer.flush(); // the stream belongs to the caller, so don't close it
+  }
+
+  @Override
+  public boolean isStreaming() {
+    return false;
+  }
+
+}
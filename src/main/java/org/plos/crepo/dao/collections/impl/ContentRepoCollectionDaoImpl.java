@@ -22,17 +22,14 @@
 
 package org.plos.crepo.dao.collections.impl;
 
-import com.google.gson.Gson;
 import org.apache.http.HttpHeaders;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
 import org.plos.crepo.config.ContentRepoAccessConfig;
 import org.plos.crepo.dao.ContentRepoBaseDao;
 import org.plos.crepo.dao.collections.ContentRepoCollectionDao;
-import org.plos.crepo.exceptions.ContentRepoException;
 import org.plos.crepo.exceptions.ErrorType;
 import org.plos.crepo.model.CreationMethod;
 import org.plos.crepo.model.input.RepoCollectionInput;
@@ -42,7 +39,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.core.MediaType;
-import java.io.UnsupportedEncodingException;
 
 public class ContentRepoCollectionDaoImpl extends ContentRepoBaseDao implements ContentRepoCollectionDao {
 
@@ -134,21 +130,8 @@ public class ContentRepoCollectionDaoImpl extends ContentRepoBaseDao implements
     return executeRequest(request, ErrorType.ErrorFetchingCollections);
   }
 
-  private StringEntity getCollectionEntity(String bucketName, RepoCollectionInput repoCollectionInput, CreationMethod creationType) {
-    Gson gson = new Gson();
-    StringEntity entityString = null;
-    RepoCollectionEntity repoCollectionEntity = new RepoCollectionEntity(repoCollectionInput, bucketName, creationType.toString());
-    try {
-      entityString = new StringEntity(gson.toJson(repoCollectionEntity));
-    } catch (UnsupportedEncodingException e) {
-      log.error("Error generating the StringEntity to send in the POST for ---> bucketName: "
-          + bucketName + " key " + repoCollectionInput.getKey() + " creationType " + creationType, e);
-      throw new ContentRepoException.ContentRepoExceptionBuilder(ErrorType.ErrorCreatingCollection)
-          .key(repoCollectionInput.getKey())
-          .baseException(e)
-          .build();
-    }
-    return entityString;
+  private CollectionJsonEntity getCollectionEntity(String bucketName, RepoCollectionInput repoCollectionInput, CreationMethod creationType) {
+    return new CollectionJsonEntity(getJsonCodec(), new RepoCollectionEntity(repoCollectionInput, bucketName, creationType.toString()));
   }
 
 }
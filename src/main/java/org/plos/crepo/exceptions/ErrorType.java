@@ -32,6 +32,7 @@ public enum ErrorType {
   EmptyUuid(2, "Empty repo object or collection UUID"),
   EmptyTag(3, "Empty repo object or collection tag"),
   EmptyBucketKey(7, "Empty bucket key"),
+  RequestTimedOut(8, "Request did not complete before the deadline"),
 
   ErrorAccessingFile(100, "Error accessing file"),
   ErrorCreatingObject(101, "Error creating new object"),
@@ -45,6 +46,7 @@ public enum ErrorType {
   ErrorFetchingReProxyUrl(109, "Problem fetching reproxy URLs"),
   ErrorDeletingObject(110,"Error deleting object"),
   ErrorFetchingObject(111, "Error fetching object from content repo"),
+  ErrorVerifyingObject(112, "Object content does not match its checksum"),
 
 
   ErrorFetchingBucketMeta(200, "Error fetching buckets meta"),
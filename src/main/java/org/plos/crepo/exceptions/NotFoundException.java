@@ -30,4 +30,13 @@ public class NotFoundException extends RuntimeException {
   public NotFoundException(String message) {
     super(message);
   }
+
+  /**
+   * @param message            the detail message
+   * @param writableStackTrace false to skip filling in the stack trace, which makes the exception cheap to create when
+   *                           the absence is already known, such as when replaying a cached lookup
+   */
+  public NotFoundException(String message, boolean writableStackTrace) {
+    super(message, null, false, writableStackTrace);
+  }
 }
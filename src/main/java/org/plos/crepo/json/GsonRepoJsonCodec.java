@@ -0,0 +1,190 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.json;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.plos.crepo.model.identity.RepoId;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.input.RepoCollectionEntity;
+import org.plos.crepo.model.metadata.RepoMetadata;
+import org.plos.crepo.model.metadata.RepoMetadataAdapter;
+import org.plos.crepo.model.metadata.RepoMetadataFactory;
+import org.plos.crepo.util.JsonStreamUtil;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * A codec backed by Gson. The adapters for maps and lists are looked up once, when the codec is constructed, and
+ * metadata is streamed through {@link RepoMetadataAdapter}. One metadata adapter is kept per factory; there is a
+ * factory per kind of metadata and bucket, so the set stays small.
+ */
+public final class GsonRepoJsonCodec implements RepoJsonCodec {
+
+  private static final GsonRepoJsonCodec INSTANCE = new GsonRepoJsonCodec();
+
+  private final TypeAdapter<Map<String, Object>> mapAdapter;
+  private final TypeAdapter<List<Map<String, Object>>> mapListAdapter;
+  private final ConcurrentMap<RepoMetadataFactory<?>, RepoMetadataAdapter<?>> metadataAdapters =
+      new ConcurrentHashMap<>();
+
+  /**
+   * @return the shared instance, which is the library's default codec
+   */
+  public static GsonRepoJsonCodec getInstance() {
+    return INSTANCE;
+  }
+
+  public GsonRepoJsonCodec() {
+    this(new Gson());
+  }
+
+  public GsonRepoJsonCodec(Gson gson) {
+    this.mapAdapter = gson.getAdapter(new TypeToken<Map<String, Object>>() {
+    });
+    this.mapListAdapter = gson.getAdapter(new TypeToken<List<Map<String, Object>>>() {
+    });
+  }
+
+  @Override
+  public Map<String, Object> readMap(Reader reader) throws IOException {
+    return JsonStreamUtil.read(mapAdapter, reader);
+  }
+
+  @Override
+  public List<Map<String, Object>> readMapList(Reader reader) throws IOException {
+    return JsonStreamUtil.read(mapListAdapter, reader);
+  }
+
+  @Override
+  public Object readValue(Reader reader) throws IOException {
+    JsonReader in = new JsonReader(reader);
+    in.setLenient(true);
+    try {
+      return readUnmodifiable(in);
+    } catch (IllegalStateException | JsonParseException e) {
+      throw new IOException("Malformed JSON value", e);
+    }
+  }
+
+  private static Object readUnmodifiable(JsonReader in) throws IOException {
+    switch (in.peek()) {
+      case STRING:
+        return in.nextString();
+      case NUMBER:
+        return in.nextDouble();
+      case BOOLEAN:
+        return in.nextBoolean();
+      case NULL:
+        in.nextNull();
+        return null;
+      case BEGIN_ARRAY:
+        List<Object> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+          list.add(readUnmodifiable(in));
+        }
+        in.endArray();
+        return list.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(list);
+      case BEGIN_OBJECT:
+        Map<String, Object> map = new LinkedHashMap<>();
+        in.beginObject();
+        while (in.hasNext()) {
+          map.put(in.nextName(), readUnmodifiable(in));
+        }
+        in.endObject();
+        return map.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(map);
+      default:
+        throw new JsonParseException("Unexpected " + in.peek() + " at " + in);
+    }
+  }
+
+  @Override
+  public <M extends RepoMetadata> M readMetadata(RepoMetadataFactory<M> factory, Reader reader) throws IOException {
+    return JsonStreamUtil.read(getMetadataAdapter(factory), reader);
+  }
+
+  @Override
+  public <M extends RepoMetadata> void readMetadataArray(RepoMetadataFactory<M> factory, Reader reader,
+                                                         Consumer<? super M> consumer) throws IOException {
+    JsonStreamUtil.readArray(getMetadataAdapter(factory), reader, consumer);
+  }
+
+  @SuppressWarnings("unchecked") // the map only ever pairs a factory with an adapter built from it
+  private <M extends RepoMetadata> RepoMetadataAdapter<M> getMetadataAdapter(RepoMetadataFactory<M> factory) {
+    return (RepoMetadataAdapter<M>) metadataAdapters.computeIfAbsent(factory, RepoMetadataAdapter::new);
+  }
+
+  /**
+   * Writes the fields in the order that Gson's reflective adapter would.
+   */
+  @Override
+  public void writeCollection(RepoCollectionEntity collection, Writer writer) throws IOException {
+    JsonWriter out = new JsonWriter(writer);
+    out.beginObject();
+    writeIfPresent(out, "key", collection.getKey());
+    if (collection.getObjects() != null) {
+      out.name("objects").beginArray();
+      for (RepoVersion version : collection.getObjects()) {
+        RepoId id = version.getId();
+        out.beginObject();
+        out.name("id").beginObject()
+            .name("bucketName").value(id.getBucketName())
+            .name("key").value(id.getKey())
+            .endObject();
+        out.name("uuid").value(version.getUuid().toString());
+        out.endObject();
+      }
+      out.endArray();
+    }
+    writeIfPresent(out, "timestamp", collection.getTimestamp());
+    writeIfPresent(out, "tag", collection.getTag());
+    writeIfPresent(out, "userMetadata", collection.getUserMetadata());
+    writeIfPresent(out, "creationDateTime", collection.getCreationDateTime());
+    writeIfPresent(out, "bucketName", collection.getBucketName());
+    writeIfPresent(out, "create", collection.getCreate());
+    out.endObject();
+    out.flush();
+  }
+
+  private static void writeIfPresent(JsonWriter out, String name, String value) throws IOException {
+    if (value != null) {
+      out.name(name).value(value);
+    }
+  }
+
+}
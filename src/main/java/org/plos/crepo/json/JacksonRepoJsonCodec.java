@@ -0,0 +1,264 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.plos.crepo.model.identity.RepoId;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.input.RepoCollectionEntity;
+import org.plos.crepo.model.metadata.RepoMetadata;
+import org.plos.crepo.model.metadata.RepoMetadataFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A codec backed by the Jackson streaming API, which must be on the classpath to use this class. It decodes exactly
+ * what {@link GsonRepoJsonCodec} does, including the lenient syntax that Gson accepts.
+ */
+public final class JacksonRepoJsonCodec implements RepoJsonCodec {
+
+  /**
+   * How decoded lists and maps are built.
+   */
+  private static enum Form {
+    /**
+     * Mutable, keeping nulls, as from {@link #readMap}.
+     */
+    MUTABLE,
+
+    /**
+     * Unmodifiable, keeping nulls, as from {@link #readValue}.
+     */
+    UNMODIFIABLE,
+
+    /**
+     * Immutable, as in a metadata field. Null members are left out; null elements are an error.
+     */
+    METADATA
+  }
+
+  private final JsonFactory factory;
+
+  public JacksonRepoJsonCodec() {
+    this(new JsonFactory()
+        .enable(JsonParser.Feature.ALLOW_COMMENTS)
+        .enable(JsonParser.Feature.ALLOW_SINGLE_QUOTES)
+        .enable(JsonParser.Feature.ALLOW_UNQUOTED_FIELD_NAMES)
+        .enable(JsonParser.Feature.ALLOW_NON_NUMERIC_NUMBERS));
+  }
+
+  /**
+   * @param factory a configured factory, which is copied so that the codec can turn off auto-closing without touching
+   *                the caller's instance
+   */
+  public JacksonRepoJsonCodec(JsonFactory factory) {
+    this.factory = factory.copy()
+        .disable(JsonParser.Feature.AUTO_CLOSE_SOURCE)
+        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+  }
+
+  private JsonParser open(Reader reader) throws IOException {
+    JsonParser parser = factory.createParser(reader);
+    if (parser.nextToken() == null) {
+      throw new JsonParseException(parser, "No JSON value");
+    }
+    return parser;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Map<String, Object> readMap(Reader reader) throws IOException {
+    try (JsonParser parser = open(reader)) {
+      expect(parser, JsonToken.START_OBJECT);
+      return (Map<String, Object>) read(parser, Form.MUTABLE);
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public List<Map<String, Object>> readMapList(Reader reader) throws IOException {
+    try (JsonParser parser = open(reader)) {
+      expect(parser, JsonToken.START_ARRAY);
+      List<Map<String, Object>> list = new ArrayList<>();
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        list.add((parser.currentToken() == JsonToken.VALUE_NULL) ? null
+            : (Map<String, Object>) read(parser, Form.MUTABLE));
+      }
+      return list;
+    }
+  }
+
+  @Override
+  public Object readValue(Reader reader) throws IOException {
+    try (JsonParser parser = open(reader)) {
+      return read(parser, Form.UNMODIFIABLE);
+    }
+  }
+
+  private static void expect(JsonParser parser, JsonToken token) throws IOException {
+    if (parser.currentToken() != token) {
+      throw new JsonParseException(parser, "Expected " + token + "; found " + parser.currentToken());
+    }
+  }
+
+  /**
+   * Read the value at the parser's current token, leaving the parser on its last token.
+   */
+  private static Object read(JsonParser parser, Form form) throws IOException {
+    switch (parser.currentToken()) {
+      case VALUE_STRING:
+        return parser.getText();
+      case VALUE_NUMBER_INT:
+      case VALUE_NUMBER_FLOAT:
+        return parser.getDoubleValue();
+      case VALUE_TRUE:
+        return Boolean.TRUE;
+      case VALUE_FALSE:
+        return Boolean.FALSE;
+      case VALUE_NULL:
+        if (form == Form.METADATA) {
+          throw new JsonParseException(parser, "Null array element in repo metadata");
+        }
+        return null;
+      case START_ARRAY:
+        List<Object> list = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          list.add(read(parser, form));
+        }
+        return (form == Form.MUTABLE) ? list
+            : (form == Form.METADATA) ? ImmutableList.copyOf(list)
+            : list.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(list);
+      case START_OBJECT:
+        Map<String, Object> map = new LinkedHashMap<>();
+        String name;
+        while ((name = parser.nextFieldName()) != null) {
+          if (parser.nextToken() == JsonToken.VALUE_NULL && form == Form.METADATA) {
+            continue;
+          }
+          map.put(name, read(parser, form));
+        }
+        return (form == Form.MUTABLE) ? map
+            : (form == Form.METADATA) ? ImmutableMap.copyOf(map)
+            : map.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(map);
+      default:
+        throw new JsonParseException(parser, "Unexpected " + parser.currentToken());
+    }
+  }
+
+  private static void readFields(JsonParser parser, RepoMetadataFactory.Fields fields) throws IOException {
+    expect(parser, JsonToken.START_OBJECT);
+    String name;
+    while ((name = parser.nextFieldName()) != null) {
+      JsonToken token = parser.nextToken();
+      if (token == JsonToken.VALUE_NULL) {
+        continue;
+      }
+      if (token == JsonToken.START_ARRAY && fields.isObjectList(name)) {
+        fields.startObjects();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          readFields(parser, fields.addObject());
+        }
+      } else {
+        fields.put(name, read(parser, Form.METADATA));
+      }
+    }
+  }
+
+  private <M extends RepoMetadata> M readMetadata(RepoMetadataFactory<M> factory, JsonParser parser)
+      throws IOException {
+    if (parser.currentToken() == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    RepoMetadataFactory.Fields fields = factory.newFields(this);
+    readFields(parser, fields);
+    return factory.build(fields);
+  }
+
+  @Override
+  public <M extends RepoMetadata> M readMetadata(RepoMetadataFactory<M> factory, Reader reader) throws IOException {
+    try (JsonParser parser = open(reader)) {
+      return readMetadata(factory, parser);
+    }
+  }
+
+  @Override
+  public <M extends RepoMetadata> void readMetadataArray(RepoMetadataFactory<M> factory, Reader reader,
+                                                         Consumer<? super M> consumer) throws IOException {
+    try (JsonParser parser = open(reader)) {
+      expect(parser, JsonToken.START_ARRAY);
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        consumer.accept(readMetadata(factory, parser));
+      }
+    }
+  }
+
+  @Override
+  public void writeCollection(RepoCollectionEntity collection, Writer writer) throws IOException {
+    try (JsonGenerator out = factory.createGenerator(writer)) {
+      out.writeStartObject();
+      writeIfPresent(out, "key", collection.getKey());
+      if (collection.getObjects() != null) {
+        out.writeArrayFieldStart("objects");
+        for (RepoVersion version : collection.getObjects()) {
+          RepoId id = version.getId();
+          out.writeStartObject();
+          out.writeObjectFieldStart("id");
+          out.writeStringField("bucketName", id.getBucketName());
+          out.writeStringField("key", id.getKey());
+          out.writeEndObject();
+          out.writeStringField("uuid", version.getUuid().toString());
+          out.writeEndObject();
+        }
+        out.writeEndArray();
+      }
+      writeIfPresent(out, "timestamp", collection.getTimestamp());
+      writeIfPresent(out, "tag", collection.getTag());
+      writeIfPresent(out, "userMetadata", collection.getUserMetadata());
+      writeIfPresent(out, "creationDateTime", collection.getCreationDateTime());
+      writeIfPresent(out, "bucketName", collection.getBucketName());
+      writeIfPresent(out, "create", collection.getCreate());
+      out.writeEndObject();
+    }
+  }
+
+  private static void writeIfPresent(JsonGenerator out, String name, String value) throws IOException {
+    if (value != null) {
+      out.writeStringField(name, value);
+    }
+  }
+
+}
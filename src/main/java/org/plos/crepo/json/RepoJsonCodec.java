@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.json;
+
+import org.plos.crepo.model.input.RepoCollectionEntity;
+import org.plos.crepo.model.metadata.RepoMetadata;
+import org.plos.crepo.model.metadata.RepoMetadataFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads and writes every JSON document that the library exchanges with the content repo.
+ * <p>
+ * Implementations are thread-safe and do their setup once, when they are constructed, so a single instance should be
+ * shared by everything a service creates. The default is {@link GsonRepoJsonCodec#getInstance()}. Numbers are always
+ * decoded as {@code Double}s, as Gson decodes an {@code Object}. Malformed input is reported as an
+ * {@link IOException}. No method closes the reader or writer it is given.
+ */
+public interface RepoJsonCodec {
+
+  /**
+   * Decode a JSON object into a mutable map of strings, {@code Double}s, booleans, lists, maps and {@code null}s.
+   */
+  Map<String, Object> readMap(Reader reader) throws IOException;
+
+  /**
+   * Decode a JSON array of objects, each as by {@link #readMap}.
+   */
+  List<Map<String, Object>> readMapList(Reader reader) throws IOException;
+
+  /**
+   * Decode any JSON value into unmodifiable lists and maps, keeping {@code null}s. This is the form of {@link
+   * RepoMetadata#getJsonUserMetadata()}.
+   */
+  Object readValue(Reader reader) throws IOException;
+
+  /**
+   * Decode metadata through the factory. The metadata's user metadata is later decoded as by this codec's {@link
+   * #readValue}, through the codec given to {@link RepoMetadataFactory#newFields(RepoJsonCodec)}. Metadata built from a
+   * map, rather than through a codec, decodes its user metadata with the shared Gson codec.
+   */
+  <M extends RepoMetadata> M readMetadata(RepoMetadataFactory<M> factory, Reader reader) throws IOException;
+
+  /**
+   * Decode a JSON array of metadata, passing each element to the consumer as soon as it is read.
+   */
+  <M extends RepoMetadata> void readMetadataArray(RepoMetadataFactory<M> factory, Reader reader,
+                                                  Consumer<? super M> consumer) throws IOException;
+
+  /**
+   * Write the body of a collection create or version request. Absent fields are left out.
+   */
+  void writeCollection(RepoCollectionEntity collection, Writer writer) throws IOException;
+
+}
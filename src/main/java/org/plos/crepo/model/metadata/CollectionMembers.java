@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.model.metadata;
+
+import com.google.common.collect.ImmutableList;
+import org.plos.crepo.model.identity.RepoVersion;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The members of a collection, each turned into a {@link RepoObjectMetadata} only when it is first asked for.
+ * <p>
+ * Each source is either the {@link MetadataFields} decoded by {@link RepoMetadataAdapter} or a raw map.
+ */
+final class CollectionMembers {
+
+  private final String bucketName;
+  private final List<?> sources;
+  private final AtomicReferenceArray<RepoObjectMetadata> decoded;
+
+  private volatile ImmutableList<RepoObjectMetadata> all; // null until every member has been asked for at once
+
+  CollectionMembers(String bucketName, List<?> sources) {
+    this.bucketName = bucketName;
+    this.sources = (sources == null) ? ImmutableList.of() : sources;
+    this.decoded = new AtomicReferenceArray<>(this.sources.size());
+  }
+
+  int size() {
+    return sources.size();
+  }
+
+  @SuppressWarnings("unchecked")
+  RepoObjectMetadata get(int index) {
+    RepoObjectMetadata member = decoded.get(index);
+    if (member == null) {
+      Object source = sources.get(index);
+      member = (source instanceof MetadataFields)
+          ? new RepoObjectMetadata(bucketName, (MetadataFields) source)
+          : new RepoObjectMetadata(bucketName, (Map<String, Object>) source);
+      if (!decoded.compareAndSet(index, null, member)) {
+        member = decoded.get(index); // decoded concurrently; keep one instance
+      }
+    }
+    return member;
+  }
+
+  ImmutableList<RepoObjectMetadata> getAll() {
+    ImmutableList<RepoObjectMetadata> members = all;
+    if (members == null) {
+      ImmutableList.Builder<RepoObjectMetadata> builder = ImmutableList.builder();
+      for (int index = 0; index < sources.size(); index++) {
+        builder.add(get(index));
+      }
+      all = members = builder.build();
+    }
+    return members;
+  }
+
+  /**
+   * Identify a member without building its metadata, if its source allows.
+   */
+  RepoVersion getVersion(int index) {
+    RepoObjectMetadata member = decoded.get(index);
+    if (member != null) return member.getVersion();
+    Object source = sources.get(index);
+    if (source instanceof MetadataFields) {
+      MetadataFields fields = (MetadataFields) source;
+      if (fields.key != null && fields.uuid != null) {
+        return RepoVersion.create(bucketName, fields.key, fields.uuid);
+      }
+    } else if (source instanceof Map) {
+      Map<?, ?> raw = (Map<?, ?>) source;
+      return RepoVersion.create(bucketName, (String) raw.get("key"), (String) raw.get("uuid"));
+    }
+    return get(index).getVersion();
+  }
+
+  List<RepoVersion> getVersions() {
+    return new AbstractList<RepoVersion>() {
+      @Override
+      public RepoVersion get(int index) {
+        return getVersion(index);
+      }
+
+      @Override
+      public int size() {
+        return sources.size();
+      }
+    };
+  }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.model.metadata;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.plos.crepo.json.GsonRepoJsonCodec;
+import org.plos.crepo.json.RepoJsonCodec;
+import org.plos.crepo.model.Status;
+
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The fields of a repo entity, collected while its JSON is decoded and then copied into a {@link RepoMetadata}.
+ * <p>
+ * A field is stored in its typed form only if it has the expected JSON type and can be turned back into the same raw
+ * value for {@link RepoMetadata#getMapView}. Anything else, including fields this library does not know about, is kept
+ * in its raw form among the extra fields, from which the getters fall back to reading it as they always have.
+ */
+final class MetadataFields {
+
+  /**
+   * Which kind of entity is being decoded, and so which fields are expected.
+   */
+  enum Kind {
+    OBJECT, COLLECTION, COLLECTION_LIST
+  }
+
+  static final int ABSENT = -1;
+
+  final Kind kind;
+
+  String key;
+  UUID uuid;
+  int versionNumber = ABSENT;
+  String tag;
+  Status status;
+  String timestampText;
+  Timestamp timestamp;
+  String creationDateText;
+  Timestamp creationDate;
+  String userMetadata;
+  RepoJsonCodec userMetadataCodec = GsonRepoJsonCodec.getInstance(); // the codec that decoded the entity, if any
+
+  // Objects only
+  long size = ABSENT;
+  String checksum;
+  String contentType;
+  String downloadName;
+  ImmutableList<String> reproxyUrls;
+
+  // Collection lists only
+  ImmutableList<MetadataFields> objects;
+
+  private Map<String, Object> extraFields; // created when the first extra field is found
+
+  MetadataFields(Kind kind) {
+    this.kind = kind;
+  }
+
+  ImmutableMap<String, Object> getExtraFields() {
+    return (extraFields == null) ? ImmutableMap.of() : ImmutableMap.copyOf(extraFields);
+  }
+
+  /**
+   * Store a field, in its typed form if possible.
+   *
+   * @param name  the field's name
+   * @param value the field's value as a string, {@code Double}, boolean, list or map, as Gson would parse it
+   */
+  void put(String name, Object value) {
+    if (!putTyped(name, value)) {
+      if (extraFields == null) {
+        extraFields = new LinkedHashMap<>();
+      }
+      extraFields.put(name, value);
+    }
+  }
+
+  private boolean putTyped(String name, Object value) {
+    if (value instanceof List) {
+      if (kind != Kind.OBJECT || !name.equals("reproxyURL")) return false;
+      List<?> list = (List<?>) value;
+      if (!list.stream().allMatch(String.class::isInstance)) return false;
+      @SuppressWarnings("unchecked") // checked above
+          List<String> urls = (List<String>) list;
+      reproxyUrls = ImmutableList.copyOf(urls);
+      return true;
+    }
+    if (value instanceof String) {
+      return putString(name, (String) value);
+    }
+    if (value instanceof Number) {
+      double number = ((Number) value).doubleValue();
+      long integral = (long) number;
+      if (integral != number || integral < 0) return false;
+      if (name.equals("versionNumber") && integral <= Integer.MAX_VALUE) {
+        versionNumber = (int) integral;
+        return true;
+      }
+      if (kind == Kind.OBJECT && name.equals("size")) {
+        size = integral;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean putString(String name, String value) {
+    switch (name) {
+      case "key":
+        key = value;
+        return true;
+      case "uuid":
+        UUID parsed = parseUuid(value);
+        if (parsed == null) return false;
+        uuid = parsed;
+        return true;
+      case "tag":
+        tag = value;
+        return true;
+      case "status":
+        try {
+          status = Status.valueOf(value);
+          return true;
+        } catch (IllegalArgumentException e) {
+          return false;
+        }
+      case "timestamp":
+        timestamp = parseTimestamp(value);
+        if (timestamp == null) return false;
+        timestampText = value;
+        return true;
+      case "creationDate":
+        creationDate = parseTimestamp(value);
+        if (creationDate == null) return false;
+        creationDateText = value;
+        return true;
+      case "userMetadata":
+        userMetadata = value;
+        return true;
+    }
+    if (kind != Kind.OBJECT) return false;
+    switch (name) {
+      case "checksum":
+        checksum = value;
+        return true;
+      case "contentType":
+        contentType = value;
+        return true;
+      case "downloadName":
+        downloadName = value;
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static UUID parseUuid(String value) {
+    try {
+      UUID uuid = UUID.fromString(value);
+      return uuid.toString().equals(value) ? uuid : null; // must produce the same text for the map view
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private static Timestamp parseTimestamp(String value) {
+    try {
+      return Timestamp.valueOf(value);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Collect the typed fields from metadata that has already been parsed into a map. The extra fields are left empty,
+   * since the map itself serves as the raw form.
+   */
+  static MetadataFields fromMap(Kind kind, Map<String, Object> raw) {
+    MetadataFields fields = new MetadataFields(kind);
+    for (Map.Entry<String, Object> entry : raw.entrySet()) {
+      if (entry.getValue() != null) {
+        fields.putTyped(entry.getKey(), entry.getValue());
+      }
+    }
+    return fields;
+  }
+
+}
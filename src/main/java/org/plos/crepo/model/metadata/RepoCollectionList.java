@@ -23,34 +23,79 @@
 package org.plos.crepo.model.metadata;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.plos.crepo.model.identity.RepoVersion;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Represents output to the client, describing a collection.
+ * <p>
+ * The metadata of the collection's members is built only when it is first asked for, so that checking the version or
+ * tag of a large collection does not pay for all of its members.
  */
 public class RepoCollectionList extends RepoCollectionMetadata {
 
-  private final ImmutableList<RepoObjectMetadata> objects;
+  private final CollectionMembers objects;
+  private final boolean objectsDecoded; // whether the objects must be put back into the map view
 
   public RepoCollectionList(String bucketName, Map<String, Object> raw) {
-    super(bucketName, raw);
-    objects = parseObjects(bucketName, raw);
+    super(bucketName, raw, MetadataFields.fromMap(MetadataFields.Kind.COLLECTION_LIST, raw));
+    objects = new CollectionMembers(bucketName, (List<?>) getRawField("objects"));
+    objectsDecoded = false;
   }
 
-  private static ImmutableList<RepoObjectMetadata> parseObjects(String bucketName, Map<String, Object> raw) {
-    List<Map<String, Object>> rawObjects = (List<Map<String, Object>>) raw.get("objects");
-    List<RepoObjectMetadata> builtObjects = new ArrayList<>(rawObjects.size());
-    for (Map<String, Object> rawObject : rawObjects) {
-      builtObjects.add(new RepoObjectMetadata(bucketName, rawObject));
+  RepoCollectionList(String bucketName, MetadataFields fields) {
+    super(bucketName, fields);
+    objects = new CollectionMembers(bucketName, fields.objects);
+    objectsDecoded = (fields.objects != null);
+  }
+
+  @Override
+  void putTypedFields(ImmutableMap.Builder<String, Object> builder) {
+    if (objectsDecoded) {
+      ImmutableList.Builder<Object> objectMaps = ImmutableList.builder();
+      for (int index = 0; index < objects.size(); index++) {
+        objectMaps.add(objects.get(index).getMapView());
+      }
+      builder.put("objects", objectMaps.build());
     }
-    return ImmutableList.copyOf(builtObjects);
   }
 
+  @Override
+  boolean typedFieldsEqual(RepoMetadata o) {
+    RepoCollectionList that = (RepoCollectionList) o;
+    return super.typedFieldsEqual(that)
+        && objectsDecoded == that.objectsDecoded
+        && (!objectsDecoded || objects.getAll().equals(that.objects.getAll()));
+  }
+
+  /**
+   * @return the metadata of every member, which is built for all members not yet asked for
+   */
   public ImmutableList<RepoObjectMetadata> getObjects() {
-    return objects;
+    return objects.getAll();
+  }
+
+  public int getObjectCount() {
+    return objects.size();
+  }
+
+  /**
+   * @param index the member's position in the collection
+   * @return the metadata of one member, which is built for it alone if not yet asked for
+   * @throws IndexOutOfBoundsException if there is no member at {@code index}
+   */
+  public RepoObjectMetadata getObject(int index) {
+    return objects.get(index);
+  }
+
+  /**
+   * @return a view of the versions of the members, in order, which does not build their metadata
+   */
+  public List<RepoVersion> getObjectVersions() {
+    return objects.getVersions();
   }
 
 }
@@ -30,7 +30,15 @@ import java.util.Map;
 public class RepoCollectionMetadata extends RepoMetadata {
 
   public RepoCollectionMetadata(String bucketName, Map<String, Object> raw) {
-    super(bucketName, raw);
+    super(bucketName, raw, MetadataFields.fromMap(MetadataFields.Kind.COLLECTION, raw));
+  }
+
+  RepoCollectionMetadata(String bucketName, Map<String, Object> raw, MetadataFields fields) {
+    super(bucketName, raw, fields);
+  }
+
+  RepoCollectionMetadata(String bucketName, MetadataFields fields) {
+    super(bucketName, fields);
   }
 
 }
@@ -26,47 +26,74 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Maps;
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonPrimitive;
-import com.google.gson.JsonSyntaxException;
+import org.plos.crepo.json.RepoJsonCodec;
 import org.plos.crepo.model.Status;
 import org.plos.crepo.model.identity.RepoVersion;
 import org.plos.crepo.model.identity.RepoVersionNumber;
 import org.plos.crepo.model.identity.RepoVersionTag;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.sql.Timestamp;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
+import java.util.UUID;
 
 /**
  * Represents metadata about a repo entity, to output to the client.
  */
 public abstract class RepoMetadata {
   private final String bucketName;
-  protected final ImmutableMap<String, Object> raw;
+
+  private final String key;
+  private final UUID uuid;
+  private final int versionNumber;
+  private final String tag;
+  private final Status status;
+  private final String timestampText;
+  private final Timestamp timestamp;
+  private final String creationDateText;
+  private final Timestamp creationDate;
+  private final String userMetadata;
+  private final RepoJsonCodec userMetadataCodec;
+
+  // Fields with no typed representation above, in raw form
+  private final ImmutableMap<String, Object> extraFields;
+
+  // Given if this was built from a map; otherwise built on demand. Null means uninitialized.
+  private volatile ImmutableMap<String, Object> mapView;
+
+  // Whether the map view was given, and so is the backing representation of the fields with no typed value
+  private final boolean builtFromMap;
 
   @SuppressWarnings("unchecked")
     // recursiveImmutableCopy guarantees type safety
-  RepoMetadata(String bucketName, Map<String, Object> raw) {
-    this.bucketName = Objects.requireNonNull(bucketName);
-    this.raw = (ImmutableMap<String, Object>) recursiveImmutableCopy(raw);
+  RepoMetadata(String bucketName, Map<String, Object> raw, MetadataFields fields) {
+    this(bucketName, fields, (ImmutableMap<String, Object>) recursiveImmutableCopy(raw));
   }
 
-  private static ImmutableMap<String, Object> defensiveCopy(Map<String, Object> raw) {
-    ImmutableMap.Builder<String, Object> builder = ImmutableMap.builder();
-    for (Map.Entry<String, Object> entry : raw.entrySet()) {
-      builder.put(entry.getKey(), recursiveImmutableCopy(entry.getValue()));
-    }
-    return builder.build();
+  RepoMetadata(String bucketName, MetadataFields fields) {
+    this(bucketName, fields, null);
+  }
+
+  private RepoMetadata(String bucketName, MetadataFields fields, ImmutableMap<String, Object> mapView) {
+    this.bucketName = Objects.requireNonNull(bucketName);
+    this.key = fields.key;
+    this.uuid = fields.uuid;
+    this.versionNumber = fields.versionNumber;
+    this.tag = fields.tag;
+    this.status = fields.status;
+    this.timestampText = fields.timestampText;
+    this.timestamp = fields.timestamp;
+    this.creationDateText = fields.creationDateText;
+    this.creationDate = fields.creationDate;
+    this.userMetadata = fields.userMetadata;
+    this.userMetadataCodec = fields.userMetadataCodec;
+    this.extraFields = fields.getExtraFields();
+    this.mapView = mapView;
+    this.builtFromMap = (mapView != null);
   }
 
   /**
@@ -97,42 +124,84 @@ public abstract class RepoMetadata {
     return obj;
   }
 
+  /**
+   * @return the metadata in raw form, as parsed from JSON; if this was decoded by {@link RepoMetadataAdapter}, the map
+   * is built on the first call
+   */
   public ImmutableMap<String, Object> getMapView() {
-    return raw;
+    ImmutableMap<String, Object> view = mapView;
+    if (view == null) {
+      ImmutableMap.Builder<String, Object> builder = ImmutableMap.builder();
+      putIfPresent(builder, "key", key);
+      putIfPresent(builder, "uuid", (uuid == null) ? null : uuid.toString());
+      putIfPresent(builder, "versionNumber", (versionNumber == MetadataFields.ABSENT) ? null : (double) versionNumber);
+      putIfPresent(builder, "tag", tag);
+      putIfPresent(builder, "status", (status == null) ? null : status.name());
+      putIfPresent(builder, "timestamp", timestampText);
+      putIfPresent(builder, "creationDate", creationDateText);
+      putIfPresent(builder, "userMetadata", userMetadata);
+      putTypedFields(builder);
+      mapView = view = builder.putAll(extraFields).build();
+    }
+    return view;
+  }
+
+  /**
+   * Add the raw forms of a subclass's typed fields to the map view.
+   */
+  void putTypedFields(ImmutableMap.Builder<String, Object> builder) {
+  }
+
+  static void putIfPresent(ImmutableMap.Builder<String, Object> builder, String name, Object value) {
+    if (value != null) {
+      builder.put(name, value);
+    }
+  }
+
+  /**
+   * Look up a field that has no typed value, in the form in which it was parsed.
+   */
+  Object getRawField(String name) {
+    ImmutableMap<String, Object> view = mapView;
+    return (view != null) ? view.get(name) : extraFields.get(name);
+  }
+
+  private String getKey() {
+    return (key != null) ? key : (String) getRawField("key");
   }
 
   public RepoVersion getVersion() {
-    String key = (String) raw.get("key");
-    String uuid = (String) raw.get("uuid");
-    return RepoVersion.create(bucketName, key, uuid);
+    return (uuid != null)
+        ? RepoVersion.create(bucketName, getKey(), uuid)
+        : RepoVersion.create(bucketName, getKey(), (String) getRawField("uuid"));
   }
 
   public RepoVersionNumber getVersionNumber() {
-    String key = (String) raw.get("key");
-    int versionNumber = ((Number) raw.get("versionNumber")).intValue();
-    return RepoVersionNumber.create(bucketName, key, versionNumber);
+    int number = (versionNumber != MetadataFields.ABSENT) ? versionNumber
+        : ((Number) getRawField("versionNumber")).intValue();
+    return RepoVersionNumber.create(bucketName, getKey(), number);
   }
 
   public Optional<RepoVersionTag> getTag() {
-    String key = (String) raw.get("key");
-    return Optional.ofNullable((String) raw.get("tag"))
+    String key = getKey();
+    return Optional.ofNullable((tag != null) ? tag : (String) getRawField("tag"))
         .map((String tag) -> RepoVersionTag.create(bucketName, key, tag));
   }
 
   public Timestamp getTimestamp() {
-    return Timestamp.valueOf((String) raw.get("timestamp"));
+    return (timestamp != null) ? timestamp : Timestamp.valueOf((String) getRawField("timestamp"));
   }
 
   public Timestamp getCreationDate() {
-    return Timestamp.valueOf((String) raw.get("creationDate"));
+    return (creationDate != null) ? creationDate : Timestamp.valueOf((String) getRawField("creationDate"));
   }
 
   public Status getStatus() {
-    return Status.valueOf((String) raw.get("status"));
+    return (status != null) ? status : Status.valueOf((String) getRawField("status"));
   }
 
   public Optional<String> getRawUserMetadata() {
-    return Optional.ofNullable((String) raw.get("userMetadata"));
+    return Optional.ofNullable((userMetadata != null) ? userMetadata : (String) getRawField("userMetadata"));
   }
 
   // Store to avoid redundant parsing. Null means uninitialized; absent means this has no userMetadata.
@@ -143,84 +212,18 @@ public abstract class RepoMetadata {
     Optional<String> raw = getRawUserMetadata();
     if (!raw.isPresent()) return Optional.empty();
 
-    final Gson gson = new Gson();
-    JsonElement parsed;
+    Object converted;
     try {
-      parsed = gson.fromJson(raw.get(), JsonElement.class);
-    } catch (JsonSyntaxException e) {
+      converted = userMetadataCodec.readValue(new StringReader(raw.get()));
+    } catch (IOException e) {
       return Optional.empty(); // TODO: Exception more appropriate instead?
     }
 
-    Object converted = convertJsonToImmutable(parsed);
     return jsonUserMetadata = Optional.ofNullable(converted);
   }
 
-  @VisibleForTesting
-  static Object convertJsonToImmutable(JsonElement element) {
-    if (element.isJsonNull()) {
-      return null;
-    }
-    if (element.isJsonPrimitive()) {
-      JsonPrimitive primitive = element.getAsJsonPrimitive();
-      if (primitive.isString()) return primitive.getAsString();
-      if (primitive.isNumber()) return asNumber(primitive);
-      if (primitive.isBoolean()) return primitive.getAsBoolean();
-      throw new RuntimeException("JsonPrimitive is not one of the expected primitive types");
-    }
-    if (element.isJsonArray()) {
-      JsonArray array = element.getAsJsonArray();
-      if (array.size() == 0) return Collections.emptyList();
-      List<Object> convertedList = new ArrayList<>(array.size());
-      for (JsonElement arrayElement : array) {
-        Object convertedElement = convertJsonToImmutable(arrayElement);
-        convertedList.add(convertedElement);
-      }
-      return Collections.unmodifiableList(convertedList);
-    }
-    if (element.isJsonObject()) {
-      Set<Map.Entry<String, JsonElement>> entries = element.getAsJsonObject().entrySet();
-      if (entries.size() == 0) return Collections.emptyMap();
-      Map<String, Object> convertedMap = Maps.newHashMapWithExpectedSize(entries.size());
-      for (Map.Entry<String, JsonElement> entry : entries) {
-        String key = Preconditions.checkNotNull(entry.getKey());
-        Object value = convertJsonToImmutable(entry.getValue());
-        convertedMap.put(key, value);
-      }
-      return Collections.unmodifiableMap(convertedMap);
-    }
-    throw new RuntimeException("JsonElement is not one of the expected subtypes");
-  }
-
-  /**
-   * Special case for parsing numbers from JSON.
-   * <p/>
-   * This is used instead of {@link JsonPrimitive#getAsNumber}, which may return a {@link
-   * com.google.gson.internal.LazilyParsedNumber}. The problem with LazilyParsedNumber is that it doesn't belong to one
-   * of the familiar Number subtypes (e.g., Integer, Double, Long), so its {@link Object#equals} and {@link
-   * Object#hashCode} don't behave intuitively.
-   * <p/>
-   * Our imperfect solution is to use {@link Number#doubleValue()}, to be consistent with how Gson produces numbers
-   * nested in arrays and objects. That is:
-   * <pre>
-   *   new Gson().fromJson("[0]", List.class).get(0).getClass() // is Double
-   * </pre>
-   * Compare to:
-   * <pre>
-   *   new Gson().fromJson("0", Number.class).getClass() // is LazilyParsedNumber
-   * </pre>
-   * This ensures that numbers parsed from JSON can be compared consistently with {@link Object#equals}, whether they
-   * were formatted as integers or decimals. The client should treat such objects as abstract Numbers and, if they
-   * require a particular subtype (such as Integer), call the appropriate method (such as {@link Number#intValue}).
-   *
-   * @param jsonPrimitive a primitive JSON number
-   * @return a Java-native Number object of equivalent value
-   */
-  private static Number asNumber(JsonPrimitive jsonPrimitive) {
-    return jsonPrimitive.getAsNumber().doubleValue();
-  }
-
   public Map<String, Object> inlineJsonUserMetadata() {
-    Map<String, Object> thisMetadata = new LinkedHashMap<>(raw);
+    Map<String, Object> thisMetadata = new LinkedHashMap<>(getMapView());
     Optional<Object> userMetadata = getJsonUserMetadata();
     if (userMetadata.isPresent()) {
       thisMetadata.put("userMetadata", userMetadata.get());
@@ -230,20 +233,54 @@ public abstract class RepoMetadata {
     return thisMetadata;
   }
 
+  @VisibleForTesting
+  boolean isMapViewBuilt() {
+    return mapView != null;
+  }
+
+  /**
+   * Compare the typed fields, including a subclass's, with those of another instance of the same class.
+   */
+  boolean typedFieldsEqual(RepoMetadata that) {
+    return versionNumber == that.versionNumber
+        && Objects.equals(key, that.key)
+        && Objects.equals(uuid, that.uuid)
+        && Objects.equals(tag, that.tag)
+        && status == that.status
+        && Objects.equals(timestampText, that.timestampText)
+        && Objects.equals(creationDateText, that.creationDateText)
+        && Objects.equals(userMetadata, that.userMetadata);
+  }
+
+  int typedFieldsHashCode() {
+    return Objects.hash(key, uuid, versionNumber, tag, status, timestampText, creationDateText, userMetadata);
+  }
+
+  /**
+   * Two instances are equal if their map views would be equal. Metadata decoded by {@link RepoMetadataAdapter} is
+   * compared field by field, so that comparing it doesn't build its map view.
+   */
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
     if (o == null || getClass() != o.getClass()) return false;
-    return raw.equals(((RepoMetadata) o).raw);
+    RepoMetadata that = (RepoMetadata) o;
+    if (builtFromMap || that.builtFromMap) {
+      return getMapView().equals(that.getMapView());
+    }
+    return typedFieldsEqual(that) && extraFields.equals(that.extraFields);
   }
 
+  /**
+   * Hashes only the typed fields, which are parsed the same way whether or not this was built from a map.
+   */
   @Override
   public int hashCode() {
-    return raw.hashCode();
+    return typedFieldsHashCode();
   }
 
   @Override
   public String toString() {
-    return getClass().getSimpleName() + raw;
+    return getClass().getSimpleName() + getMapView();
   }
 }
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.model.metadata;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Decodes repo metadata straight from JSON into its typed fields, without first parsing it into a map. The map view of
+ * metadata decoded this way is built only if it is asked for.
+ * <p>
+ * Members whose value is {@code null} are treated as absent.
+ *
+ * @param <M> the type of metadata
+ */
+public class RepoMetadataAdapter<M extends RepoMetadata> extends TypeAdapter<M> {
+
+  private final RepoMetadataFactory<M> factory;
+
+  public RepoMetadataAdapter(RepoMetadataFactory<M> factory) {
+    this.factory = Objects.requireNonNull(factory);
+  }
+
+  public static RepoMetadataAdapter<RepoObjectMetadata> forObjects(String bucketName) {
+    return new RepoMetadataAdapter<>(RepoMetadataFactory.forObjects(bucketName));
+  }
+
+  public static RepoMetadataAdapter<RepoCollectionMetadata> forCollections(String bucketName) {
+    return new RepoMetadataAdapter<>(RepoMetadataFactory.forCollections(bucketName));
+  }
+
+  public static RepoMetadataAdapter<RepoCollectionList> forCollectionLists(String bucketName) {
+    return new RepoMetadataAdapter<>(RepoMetadataFactory.forCollectionLists(bucketName));
+  }
+
+  @Override
+  public M read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    RepoMetadataFactory.Fields fields = factory.newFields();
+    readFields(in, fields);
+    return factory.build(fields);
+  }
+
+  private static void readFields(JsonReader in, RepoMetadataFactory.Fields fields) throws IOException {
+    in.beginObject();
+    while (in.hasNext()) {
+      String name = in.nextName();
+      JsonToken token = in.peek();
+      if (token == JsonToken.NULL) {
+        in.nextNull();
+      } else if (token == JsonToken.BEGIN_ARRAY && fields.isObjectList(name)) {
+        fields.startObjects();
+        in.beginArray();
+        while (in.hasNext()) {
+          readFields(in, fields.addObject());
+        }
+        in.endArray();
+      } else {
+        fields.put(name, readValue(in));
+      }
+    }
+    in.endObject();
+  }
+
+  /**
+   * Read any JSON value into the immutable form of what Gson would parse for an {@code Object}.
+   */
+  private static Object readValue(JsonReader in) throws IOException {
+    switch (in.peek()) {
+      case STRING:
+        return in.nextString();
+      case NUMBER:
+        return in.nextDouble();
+      case BOOLEAN:
+        return in.nextBoolean();
+      case BEGIN_ARRAY:
+        ImmutableList.Builder<Object> list = ImmutableList.builder();
+        in.beginArray();
+        while (in.hasNext()) {
+          if (in.peek() == JsonToken.NULL) {
+            throw new JsonSyntaxException("Null array element in repo metadata, " + in);
+          }
+          list.add(readValue(in));
+        }
+        in.endArray();
+        return list.build();
+      case BEGIN_OBJECT:
+        Map<String, Object> map = new LinkedHashMap<>();
+        in.beginObject();
+        while (in.hasNext()) {
+          String name = in.nextName();
+          if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+          } else {
+            map.put(name, readValue(in));
+          }
+        }
+        in.endObject();
+        return ImmutableMap.copyOf(map);
+      default:
+        throw new JsonSyntaxException("Unexpected " + in.peek() + " in repo metadata, " + in);
+    }
+  }
+
+  @Override
+  public void write(JsonWriter out, M value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+    } else {
+      writeValue(out, value.getMapView());
+    }
+  }
+
+  private static void writeValue(JsonWriter out, Object value) throws IOException {
+    if (value instanceof Map) {
+      out.beginObject();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        out.name((String) entry.getKey());
+        writeValue(out, entry.getValue());
+      }
+      out.endObject();
+    } else if (value instanceof List) {
+      out.beginArray();
+      for (Object element : (List<?>) value) {
+        writeValue(out, element);
+      }
+      out.endArray();
+    } else if (value instanceof Number) {
+      out.value((Number) value);
+    } else if (value instanceof Boolean) {
+      out.value((Boolean) value);
+    } else {
+      out.value((String) value);
+    }
+  }
+
+}
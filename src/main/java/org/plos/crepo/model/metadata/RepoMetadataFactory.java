@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.model.metadata;
+
+import com.google.common.collect.ImmutableList;
+import org.plos.crepo.json.GsonRepoJsonCodec;
+import org.plos.crepo.json.RepoJsonCodec;
+
+import java.util.Objects;
+import java.util.function.BiFunction;
+
+/**
+ * Builds repo metadata one field at a time, for JSON decoders that stream fields rather than parse them into a map.
+ * Field values take the immutable form that Gson gives an {@code Object}: strings, {@code Double}s, booleans, lists and
+ * maps.
+ *
+ * @param <M> the type of metadata
+ */
+public final class RepoMetadataFactory<M extends RepoMetadata> {
+
+  private final String bucketName;
+  private final MetadataFields.Kind kind;
+  private final BiFunction<String, MetadataFields, M> constructor;
+
+  private RepoMetadataFactory(String bucketName, MetadataFields.Kind kind,
+                              BiFunction<String, MetadataFields, M> constructor) {
+    this.bucketName = Objects.requireNonNull(bucketName);
+    this.kind = kind;
+    this.constructor = constructor;
+  }
+
+  public static RepoMetadataFactory<RepoObjectMetadata> forObjects(String bucketName) {
+    return new RepoMetadataFactory<>(bucketName, MetadataFields.Kind.OBJECT, RepoObjectMetadata::new);
+  }
+
+  public static RepoMetadataFactory<RepoCollectionMetadata> forCollections(String bucketName) {
+    return new RepoMetadataFactory<>(bucketName, MetadataFields.Kind.COLLECTION, RepoCollectionMetadata::new);
+  }
+
+  public static RepoMetadataFactory<RepoCollectionList> forCollectionLists(String bucketName) {
+    return new RepoMetadataFactory<>(bucketName, MetadataFields.Kind.COLLECTION_LIST, RepoCollectionList::new);
+  }
+
+  public Fields newFields() {
+    return newFields(GsonRepoJsonCodec.getInstance());
+  }
+
+  /**
+   * @param codec the codec that is decoding the entity, which will also decode its user metadata
+   */
+  public Fields newFields(RepoJsonCodec codec) {
+    return new Fields(kind, Objects.requireNonNull(codec));
+  }
+
+  public M build(Fields fields) {
+    return constructor.apply(bucketName, fields.finish());
+  }
+
+  /**
+   * Factories are equal if they build the same kind of metadata for the same bucket, so that a codec can key its
+   * per-factory state on them.
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    RepoMetadataFactory<?> that = (RepoMetadataFactory<?>) o;
+    return bucketName.equals(that.bucketName) && kind == that.kind;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * bucketName.hashCode() + kind.hashCode();
+  }
+
+  /**
+   * The fields of one entity, as they are read.
+   */
+  public static final class Fields {
+    private final MetadataFields fields;
+    private ImmutableList.Builder<Fields> objects;
+
+    private Fields(MetadataFields.Kind kind, RepoJsonCodec codec) {
+      this.fields = new MetadataFields(kind);
+      this.fields.userMetadataCodec = codec;
+    }
+
+    /**
+     * @param name  the field's name
+     * @param value the field's value; must not be {@code null}
+     */
+    public void put(String name, Object value) {
+      fields.put(name, Objects.requireNonNull(value));
+    }
+
+    /**
+     * @return whether the named field holds the metadata of member objects, which should be read with {@link
+     * #startObjects()} and {@link #addObject()} instead of {@link #put}
+     */
+    public boolean isObjectList(String name) {
+      return fields.kind == MetadataFields.Kind.COLLECTION_LIST && name.equals("objects");
+    }
+
+    public void startObjects() {
+      objects = ImmutableList.builder();
+    }
+
+    /**
+     * @return the fields of the next member object, to be filled in by the caller
+     */
+    public Fields addObject() {
+      Fields object = new Fields(MetadataFields.Kind.OBJECT, fields.userMetadataCodec);
+      objects.add(object);
+      return object;
+    }
+
+    private MetadataFields finish() {
+      if (objects != null) {
+        ImmutableList.Builder<MetadataFields> finished = ImmutableList.builder();
+        for (Fields object : objects.build()) {
+          finished.add(object.finish());
+        }
+        fields.objects = finished.build();
+        objects = null;
+      }
+      return fields;
+    }
+  }
+
+}
@@ -22,6 +22,8 @@
 
 package org.plos.crepo.model.metadata;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import org.plos.crepo.exceptions.ContentRepoException;
 import org.plos.crepo.exceptions.ErrorType;
 
@@ -30,6 +32,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
@@ -37,24 +40,80 @@ import java.util.Optional;
  */
 public class RepoObjectMetadata extends RepoMetadata {
 
+  private final long size;
+  private final String checksum;
+  private final String contentType;
+  private final String downloadName;
+  private final ImmutableList<String> reproxyUrls;
+
   public RepoObjectMetadata(String bucketName, Map<String, Object> raw) {
-    super(bucketName, raw);
+    this(bucketName, raw, MetadataFields.fromMap(MetadataFields.Kind.OBJECT, raw));
+  }
+
+  private RepoObjectMetadata(String bucketName, Map<String, Object> raw, MetadataFields fields) {
+    super(bucketName, raw, fields);
+    this.size = fields.size;
+    this.checksum = fields.checksum;
+    this.contentType = fields.contentType;
+    this.downloadName = fields.downloadName;
+    this.reproxyUrls = fields.reproxyUrls;
+  }
+
+  RepoObjectMetadata(String bucketName, MetadataFields fields) {
+    super(bucketName, fields);
+    this.size = fields.size;
+    this.checksum = fields.checksum;
+    this.contentType = fields.contentType;
+    this.downloadName = fields.downloadName;
+    this.reproxyUrls = fields.reproxyUrls;
+  }
+
+  @Override
+  void putTypedFields(ImmutableMap.Builder<String, Object> builder) {
+    putIfPresent(builder, "size", (size == MetadataFields.ABSENT) ? null : (double) size);
+    putIfPresent(builder, "checksum", checksum);
+    putIfPresent(builder, "contentType", contentType);
+    putIfPresent(builder, "downloadName", downloadName);
+    putIfPresent(builder, "reproxyURL", reproxyUrls);
+  }
+
+  @Override
+  boolean typedFieldsEqual(RepoMetadata o) {
+    RepoObjectMetadata that = (RepoObjectMetadata) o;
+    return super.typedFieldsEqual(that)
+        && size == that.size
+        && Objects.equals(checksum, that.checksum)
+        && Objects.equals(contentType, that.contentType)
+        && Objects.equals(downloadName, that.downloadName)
+        && Objects.equals(reproxyUrls, that.reproxyUrls);
+  }
+
+  @Override
+  int typedFieldsHashCode() {
+    return 31 * super.typedFieldsHashCode() + Objects.hash(size, checksum, contentType, downloadName, reproxyUrls);
   }
 
   public long getSize() {
-    return ((Number) raw.get("size")).longValue();
+    return (size != MetadataFields.ABSENT) ? size : ((Number) getRawField("size")).longValue();
+  }
+
+  /**
+   * @return the checksum that the server computed from the object's content
+   */
+  public Optional<String> getChecksum() {
+    return Optional.ofNullable((checksum != null) ? checksum : (String) getRawField("checksum"));
   }
 
   public Optional<String> getContentType() {
-    return Optional.ofNullable((String) raw.get("contentType"));
+    return Optional.ofNullable((contentType != null) ? contentType : (String) getRawField("contentType"));
   }
 
   public Optional<String> getDownloadName() {
-    return Optional.ofNullable((String) raw.get("downloadName"));
+    return Optional.ofNullable((downloadName != null) ? downloadName : (String) getRawField("downloadName"));
   }
 
   public List<URL> getReproxyUrls() {
-    List<String> rawUrls = (List<String>) raw.get("reproxyURL");
+    List<String> rawUrls = (reproxyUrls != null) ? reproxyUrls : (List<String>) getRawField("reproxyURL");
     if (rawUrls == null) return new ArrayList<>(0);
     List<URL> urls = new ArrayList<>(rawUrls.size());
     for (String rawUrl : rawUrls) {
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service;
+
+import org.plos.crepo.config.HttpClientFunction;
+import org.plos.crepo.model.identity.RepoId;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.identity.RepoVersionNumber;
+import org.plos.crepo.model.identity.RepoVersionTag;
+import org.plos.crepo.model.input.RepoCollectionInput;
+import org.plos.crepo.model.input.RepoObjectInput;
+import org.plos.crepo.model.metadata.RepoCollectionList;
+import org.plos.crepo.model.metadata.RepoCollectionMetadata;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Runs the operations of a {@link ContentRepoService} on an executor. The size of the executor bounds the number of
+ * requests in progress at once, however many futures the callers are holding.
+ * <p>
+ * The service may be a {@link ContentRepoServiceImpl} working directly on the DAOs, or one wrapped in caching
+ * decorators, so that cache hits complete as quickly as the executor can run them.
+ */
+public class AsyncContentRepoServiceImpl implements AsyncContentRepoService {
+
+  private final ContentRepoService service;
+  private final Executor executor;
+
+  /**
+   * Create a service that makes its requests to the server through the DAOs.
+   *
+   * @param repoServer the URL of the content repo server
+   * @param client     the client with which to open responses
+   * @param executor   the executor on which to make requests
+   */
+  public AsyncContentRepoServiceImpl(String repoServer, HttpClientFunction client, Executor executor) {
+    this(new ContentRepoServiceImpl(repoServer, client), executor);
+  }
+
+  /**
+   * @param service  the service to call
+   * @param executor the executor on which to call it
+   */
+  public AsyncContentRepoServiceImpl(ContentRepoService service, Executor executor) {
+    this.service = Objects.requireNonNull(service);
+    this.executor = Objects.requireNonNull(executor);
+  }
+
+  private <T> CompletableFuture<T> async(Supplier<T> operation) {
+    return CompletableFuture.supplyAsync(operation, executor);
+  }
+
+
+  // ------------------------ Config ------------------------
+
+  @Override
+  public CompletableFuture<Boolean> hasXReproxy() {
+    return async(service::hasXReproxy);
+  }
+
+  @Override
+  public CompletableFuture<Map<String, Object>> getRepoConfig() {
+    return async(service::getRepoConfig);
+  }
+
+  @Override
+  public CompletableFuture<Map<String, Object>> getRepoStatus() {
+    return async(service::getRepoStatus);
+  }
+
+
+  // ------------------------ Buckets ------------------------
+
+  @Override
+  public CompletableFuture<List<Map<String, Object>>> getBuckets() {
+    return async(service::getBuckets);
+  }
+
+  @Override
+  public CompletableFuture<Map<String, Object>> getBucket(String key) {
+    return async(() -> service.getBucket(key));
+  }
+
+  @Override
+  public CompletableFuture<Map<String, Object>> createBucket(String key) {
+    return async(() -> service.createBucket(key));
+  }
+
+
+  // ------------------------ Objects ------------------------
+
+  @Override
+  public CompletableFuture<InputStream> getRepoObject(RepoVersion version) {
+    return async(() -> service.getRepoObject(version));
+  }
+
+  @Override
+  public CompletableFuture<InputStream> getRepoObject(RepoVersionNumber number) {
+    return async(() -> service.getRepoObject(number));
+  }
+
+  @Override
+  public CompletableFuture<RepoObjectMetadata> getRepoObjectMetadata(RepoVersion version) {
+    return async(() -> service.getRepoObjectMetadata(version));
+  }
+
+  @Override
+  public CompletableFuture<RepoObjectMetadata> getRepoObjectMetadata(RepoVersionNumber number) {
+    return async(() -> service.getRepoObjectMetadata(number));
+  }
+
+  @Override
+  public CompletableFuture<RepoObjectMetadata> getRepoObjectMetadata(RepoVersionTag tagObj) {
+    return async(() -> service.getRepoObjectMetadata(tagObj));
+  }
+
+  @Override
+  public CompletableFuture<List<RepoObjectMetadata>> getRepoObjectVersions(RepoId id) {
+    return async(() -> service.getRepoObjectVersions(id));
+  }
+
+  @Override
+  public CompletableFuture<Boolean> deleteRepoObject(RepoVersion version) {
+    return async(() -> service.deleteRepoObject(version));
+  }
+
+  @Override
+  public CompletableFuture<Boolean> deleteRepoObject(RepoVersionNumber number) {
+    return async(() -> service.deleteRepoObject(number));
+  }
+
+  @Override
+  public CompletableFuture<RepoObjectMetadata> createRepoObject(RepoObjectInput repoObjectInput) {
+    return async(() -> service.createRepoObject(repoObjectInput));
+  }
+
+  @Override
+  public CompletableFuture<RepoObjectMetadata> versionRepoObject(RepoObjectInput repoObjectInput) {
+    return async(() -> service.versionRepoObject(repoObjectInput));
+  }
+
+  @Override
+  public CompletableFuture<RepoObjectMetadata> autoCreateRepoObject(RepoObjectInput repoObjectInput) {
+    return async(() -> service.autoCreateRepoObject(repoObjectInput));
+  }
+
+  @Override
+  public CompletableFuture<List<RepoObjectMetadata>> getRepoObjects(String bucketName, int offset, int limit,
+                                                                    boolean includeDeleted, String tag) {
+    return async(() -> service.getRepoObjects(bucketName, offset, limit, includeDeleted, tag));
+  }
+
+
+  // ------------------------ Collections ------------------------
+
+  @Override
+  public CompletableFuture<RepoCollectionList> createCollection(RepoCollectionInput repoCollectionInput) {
+    return async(() -> service.createCollection(repoCollectionInput));
+  }
+
+  @Override
+  public CompletableFuture<RepoCollectionList> versionCollection(RepoCollectionInput repoCollectionInput) {
+    return async(() -> service.versionCollection(repoCollectionInput));
+  }
+
+  @Override
+  public CompletableFuture<RepoCollectionList> autoCreateCollection(RepoCollectionInput repoCollectionInput) {
+    return async(() -> service.autoCreateCollection(repoCollectionInput));
+  }
+
+  @Override
+  public CompletableFuture<Boolean> deleteCollection(RepoVersion version) {
+    return async(() -> service.deleteCollection(version));
+  }
+
+  @Override
+  public CompletableFuture<Boolean> deleteCollection(RepoVersionNumber number) {
+    return async(() -> service.deleteCollection(number));
+  }
+
+  @Override
+  public CompletableFuture<RepoCollectionList> getCollection(RepoVersion version) {
+    return async(() -> service.getCollection(version));
+  }
+
+  @Override
+  public CompletableFuture<RepoCollectionList> getCollection(RepoVersionNumber number) {
+    return async(() -> service.getCollection(number));
+  }
+
+  @Override
+  public CompletableFuture<RepoCollectionList> getCollection(RepoVersionTag tagObj) {
+    return async(() -> service.getCollection(tagObj));
+  }
+
+  @Override
+  public CompletableFuture<RepoCollectionMetadata> getLatestCollection(RepoId id) {
+    return async(() -> service.getLatestCollection(id));
+  }
+
+  @Override
+  public CompletableFuture<List<RepoCollectionList>> getCollectionVersions(RepoId id) {
+    return async(() -> service.getCollectionVersions(id));
+  }
+
+  @Override
+  public CompletableFuture<List<RepoCollectionMetadata>> getCollections(String bucketName, int offset, int limit,
+                                                                        boolean includeDeleted, String tag) {
+    return async(() -> service.getCollections(bucketName, offset, limit, includeDeleted, tag));
+  }
+
+}
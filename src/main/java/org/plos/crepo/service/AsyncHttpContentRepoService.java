@@ -0,0 +1,352 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.client.methods.HttpGet;
+import org.plos.crepo.config.AsyncHttpClientFunction;
+import org.plos.crepo.dao.async.ContentRepoResponseConsumer;
+import org.plos.crepo.dao.async.ContentResponseConsumer;
+import org.plos.crepo.dao.async.JsonResponseConsumer;
+import org.plos.crepo.exceptions.ContentRepoException;
+import org.plos.crepo.exceptions.ErrorType;
+import org.plos.crepo.json.JsonDecoder;
+import org.plos.crepo.json.GsonRepoJsonCodec;
+import org.plos.crepo.json.RepoJsonCodec;
+import org.plos.crepo.model.identity.RepoId;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.identity.RepoVersionNumber;
+import org.plos.crepo.model.identity.RepoVersionTag;
+import org.plos.crepo.model.input.RepoCollectionInput;
+import org.plos.crepo.model.input.RepoObjectInput;
+import org.plos.crepo.model.metadata.RepoCollectionList;
+import org.plos.crepo.model.metadata.RepoCollectionMetadata;
+import org.plos.crepo.model.metadata.RepoMetadata;
+import org.plos.crepo.model.metadata.RepoMetadataFactory;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+import org.plos.crepo.util.BucketUrlGenerator;
+import org.plos.crepo.util.CollectionUrlGenerator;
+import org.plos.crepo.util.ConfigUrlGenerator;
+import org.plos.crepo.util.ObjectUrlGenerator;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * An asynchronous service that makes its read requests through a non-blocking {@link AsyncHttpClientFunction}, so
+ * that a request in flight holds no thread. Response bodies are consumed as they arrive: metadata is collected and
+ * parsed once complete, and object content is streamed to the reader through a bounded buffer.
+ * <p>
+ * Writes, which upload multipart bodies, and deletes are passed to another asynchronous service, such as an {@link
+ * AsyncContentRepoServiceImpl}.
+ * <p>
+ * Futures of metadata are completed on the client's I/O threads, so dependent stages that block must be run on
+ * another executor. Futures of content are completed on the executor given to the constructor, since reading the
+ * stream blocks.
+ */
+public class AsyncHttpContentRepoService implements AsyncContentRepoService {
+
+  private final String repoServer;
+  private final AsyncHttpClientFunction client;
+  private final AsyncContentRepoService writeService;
+  private final Executor contentExecutor;
+  private final RepoJsonCodec jsonCodec;
+
+  /**
+   * @param repoServer      the URL of the content repo server
+   * @param client          the client with which to make read requests
+   * @param writeService    the service to which to pass writes and deletes
+   * @param contentExecutor the executor on which to complete futures of object content
+   */
+  public AsyncHttpContentRepoService(String repoServer, AsyncHttpClientFunction client,
+                                     AsyncContentRepoService writeService, Executor contentExecutor) {
+    this(repoServer, client, writeService, contentExecutor, GsonRepoJsonCodec.getInstance());
+  }
+
+  /**
+   * @param repoServer      the URL of the content repo server
+   * @param client          the client with which to make read requests
+   * @param writeService    the service to which to pass writes and deletes
+   * @param contentExecutor the executor on which to complete futures of object content
+   * @param jsonCodec       the codec with which to read JSON
+   */
+  public AsyncHttpContentRepoService(String repoServer, AsyncHttpClientFunction client,
+                                     AsyncContentRepoService writeService, Executor contentExecutor,
+                                     RepoJsonCodec jsonCodec) {
+    this.repoServer = Objects.requireNonNull(repoServer);
+    this.client = Objects.requireNonNull(client);
+    this.writeService = Objects.requireNonNull(writeService);
+    this.contentExecutor = Objects.requireNonNull(contentExecutor);
+    this.jsonCodec = Objects.requireNonNull(jsonCodec);
+  }
+
+  private <T> CompletableFuture<T> execute(HttpGet request, ContentRepoResponseConsumer<T> consumer) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    client.execute(request, consumer).whenComplete((value, e) -> {
+      if (e == null) {
+        result.complete(value);
+      } else {
+        result.completeExceptionally(consumer.translate(e));
+      }
+    });
+    return result;
+  }
+
+  private <T> CompletableFuture<T> getJson(String url, ErrorType errorType, JsonDecoder<T> decoder) {
+    HttpGet request = new HttpGet(url);
+    return execute(request, new JsonResponseConsumer<T>(request, errorType, jsonCodec, decoder));
+  }
+
+  private <M extends RepoMetadata> CompletableFuture<M> getMetadata(String url, ErrorType errorType,
+                                                                   RepoMetadataFactory<? extends M> factory) {
+    return getJson(url, errorType, reader -> jsonCodec.readMetadata(factory, reader));
+  }
+
+  private <M extends RepoMetadata> CompletableFuture<List<M>> getMetadataList(String url, ErrorType errorType,
+                                                                             RepoMetadataFactory<M> factory) {
+    return getJson(url, errorType, reader -> {
+      List<M> list = new ArrayList<>();
+      jsonCodec.readMetadataArray(factory, reader, list::add);
+      return list;
+    });
+  }
+
+  private CompletableFuture<InputStream> getContent(String url) {
+    HttpGet request = new HttpGet(url);
+    ContentResponseConsumer consumer = new ContentResponseConsumer(request, ErrorType.ErrorFetchingObject, jsonCodec,
+        contentExecutor);
+    CompletableFuture<Void> response = client.execute(request, consumer);
+    consumer.setOnClose(() -> response.cancel(true));
+    response.whenComplete((value, e) -> consumer.completed(e));
+    return consumer.getStream();
+  }
+
+
+  // ------------------------ Config ------------------------
+
+  @Override
+  public CompletableFuture<Boolean> hasXReproxy() {
+    return getJson(ConfigUrlGenerator.getHasReproxyUrl(repoServer), ErrorType.ErrorFetchingReproxyData,
+        reader -> (Boolean) jsonCodec.readValue(reader));
+  }
+
+  @Override
+  public CompletableFuture<Map<String, Object>> getRepoConfig() {
+    return getJson(ConfigUrlGenerator.getRepoConfigUrl(repoServer), ErrorType.ErrorFetchingConfig, jsonCodec::readMap);
+  }
+
+  @Override
+  public CompletableFuture<Map<String, Object>> getRepoStatus() {
+    return getJson(ConfigUrlGenerator.getRepoStatusUrl(repoServer), ErrorType.ErrorFetchingStatus, jsonCodec::readMap);
+  }
+
+
+  // ------------------------ Buckets ------------------------
+
+  @Override
+  public CompletableFuture<List<Map<String, Object>>> getBuckets() {
+    return getJson(BucketUrlGenerator.getBucketsUrl(repoServer), ErrorType.ErrorFetchingBucketMeta, jsonCodec::readMapList);
+  }
+
+  @Override
+  public CompletableFuture<Map<String, Object>> getBucket(String key) {
+    if (StringUtils.isEmpty(key)) {
+      CompletableFuture<Map<String, Object>> failed = new CompletableFuture<>();
+      failed.completeExceptionally(new ContentRepoException.ContentRepoExceptionBuilder(ErrorType.EmptyBucketKey).build());
+      return failed;
+    }
+    return getJson(BucketUrlGenerator.getBucketUrl(repoServer, key), ErrorType.ErrorFetchingBucketMeta, jsonCodec::readMap);
+  }
+
+  @Override
+  public CompletableFuture<Map<String, Object>> createBucket(String key) {
+    return writeService.createBucket(key);
+  }
+
+
+  // ------------------------ Objects ------------------------
+
+  @Override
+  public CompletableFuture<InputStream> getRepoObject(RepoVersion version) {
+    RepoId id = version.getId();
+    return getContent(ObjectUrlGenerator.getObjectUsingUuidUrl(repoServer, id.getBucketName(), id.getKey(),
+        version.getUuid().toString()));
+  }
+
+  @Override
+  public CompletableFuture<InputStream> getRepoObject(RepoVersionNumber number) {
+    RepoId id = number.getId();
+    return getContent(ObjectUrlGenerator.getObjectUsingVersionNumUrl(repoServer, id.getBucketName(), id.getKey(),
+        number.getNumber()));
+  }
+
+  @Override
+  public CompletableFuture<RepoObjectMetadata> getRepoObjectMetadata(RepoVersion version) {
+    RepoId id = version.getId();
+    String bucketName = id.getBucketName();
+    return getMetadata(ObjectUrlGenerator.getObjectMetaUsingUuidUrl(repoServer, bucketName, id.getKey(),
+            version.getUuid().toString()),
+        ErrorType.ErrorFetchingObjectMeta, RepoMetadataFactory.forObjects(bucketName));
+  }
+
+  @Override
+  public CompletableFuture<RepoObjectMetadata> getRepoObjectMetadata(RepoVersionNumber number) {
+    RepoId id = number.getId();
+    String bucketName = id.getBucketName();
+    return getMetadata(ObjectUrlGenerator.getObjectMetaUsingVersionNumUrl(repoServer, bucketName, id.getKey(),
+            number.getNumber()),
+        ErrorType.ErrorFetchingObjectMeta, RepoMetadataFactory.forObjects(bucketName));
+  }
+
+  @Override
+  public CompletableFuture<RepoObjectMetadata> getRepoObjectMetadata(RepoVersionTag tagObj) {
+    RepoId id = tagObj.getId();
+    String bucketName = id.getBucketName();
+    return getMetadata(ObjectUrlGenerator.getGetObjMetaUsingTagUrl(repoServer, bucketName, id.getKey(), tagObj.getTag()),
+        ErrorType.ErrorFetchingObjectMeta, RepoMetadataFactory.forObjects(bucketName));
+  }
+
+  @Override
+  public CompletableFuture<List<RepoObjectMetadata>> getRepoObjectVersions(RepoId id) {
+    String bucketName = id.getBucketName();
+    return getMetadataList(ObjectUrlGenerator.getObjectVersionsUrl(repoServer, bucketName, id.getKey()),
+        ErrorType.ErrorFetchingObjectVersions, RepoMetadataFactory.forObjects(bucketName));
+  }
+
+  @Override
+  public CompletableFuture<Boolean> deleteRepoObject(RepoVersion version) {
+    return writeService.deleteRepoObject(version);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> deleteRepoObject(RepoVersionNumber number) {
+    return writeService.deleteRepoObject(number);
+  }
+
+  @Override
+  public CompletableFuture<RepoObjectMetadata> createRepoObject(RepoObjectInput repoObjectInput) {
+    return writeService.createRepoObject(repoObjectInput);
+  }
+
+  @Override
+  public CompletableFuture<RepoObjectMetadata> versionRepoObject(RepoObjectInput repoObjectInput) {
+    return writeService.versionRepoObject(repoObjectInput);
+  }
+
+  @Override
+  public CompletableFuture<RepoObjectMetadata> autoCreateRepoObject(RepoObjectInput repoObjectInput) {
+    return writeService.autoCreateRepoObject(repoObjectInput);
+  }
+
+  @Override
+  public CompletableFuture<List<RepoObjectMetadata>> getRepoObjects(String bucketName, int offset, int limit,
+                                                                    boolean includeDeleted, String tag) {
+    String url = StringUtils.isEmpty(tag)
+        ? ObjectUrlGenerator.getGetObjectsUrl(repoServer, bucketName, offset, limit, includeDeleted)
+        : ObjectUrlGenerator.getGetObjectsUrl(repoServer, bucketName, offset, limit, includeDeleted, tag);
+    return getMetadataList(url, ErrorType.ErrorFetchingCollection, RepoMetadataFactory.forObjects(bucketName));
+  }
+
+
+  // ------------------------ Collections ------------------------
+
+  @Override
+  public CompletableFuture<RepoCollectionList> createCollection(RepoCollectionInput repoCollectionInput) {
+    return writeService.createCollection(repoCollectionInput);
+  }
+
+  @Override
+  public CompletableFuture<RepoCollectionList> versionCollection(RepoCollectionInput repoCollectionInput) {
+    return writeService.versionCollection(repoCollectionInput);
+  }
+
+  @Override
+  public CompletableFuture<RepoCollectionList> autoCreateCollection(RepoCollectionInput repoCollectionInput) {
+    return writeService.autoCreateCollection(repoCollectionInput);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> deleteCollection(RepoVersion version) {
+    return writeService.deleteCollection(version);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> deleteCollection(RepoVersionNumber number) {
+    return writeService.deleteCollection(number);
+  }
+
+  @Override
+  public CompletableFuture<RepoCollectionList> getCollection(RepoVersion version) {
+    RepoId id = version.getId();
+    String bucketName = id.getBucketName();
+    return getMetadata(CollectionUrlGenerator.getCollectionUuidUrl(repoServer, bucketName, id.getKey(),
+            version.getUuid().toString()),
+        ErrorType.ErrorFetchingCollection, RepoMetadataFactory.forCollectionLists(bucketName));
+  }
+
+  @Override
+  public CompletableFuture<RepoCollectionList> getCollection(RepoVersionNumber number) {
+    RepoId id = number.getId();
+    String bucketName = id.getBucketName();
+    return getMetadata(CollectionUrlGenerator.getCollectionVersionNumUrl(repoServer, bucketName, id.getKey(),
+            number.getNumber()),
+        ErrorType.ErrorFetchingCollection, RepoMetadataFactory.forCollectionLists(bucketName));
+  }
+
+  @Override
+  public CompletableFuture<RepoCollectionList> getCollection(RepoVersionTag tagObj) {
+    RepoId id = tagObj.getId();
+    String bucketName = id.getBucketName();
+    return getMetadata(CollectionUrlGenerator.getCollectionTagUrl(repoServer, bucketName, id.getKey(), tagObj.getTag()),
+        ErrorType.ErrorFetchingCollection, RepoMetadataFactory.forCollectionLists(bucketName));
+  }
+
+  @Override
+  public CompletableFuture<RepoCollectionMetadata> getLatestCollection(RepoId id) {
+    String bucketName = id.getBucketName();
+    return getMetadata(CollectionUrlGenerator.getLatestCollectionUrl(repoServer, bucketName, id.getKey()),
+        ErrorType.ErrorFetchingCollection, RepoMetadataFactory.forCollectionLists(bucketName));
+  }
+
+  @Override
+  public CompletableFuture<List<RepoCollectionList>> getCollectionVersions(RepoId id) {
+    String bucketName = id.getBucketName();
+    return getMetadataList(CollectionUrlGenerator.getCollectionVersionsUrl(repoServer, bucketName, id.getKey()),
+        ErrorType.ErrorFetchingCollectionVersions, RepoMetadataFactory.forCollectionLists(bucketName));
+  }
+
+  @Override
+  public CompletableFuture<List<RepoCollectionMetadata>> getCollections(String bucketName, int offset, int limit,
+                                                                        boolean includeDeleted, String tag) {
+    String url = StringUtils.isEmpty(tag)
+        ? CollectionUrlGenerator.getGetCollectionsUrl(repoServer, bucketName, offset, limit, includeDeleted)
+        : CollectionUrlGenerator.getCollectionsUsingTagUrl(repoServer, bucketName, offset, limit, includeDeleted, tag);
+    return getMetadataList(url, ErrorType.ErrorFetchingCollections, RepoMetadataFactory.forCollections(bucketName));
+  }
+
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.plos.crepo.service;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.plos.crepo.config.HttpClientFunction;
+import org.plos.crepo.json.GsonRepoJsonCodec;
+import org.plos.crepo.json.RepoJsonCodec;
+
+import java.net.URI;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds a service backed by its own pool of connections to the content repo server, with settings suited to
+ * production use.
+ * <p>
+ * Requests for object content get their own connect and read timeouts, separate from those used by every other
+ * (metadata) request, so that a long download doesn't force a slow timeout onto small calls, nor the other way around.
+ * Idle and expired connections are closed in the background. The returned service owns the pool and must be closed
+ * when no longer needed.
+ * <p>
+ * The server is a single route, so {@link #setMaxPerRoute} is the limit that ordinarily applies.
+ */
+public class ContentRepoServiceBuilder {
+
+  private final String repoServer;
+
+  private RepoJsonCodec jsonCodec = GsonRepoJsonCodec.getInstance();
+
+  private int maxTotal = 100;
+  private int maxPerRoute = 50;
+  private int bufferSize = 32 * 1024;
+  private long keepAliveMillis = TimeUnit.SECONDS.toMillis(30);
+  private long maxIdleMillis = TimeUnit.SECONDS.toMillis(30);
+  private long evictionIntervalMillis = TimeUnit.SECONDS.toMillis(5);
+  private int leaseTimeout = (int) TimeUnit.SECONDS.toMillis(5);
+
+  private int metadataConnectTimeout = (int) TimeUnit.SECONDS.toMillis(2);
+  private int metadataSocketTimeout = (int) TimeUnit.SECONDS.toMillis(10);
+  private int contentConnectTimeout = (int) TimeUnit.SECONDS.toMillis(2);
+  private int contentSocketTimeout = (int) TimeUnit.SECONDS.toMillis(60);
+
+  public ContentRepoServiceBuilder(String repoServer) {
+    this.repoServer = Objects.requireNonNull(repoServer);
+  }
+
+  public ContentRepoServiceBuilder setJsonCodec(RepoJsonCodec jsonCodec) {
+    this.jsonCodec = Objects.requireNonNull(jsonCodec);
+    return this;
+  }
+
+  /**
+   * @param maxTotal the maximum number of connections in the pool
+   */
+  public ContentRepoServiceBuilder setMaxTotal(int maxTotal) {
+    Preconditions.checkArgument(maxTotal > 0);
+    this.maxTotal = maxTotal;
+    return this;
+  }
+
+  /**
+   * @param maxPerRoute the maximum number of connections to the server
+   */
+  public ContentRepoServiceBuilder setMaxPerRoute(int maxPerRoute) {
+    Preconditions.checkArgument(maxPerRoute > 0);
+    this.maxPerRoute = maxPerRoute;
+    return this;
+  }
+
+  /**
+   * @param bufferSize the size of each connection's read and write buffers, in bytes
+   */
+  public ContentRepoServiceBuilder setBufferSize(int bufferSize) {
+    Preconditions.checkArgument(bufferSize > 0);
+    this.bufferSize = bufferSize;
+    return this;
+  }
+
+  /**
+   * Set how long a connection may be kept alive between requests. A shorter timeout sent by the server in a {@code
+   * Keep-Alive} header takes precedence.
+   */
+  public ContentRepoServiceBuilder setKeepAlive(long duration, TimeUnit unit) {
+    this.keepAliveMillis = toMillis(duration, unit);
+    return this;
+  }
+
+  /**
+   * Set how long a connection may sit idle in the pool before it is closed.
+   */
+  public ContentRepoServiceBuilder setMaxIdleTime(long duration, TimeUnit unit) {
+    this.maxIdleMillis = toMillis(duration, unit);
+    return this;
+  }
+
+  /**
+   * Set how often idle and expired connections are looked for.
+   */
+  public ContentRepoServiceBuilder setEvictionInterval(long duration, TimeUnit unit) {
+    Preconditions.checkArgument(duration > 0);
+    this.evictionIntervalMillis = toMillis(duration, unit);
+    return this;
+  }
+
+  /**
+   * Set how long a request waits for a connection from the pool when every connection is in use.
+   */
+  public ContentRepoServiceBuilder setLeaseTimeout(long duration, TimeUnit unit) {
+    this.leaseTimeout = toTimeout(duration, unit);
+    return this;
+  }
+
+  public ContentRepoServiceBuilder setMetadataConnectTimeout(long duration, TimeUnit unit) {
+    this.metadataConnectTimeout = toTimeout(duration, unit);
+    return this;
+  }
+
+  /**
+   * Set how long a metadata request waits for data from the server.
+   */
+  public ContentRepoServiceBuilder setMetadataSocketTimeout(long duration, TimeUnit unit) {
+    this.metadataSocketTimeout = toTimeout(duration, unit);
+    return this;
+  }
+
+  public ContentRepoServiceBuilder setContentConnectTimeout(long duration, TimeUnit unit) {
+    this.contentConnectTimeout = toTimeout(duration, unit);
+    return this;
+  }
+
+  /**
+   * Set how long a request for object content waits for data from the server. This applies to each read while the
+   * content is streamed, not to the download as a whole.
+   */
+  public ContentRepoServiceBuilder setContentSocketTimeout(long duration, TimeUnit unit) {
+    this.contentSocketTimeout = toTimeout(duration, unit);
+    return this;
+  }
+
+  private static long toMillis(long duration, TimeUnit unit) {
+    Preconditions.checkArgument(duration >= 0);
+    return unit.toMillis(duration);
+  }
+
+  private static int toTimeout(long duration, TimeUnit unit) {
+    return (int) Math.min(toMillis(duration, unit), Integer.MAX_VALUE);
+  }
+
+  public PooledContentRepoService build() {
+    PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(maxTotal);
+    connectionManager.setDefaultMaxPerRoute(Math.min(maxPerRoute, maxTotal));
+    connectionManager.setDefaultConnectionConfig(ConnectionConfig.custom().setBufferSize(bufferSize).build());
+    connectionManager.setDefaultSocketConfig(SocketConfig.custom()
+        .setTcpNoDelay(true)
+        .setSoKeepAlive(true)
+        .setSoTimeout(metadataSocketTimeout)
+        .build());
+
+    RequestConfig metadataConfig = RequestConfig.custom()
+        .setConnectionRequestTimeout(leaseTimeout)
+        .setConnectTimeout(metadataConnectTimeout)
+        .setSocketTimeout(metadataSocketTimeout)
+        .build();
+    RequestConfig contentConfig = RequestConfig.copy(metadataConfig)
+        .setConnectTimeout(contentConnectTimeout)
+        .setSocketTimeout(contentSocketTimeout)
+        .build();
+
+    CloseableHttpClient client = HttpClients.custom()
+        .setConnectionManager(connectionManager)
+        .setDefaultRequestConfig(metadataConfig)
+        .setKeepAliveStrategy(new CappedKeepAliveStrategy(keepAliveMillis))
+        .build();
+
+    String contentPath = URI.create(repoServer).getRawPath() + "/objects/";
+    HttpClientFunction function = request -> {
+      HttpClientContext context = HttpClientContext.create();
+      context.setRequestConfig(isContentRequest(contentPath, request) ? contentConfig : metadataConfig);
+      return client.execute(request, context);
+    };
+
+    ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("crepo-connection-evictor-%d").setDaemon(true).build());
+    long maxIdle = maxIdleMillis;
+    evictor.scheduleWithFixedDelay(() -> {
+      connectionManager.closeExpiredConnections();
+      connectionManager.closeIdleConnections(maxIdle, TimeUnit.MILLISECONDS);
+    }, evictionIntervalMillis, evictionIntervalMillis, TimeUnit.MILLISECONDS);
+
+    return new PooledContentRepoService(repoServer, function, jsonCodec, client, connectionManager, evictor);
+  }
+
+  /**
+   * Check whether a request is for object content, as opposed to metadata. Content is read from {@code
+   * /objects/{bucketName}}; metadata and version lists are under {@code /objects/meta/} and {@code /objects/versions/}.
+   */
+  static boolean isContentRequest(String contentPath, HttpUriRequest request) {
+    if (!HttpGet.METHOD_NAME.equals(request.getMethod())) return false;
+    String path = request.getURI().getRawPath();
+    return path != null && path.length() > contentPath.length() && path.startsWith(contentPath)
+        && path.indexOf('/', contentPath.length()) < 0;
+  }
+
+  /**
+   * Keeps connections alive for as long as the server allows, but no longer than a fixed limit.
+   */
+  private static class CappedKeepAliveStrategy implements ConnectionKeepAliveStrategy {
+    private final long maxMillis;
+
+    private CappedKeepAliveStrategy(long maxMillis) {
+      this.maxMillis = maxMillis;
+    }
+
+    @Override
+    public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+      long serverMillis = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+      return (serverMillis > 0) ? Math.min(serverMillis, maxMillis) : maxMillis;
+    }
+  }
+
+}
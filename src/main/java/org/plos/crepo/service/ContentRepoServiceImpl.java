@@ -23,10 +23,8 @@
 package org.plos.crepo.service;
 
 import com.google.common.base.Charsets;
-import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.plos.crepo.config.ContentRepoAccessConfig;
 import org.plos.crepo.config.HttpClientFunction;
@@ -40,6 +38,9 @@ import org.plos.crepo.dao.objects.ContentRepoObjectDao;
 import org.plos.crepo.dao.objects.impl.ContentRepoObjectDaoImpl;
 import org.plos.crepo.exceptions.ContentRepoException;
 import org.plos.crepo.exceptions.ErrorType;
+import org.plos.crepo.json.JsonDecoder;
+import org.plos.crepo.json.GsonRepoJsonCodec;
+import org.plos.crepo.json.RepoJsonCodec;
 import org.plos.crepo.model.identity.RepoId;
 import org.plos.crepo.model.identity.RepoVersion;
 import org.plos.crepo.model.identity.RepoVersionNumber;
@@ -48,9 +49,12 @@ import org.plos.crepo.model.input.RepoCollectionInput;
 import org.plos.crepo.model.input.RepoObjectInput;
 import org.plos.crepo.model.metadata.RepoCollectionList;
 import org.plos.crepo.model.metadata.RepoCollectionMetadata;
+import org.plos.crepo.model.metadata.RepoMetadata;
+import org.plos.crepo.model.metadata.RepoMetadataFactory;
 import org.plos.crepo.model.metadata.RepoObjectMetadata;
 import org.plos.crepo.model.validator.RepoObjectValidator;
 import org.plos.crepo.util.HttpResponseUtil;
+import org.plos.crepo.util.ResponseContentStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,17 +66,16 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public class ContentRepoServiceImpl implements ContentRepoService {
   private static final Logger log = LoggerFactory.getLogger(ContentRepoServiceImpl.class);
 
-  private static final Type MAP_TOKEN = new TypeToken<Map<String, Object>>() {
-  }.getType();
   public static final Type LIST_OF_MAPS_TOKENS = new TypeToken<List<Map<String, Object>>>() {
   }.getType();
 
   private final ContentRepoAccessConfig accessConfig;
-  private final Gson gson;
+  private final RepoJsonCodec jsonCodec;
 
   private final ContentRepoConfigDao configDao;
   private final ContentRepoBucketsDao bucketsDao;
@@ -80,8 +83,17 @@ public class ContentRepoServiceImpl implements ContentRepoService {
   private final ContentRepoCollectionDao collectionDao;
 
   public ContentRepoServiceImpl(String repoServer, HttpClientFunction client) {
-    this.accessConfig = new ContentRepoAccessConfig(repoServer, client);
-    gson = new Gson();
+    this(repoServer, client, GsonRepoJsonCodec.getInstance());
+  }
+
+  /**
+   * @param repoServer the URL of the content repo server
+   * @param client     the client with which to make requests
+   * @param jsonCodec  the codec with which to read and write JSON
+   */
+  public ContentRepoServiceImpl(String repoServer, HttpClientFunction client, RepoJsonCodec jsonCodec) {
+    this.accessConfig = new ContentRepoAccessConfig(repoServer, client, jsonCodec);
+    this.jsonCodec = jsonCodec;
 
     configDao = new ContentRepoConfigDaoImpl(accessConfig);
     bucketsDao = new ContentRepoBucketDaoImpl(accessConfig);
@@ -91,7 +103,7 @@ public class ContentRepoServiceImpl implements ContentRepoService {
 
   ContentRepoServiceImpl(TestContentRepoServiceBuilder builder) {
     this.accessConfig = builder.getAccessConfig();
-    this.gson = builder.getGson();
+    this.jsonCodec = builder.getJsonCodec();
     this.configDao = builder.getConfigDao();
     this.bucketsDao = builder.getBucketsDao();
     this.objectDao = builder.getObjectDao();
@@ -105,15 +117,32 @@ public class ContentRepoServiceImpl implements ContentRepoService {
         .build();
   }
 
-  private <T> T readJsonResponse(CloseableHttpResponse response, Type typeOfT) throws IOException {
+  private <T> T readJsonResponse(CloseableHttpResponse response, JsonDecoder<T> decoder) throws IOException {
     final Charset charset = Charsets.UTF_8; // TODO: Read from response Content-Type?
     try (InputStream stream = response.getEntity().getContent()) {
-      return gson.fromJson(new InputStreamReader(stream, charset), typeOfT);
+      return decoder.decode(new InputStreamReader(stream, charset));
     } finally {
       response.close();
     }
   }
 
+  private <M extends RepoMetadata> M readMetadataResponse(CloseableHttpResponse response,
+                                                         RepoMetadataFactory<M> factory) throws IOException {
+    return readJsonResponse(response, reader -> jsonCodec.readMetadata(factory, reader));
+  }
+
+  /**
+   * Decode a response holding a JSON array of metadata, passing each element to the consumer as soon as it is read.
+   */
+  private <M extends RepoMetadata> void readMetadataArrayResponse(CloseableHttpResponse response,
+                                                                 RepoMetadataFactory<M> factory,
+                                                                 Consumer<? super M> consumer) throws IOException {
+    readJsonResponse(response, reader -> {
+      jsonCodec.readMetadataArray(factory, reader, consumer);
+      return null;
+    });
+  }
+
 
   // ------------------------ Config ------------------------
 
@@ -130,7 +159,7 @@ public class ContentRepoServiceImpl implements ContentRepoService {
   @Override
   public Map<String, Object> getRepoConfig() {
     try (CloseableHttpResponse response = configDao.getRepoConfig()) {
-      return readJsonResponse(response, MAP_TOKEN);
+      return readJsonResponse(response, jsonCodec::readMap);
     } catch (IOException e) {
       throw serviceServerException(e, "Error handling the response whenfetching the repo configuration. RepoMessage: ");
     }
@@ -139,7 +168,7 @@ public class ContentRepoServiceImpl implements ContentRepoService {
   @Override
   public Map<String, Object> getRepoStatus() {
     try (CloseableHttpResponse response = configDao.getRepoStatus()) {
-      return readJsonResponse(response, MAP_TOKEN);
+      return readJsonResponse(response, jsonCodec::readMap);
     } catch (IOException e) {
       throw serviceServerException(e, "Error handling the response when fetching the repo status information. RepoMessage: ");
     }
@@ -152,7 +181,7 @@ public class ContentRepoServiceImpl implements ContentRepoService {
   @Override
   public List<Map<String, Object>> getBuckets() {
     try (CloseableHttpResponse response = this.bucketsDao.getBuckets()) {
-      return readJsonResponse(response, LIST_OF_MAPS_TOKENS);
+      return readJsonResponse(response, jsonCodec::readMapList);
     } catch (IOException e) {
       throw serviceServerException(e, "Error handling the response when getting all the buckets. RepoMessage: ");
     }
@@ -162,7 +191,7 @@ public class ContentRepoServiceImpl implements ContentRepoService {
   public Map<String, Object> getBucket(String key) {
     validateBucketKey(key);
     try (CloseableHttpResponse response = this.bucketsDao.getBucket(key)) {
-      return readJsonResponse(response, MAP_TOKEN);
+      return readJsonResponse(response, jsonCodec::readMap);
     } catch (IOException e) {
       log.error("Error handling the response when getting a bucket. Key:  " + key + " RepoMessage: ", e);
       StringBuilder logMessage = new StringBuilder()
@@ -184,7 +213,7 @@ public class ContentRepoServiceImpl implements ContentRepoService {
   @Override
   public Map<String, Object> createBucket(String key) {
     try (CloseableHttpResponse response = this.bucketsDao.createBucket(key)) {
-      return readJsonResponse(response, MAP_TOKEN);
+      return readJsonResponse(response, jsonCodec::readMap);
     } catch (IOException e) {
       throw serviceServerException(e, "Error handling the response when creating a bucket. RepoMessage: ");
     }
@@ -199,7 +228,7 @@ public class ContentRepoServiceImpl implements ContentRepoService {
     String key = id.getKey();
     CloseableHttpResponse response = objectDao.getLatestRepoObj(id.getBucketName(), key);
     try {
-      return response.getEntity().getContent();
+      return ResponseContentStream.open(response);
     } catch (IOException e) {
       log.error("Error getting the latest repoObj content from the response. key:  " + key, e);
       throw new ContentRepoException.ContentRepoExceptionBuilder(ErrorType.ErrorFetchingObject)
@@ -216,7 +245,7 @@ public class ContentRepoServiceImpl implements ContentRepoService {
     String uuid = version.getUuid().toString();
     CloseableHttpResponse response = objectDao.getRepoObjUsingUuid(version.getId().getBucketName(), key, uuid);
     try {
-      return response.getEntity().getContent();
+      return ResponseContentStream.open(response);
     } catch (IOException e) {
       log.error("Error getting the repoObj content from the response, when using the UUID." +
           "  key " + key + " versionNumber: " + uuid, e);
@@ -234,7 +263,7 @@ public class ContentRepoServiceImpl implements ContentRepoService {
     CloseableHttpResponse response = objectDao.getRepoObjUsingVersionNum(number.getId().getBucketName(), key, versionNumber);
 
     try {
-      return response.getEntity().getContent();
+      return ResponseContentStream.open(response);
     } catch (IOException e) {
       log.error(" Error trying to get the content from the response, using version number." +
           " accessConfig.getBucketName() " + number.getId().getBucketName() + " Key: " + key + " versionNumber: " + versionNumber, e);
@@ -246,17 +275,12 @@ public class ContentRepoServiceImpl implements ContentRepoService {
   }
 
   private RepoObjectMetadata buildRepoObjectMetadata(String bucketName, CloseableHttpResponse response) throws IOException {
-    Map<String, Object> raw = readJsonResponse(response, MAP_TOKEN);
-    return new RepoObjectMetadata(bucketName, raw);
+    return readMetadataResponse(response, RepoMetadataFactory.forObjects(bucketName));
   }
 
-  private List<RepoObjectMetadata> buildRepoObjectMetadataList(String bucketName, CloseableHttpResponse response) throws IOException {
-    List<Map<String, Object>> rawList = readJsonResponse(response, LIST_OF_MAPS_TOKENS);
-    List<RepoObjectMetadata> list = new ArrayList<>(rawList.size());
-    for (Map<String, Object> rawObj : rawList) {
-      list.add(new RepoObjectMetadata(bucketName, rawObj));
-    }
-    return list;
+  private void readRepoObjectMetadataList(String bucketName, CloseableHttpResponse response,
+                                         Consumer<? super RepoObjectMetadata> consumer) throws IOException {
+    readMetadataArrayResponse(response, RepoMetadataFactory.forObjects(bucketName), consumer);
   }
 
   @Override
@@ -332,9 +356,22 @@ public class ContentRepoServiceImpl implements ContentRepoService {
 
   @Override
   public List<RepoObjectMetadata> getRepoObjectVersions(RepoId id) {
+    List<RepoObjectMetadata> versions = new ArrayList<>();
+    forEachRepoObjectVersion(id, versions::add);
+    return versions;
+  }
+
+  /**
+   * Passes the meta data of each version of a repo object to the consumer as it is read from the response, without
+   * holding the whole version history in memory.
+   *
+   * @param id       the bucket name and key of the repo object
+   * @param consumer receives the meta data of each version
+   */
+  public void forEachRepoObjectVersion(RepoId id, Consumer<? super RepoObjectMetadata> consumer) {
     String bucketName = id.getBucketName();
     try (CloseableHttpResponse response = objectDao.getRepoObjVersionsMeta(bucketName, id.getKey())) {
-      return buildRepoObjectMetadataList(bucketName, response);
+      readRepoObjectMetadataList(bucketName, response, consumer);
     } catch (IOException e) {
       StringBuilder logMessage = new StringBuilder()
           .append("Error handling the response when fetching a the versions of an object. Key: ")
@@ -436,8 +473,22 @@ public class ContentRepoServiceImpl implements ContentRepoService {
 
   @Override
   public List<RepoObjectMetadata> getRepoObjects(String bucketName, int offset, int limit, boolean includeDeleted, String tag) {
+    List<RepoObjectMetadata> objects = new ArrayList<>();
+    forEachRepoObject(bucketName, offset, limit, includeDeleted, tag, objects::add);
+    return objects;
+  }
+
+  /**
+   * Passes the meta data of each object in a page of a bucket listing to the consumer as it is read from the response,
+   * without holding the whole page in memory.
+   *
+   * @param consumer receives the meta data of each object
+   * @see #getRepoObjects(String, int, int, boolean, String)
+   */
+  public void forEachRepoObject(String bucketName, int offset, int limit, boolean includeDeleted, String tag,
+                                Consumer<? super RepoObjectMetadata> consumer) {
     try (CloseableHttpResponse response = getObjectsCloseableResp(bucketName, offset, limit, includeDeleted, tag)) {
-      return buildRepoObjectMetadataList(bucketName, response);
+      readRepoObjectMetadataList(bucketName, response, consumer);
     } catch (IOException e) {
       throw serviceServerException(e, "Error handling the response when fetching a list of objects. RepoMessage: ");
     }
@@ -454,27 +505,18 @@ public class ContentRepoServiceImpl implements ContentRepoService {
 
   // ------------------------ Collections ------------------------
 
-  private RepoCollectionList buildRepoCollectionMetadata(String bucketName, HttpResponse response) {
-    Map<String, Object> raw = gson.fromJson(HttpResponseUtil.getResponseAsString(response), MAP_TOKEN);
-    return new RepoCollectionList(bucketName, raw);
+  private RepoCollectionList buildRepoCollectionMetadata(String bucketName, CloseableHttpResponse response) throws IOException {
+    return readMetadataResponse(response, RepoMetadataFactory.forCollectionLists(bucketName));
   }
 
-  private List<RepoCollectionList> buildRepoCollectionMetadataList(String bucketName, HttpResponse response) {
-    List<Map<String, Object>> rawList = gson.fromJson(HttpResponseUtil.getResponseAsString(response), LIST_OF_MAPS_TOKENS);
-    List<RepoCollectionList> list = new ArrayList<>(rawList.size());
-    for (Map<String, Object> rawObj : rawList) {
-      list.add(new RepoCollectionList(bucketName, rawObj));
-    }
-    return list;
+  private void readRepoCollectionMetadataList(String bucketName, CloseableHttpResponse response,
+                                             Consumer<? super RepoCollectionList> consumer) throws IOException {
+    readMetadataArrayResponse(response, RepoMetadataFactory.forCollectionLists(bucketName), consumer);
   }
 
-  private List<RepoCollectionMetadata> buildRepoCollectionObjectsMetadataList(String bucketName, HttpResponse response) {
-    List<Map<String, Object>> rawList = gson.fromJson(HttpResponseUtil.getResponseAsString(response), LIST_OF_MAPS_TOKENS);
-    List<RepoCollectionMetadata> list = new ArrayList<>(rawList.size());
-    for (Map<String, Object> rawObj : rawList) {
-      list.add(new RepoCollectionMetadata(bucketName, rawObj));
-    }
-    return list;
+  private void readRepoCollectionObjectsMetadataList(String bucketName, CloseableHttpResponse response,
+                                                     Consumer<? super RepoCollectionMetadata> consumer) throws IOException {
+    readMetadataArrayResponse(response, RepoMetadataFactory.forCollections(bucketName), consumer);
   }
 
   @Override
@@ -612,9 +654,22 @@ public class ContentRepoServiceImpl implements ContentRepoService {
   }
 
   public List<RepoCollectionList> getCollectionVersions(RepoId id) {
+    List<RepoCollectionList> versions = new ArrayList<>();
+    forEachCollectionVersion(id, versions::add);
+    return versions;
+  }
+
+  /**
+   * Passes each version of a collection to the consumer as it is read from the response, without holding the whole
+   * version history in memory.
+   *
+   * @param id       the bucket name and key of the repo collection
+   * @param consumer receives each version of the collection
+   */
+  public void forEachCollectionVersion(RepoId id, Consumer<? super RepoCollectionList> consumer) {
     String bucketName = id.getBucketName();
     try (CloseableHttpResponse response = collectionDao.getCollectionVersions(bucketName, id.getKey())) {
-      return buildRepoCollectionMetadataList(bucketName, response);
+      readRepoCollectionMetadataList(bucketName, response, consumer);
     } catch (IOException e) {
       StringBuilder logMessage = new StringBuilder()
           .append("Error handling the response when getting the versions of a collection. Key: ")
@@ -626,8 +681,22 @@ public class ContentRepoServiceImpl implements ContentRepoService {
 
   @Override
   public List<RepoCollectionMetadata> getCollections(String bucketName, int offset, int limit, boolean includeDeleted, String tag) {
+    List<RepoCollectionMetadata> collections = new ArrayList<>();
+    forEachCollection(bucketName, offset, limit, includeDeleted, tag, collections::add);
+    return collections;
+  }
+
+  /**
+   * Passes the metadata of each collection in a page of a bucket listing to the consumer as it is read from the
+   * response, without holding the whole page in memory.
+   *
+   * @param consumer receives the metadata of each collection
+   * @see #getCollections(String, int, int, boolean, String)
+   */
+  public void forEachCollection(String bucketName, int offset, int limit, boolean includeDeleted, String tag,
+                                Consumer<? super RepoCollectionMetadata> consumer) {
     try (CloseableHttpResponse response = getCollectionsCloseableResp(bucketName, offset, limit, includeDeleted, tag)) {
-      return buildRepoCollectionObjectsMetadataList(bucketName, response);
+      readRepoCollectionObjectsMetadataList(bucketName, response, consumer);
     } catch (IOException e) {
       throw serviceServerException(e, "Error handling the response when getting all the collections. RepoMessage: ");
     }
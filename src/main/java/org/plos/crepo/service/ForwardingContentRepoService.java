@@ -0,0 +1,234 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service;
+
+import org.plos.crepo.model.identity.RepoId;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.identity.RepoVersionNumber;
+import org.plos.crepo.model.identity.RepoVersionTag;
+import org.plos.crepo.model.input.RepoCollectionInput;
+import org.plos.crepo.model.input.RepoObjectInput;
+import org.plos.crepo.model.metadata.RepoCollectionList;
+import org.plos.crepo.model.metadata.RepoCollectionMetadata;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A service that forwards every call to another service. Subclasses override only the methods whose behavior they
+ * decorate, such as caching layers stacked on top of a {@link ContentRepoServiceImpl}.
+ */
+public abstract class ForwardingContentRepoService implements ContentRepoService {
+
+  private final ContentRepoService delegate;
+
+  protected ForwardingContentRepoService(ContentRepoService delegate) {
+    this.delegate = Objects.requireNonNull(delegate);
+  }
+
+  /**
+   * @return the service to which calls are forwarded
+   */
+  protected ContentRepoService delegate() {
+    return delegate;
+  }
+
+
+  // ------------------------ Config ------------------------
+
+  @Override
+  public boolean hasXReproxy() {
+    return delegate.hasXReproxy();
+  }
+
+  @Override
+  public Map<String, Object> getRepoConfig() {
+    return delegate.getRepoConfig();
+  }
+
+  @Override
+  public Map<String, Object> getRepoStatus() {
+    return delegate.getRepoStatus();
+  }
+
+
+  // ------------------------ Buckets ------------------------
+
+  @Override
+  public List<Map<String, Object>> getBuckets() {
+    return delegate.getBuckets();
+  }
+
+  @Override
+  public Map<String, Object> getBucket(String key) {
+    return delegate.getBucket(key);
+  }
+
+  @Override
+  public Map<String, Object> createBucket(String key) {
+    return delegate.createBucket(key);
+  }
+
+
+  // ------------------------ Objects ------------------------
+
+  @Override
+  @Deprecated
+  public InputStream getLatestRepoObject(RepoId id) {
+    return delegate.getLatestRepoObject(id);
+  }
+
+  @Override
+  public InputStream getRepoObject(RepoVersion version) {
+    return delegate.getRepoObject(version);
+  }
+
+  @Override
+  public InputStream getRepoObject(RepoVersionNumber number) {
+    return delegate.getRepoObject(number);
+  }
+
+  @Override
+  @Deprecated
+  public RepoObjectMetadata getLatestRepoObjectMetadata(RepoId id) {
+    return delegate.getLatestRepoObjectMetadata(id);
+  }
+
+  @Override
+  public RepoObjectMetadata getRepoObjectMetadata(RepoVersion version) {
+    return delegate.getRepoObjectMetadata(version);
+  }
+
+  @Override
+  public RepoObjectMetadata getRepoObjectMetadata(RepoVersionNumber number) {
+    return delegate.getRepoObjectMetadata(number);
+  }
+
+  @Override
+  public RepoObjectMetadata getRepoObjectMetadata(RepoVersionTag tagObj) {
+    return delegate.getRepoObjectMetadata(tagObj);
+  }
+
+  @Override
+  public List<RepoObjectMetadata> getRepoObjectVersions(RepoId id) {
+    return delegate.getRepoObjectVersions(id);
+  }
+
+  @Override
+  @Deprecated
+  public boolean deleteLatestRepoObject(RepoId id) {
+    return delegate.deleteLatestRepoObject(id);
+  }
+
+  @Override
+  public boolean deleteRepoObject(RepoVersion version) {
+    return delegate.deleteRepoObject(version);
+  }
+
+  @Override
+  public boolean deleteRepoObject(RepoVersionNumber number) {
+    return delegate.deleteRepoObject(number);
+  }
+
+  @Override
+  public RepoObjectMetadata createRepoObject(RepoObjectInput repoObjectInput) {
+    return delegate.createRepoObject(repoObjectInput);
+  }
+
+  @Override
+  public RepoObjectMetadata versionRepoObject(RepoObjectInput repoObjectInput) {
+    return delegate.versionRepoObject(repoObjectInput);
+  }
+
+  @Override
+  public RepoObjectMetadata autoCreateRepoObject(RepoObjectInput repoObjectInput) {
+    return delegate.autoCreateRepoObject(repoObjectInput);
+  }
+
+  @Override
+  public List<RepoObjectMetadata> getRepoObjects(String bucketName, int offset, int limit, boolean includeDeleted, String tag) {
+    return delegate.getRepoObjects(bucketName, offset, limit, includeDeleted, tag);
+  }
+
+
+  // ------------------------ Collections ------------------------
+
+  @Override
+  public RepoCollectionList createCollection(RepoCollectionInput repoCollectionInput) {
+    return delegate.createCollection(repoCollectionInput);
+  }
+
+  @Override
+  public RepoCollectionList versionCollection(RepoCollectionInput repoCollectionInput) {
+    return delegate.versionCollection(repoCollectionInput);
+  }
+
+  @Override
+  public RepoCollectionList autoCreateCollection(RepoCollectionInput repoCollectionInput) {
+    return delegate.autoCreateCollection(repoCollectionInput);
+  }
+
+  @Override
+  public boolean deleteCollection(RepoVersion version) {
+    return delegate.deleteCollection(version);
+  }
+
+  @Override
+  public boolean deleteCollection(RepoVersionNumber number) {
+    return delegate.deleteCollection(number);
+  }
+
+  @Override
+  public RepoCollectionList getCollection(RepoVersion version) {
+    return delegate.getCollection(version);
+  }
+
+  @Override
+  public RepoCollectionList getCollection(RepoVersionNumber number) {
+    return delegate.getCollection(number);
+  }
+
+  @Override
+  public RepoCollectionList getCollection(RepoVersionTag tagObj) {
+    return delegate.getCollection(tagObj);
+  }
+
+  @Override
+  public RepoCollectionMetadata getLatestCollection(RepoId id) {
+    return delegate.getLatestCollection(id);
+  }
+
+  @Override
+  public List<RepoCollectionList> getCollectionVersions(RepoId id) {
+    return delegate.getCollectionVersions(id);
+  }
+
+  @Override
+  public List<RepoCollectionMetadata> getCollections(String bucketName, int offset, int limit, boolean includeDeleted, String tag) {
+    return delegate.getCollections(bucketName, offset, limit, includeDeleted, tag);
+  }
+
+}
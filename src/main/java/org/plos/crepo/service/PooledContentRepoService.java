@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.plos.crepo.service;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.plos.crepo.config.HttpClientFunction;
+import org.plos.crepo.json.RepoJsonCodec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * A service that owns the pool of connections through which it makes requests. Built by {@link
+ * ContentRepoServiceBuilder}.
+ */
+public class PooledContentRepoService extends ContentRepoServiceImpl implements Closeable {
+
+  private final CloseableHttpClient client;
+  private final PoolingHttpClientConnectionManager connectionManager;
+  private final ScheduledExecutorService evictor;
+
+  PooledContentRepoService(String repoServer, HttpClientFunction function, RepoJsonCodec jsonCodec,
+                           CloseableHttpClient client, PoolingHttpClientConnectionManager connectionManager,
+                           ScheduledExecutorService evictor) {
+    super(repoServer, function, jsonCodec);
+    this.client = client;
+    this.connectionManager = connectionManager;
+    this.evictor = evictor;
+  }
+
+  /**
+   * @return the number of connections leased, available and pending in the pool
+   */
+  public PoolStats getPoolStats() {
+    return connectionManager.getTotalStats();
+  }
+
+  /**
+   * Stop evicting connections and close every connection in the pool. Streams still open on object content are cut
+   * off.
+   */
+  @Override
+  public void close() throws IOException {
+    evictor.shutdownNow();
+    client.close();
+  }
+
+}
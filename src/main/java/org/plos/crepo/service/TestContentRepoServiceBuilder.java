@@ -22,17 +22,18 @@
 
 package org.plos.crepo.service;
 
-import com.google.gson.Gson;
 import org.plos.crepo.config.ContentRepoAccessConfig;
 import org.plos.crepo.dao.buckets.ContentRepoBucketsDao;
 import org.plos.crepo.dao.collections.ContentRepoCollectionDao;
 import org.plos.crepo.dao.config.ContentRepoConfigDao;
 import org.plos.crepo.dao.objects.ContentRepoObjectDao;
+import org.plos.crepo.json.GsonRepoJsonCodec;
+import org.plos.crepo.json.RepoJsonCodec;
 
 class TestContentRepoServiceBuilder {
 
   private ContentRepoAccessConfig accessConfig;
-  private Gson gson;
+  private RepoJsonCodec jsonCodec = GsonRepoJsonCodec.getInstance();
   private ContentRepoConfigDao configDao;
   private ContentRepoBucketsDao bucketsDao;
   private ContentRepoObjectDao objectDao;
@@ -54,12 +55,12 @@ class TestContentRepoServiceBuilder {
     return this;
   }
 
-  public Gson getGson() {
-    return gson;
+  public RepoJsonCodec getJsonCodec() {
+    return jsonCodec;
   }
 
-  public TestContentRepoServiceBuilder setGson(Gson gson) {
-    this.gson = gson;
+  public TestContentRepoServiceBuilder setJsonCodec(RepoJsonCodec jsonCodec) {
+    this.jsonCodec = jsonCodec;
     return this;
   }
 
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.bulk;
+
+import com.google.common.util.concurrent.RateLimiter;
+import org.plos.crepo.exceptions.ContentRepoException;
+import org.plos.crepo.exceptions.ErrorType;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.identity.RepoVersionNumber;
+import org.plos.crepo.model.identity.RepoVersionTag;
+import org.plos.crepo.model.input.RepoObjectInput;
+import org.plos.crepo.model.metadata.RepoCollectionList;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+import org.plos.crepo.service.ContentRepoService;
+import org.plos.crepo.service.ForwardingContentRepoService;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A service that adds bulk operations, which make many requests at once and wait for all of them. At most a configured
+ * number of requests are in progress at a time, and the whole operation is bounded by a deadline, so the time it takes
+ * is close to that of the slowest request rather than the sum of all of them.
+ * <p>
+ * A bulk operation does not fail as a whole. Each item's result or exception is reported in a {@link BulkResult}.
+ * <p>
+ * Requests go through the wrapped service, and so share its connection pool and any caching decorators. The pool
+ * should allow at least as many connections per route as the concurrency limit.
+ */
+public class BulkContentRepoService extends ForwardingContentRepoService {
+
+  private final Executor executor;
+  private final int maxConcurrency;
+  private final long timeoutNanos;
+
+  /**
+   * @param delegate       the service through which to make requests
+   * @param executor       the executor on which to make requests
+   * @param maxConcurrency the most requests that one bulk operation may have in progress at once
+   * @param timeout        the longest time that one bulk operation may take
+   * @param unit           the unit of {@code timeout}
+   */
+  public BulkContentRepoService(ContentRepoService delegate, Executor executor, int maxConcurrency,
+                                long timeout, TimeUnit unit) {
+    super(delegate);
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("maxConcurrency must be positive");
+    }
+    this.executor = Objects.requireNonNull(executor);
+    this.maxConcurrency = maxConcurrency;
+    this.timeoutNanos = unit.toNanos(timeout);
+  }
+
+  private static RuntimeException timedOut(Object key) {
+    return new ContentRepoException.ContentRepoExceptionBuilder(ErrorType.RequestTimedOut)
+        .key(String.valueOf(key))
+        .build();
+  }
+
+  private static RuntimeException unwrap(ExecutionException e) {
+    Throwable cause = e.getCause();
+    if (cause instanceof RuntimeException) {
+      return (RuntimeException) cause;
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    return new ContentRepoException.ContentRepoExceptionBuilder(ErrorType.ServerError).baseException(cause).build();
+  }
+
+  /**
+   * Apply an operation to each of a set of items, with at most the configured number in progress at once. Items that
+   * have not completed at the deadline are cancelled.
+   *
+   * @param keys      the items; duplicates are processed once
+   * @param operation the operation to apply to each item
+   * @return each item's result or exception
+   */
+  protected <K, V> BulkResult<K, V> executeAll(Iterable<? extends K> keys, Function<? super K, ? extends V> operation) {
+    return executeAll(keys, operation, null);
+  }
+
+  /**
+   * Apply an operation to each of a set of items, with at most the configured number in progress at once and,
+   * optionally, at most a given rate of starts. Items that have not completed at the deadline are cancelled.
+   * <p>
+   * The items are iterated only as fast as they can be started, so an iterable that produces them lazily, such as one
+   * that opens files, never has more than the concurrency limit in use at once.
+   *
+   * @param keys        the items; duplicates are processed once
+   * @param operation   the operation to apply to each item
+   * @param rateLimiter limits the rate at which items are started, or {@code null} for no limit
+   * @return each item's result or exception
+   */
+  protected <K, V> BulkResult<K, V> executeAll(Iterable<? extends K> keys, Function<? super K, ? extends V> operation,
+                                               RateLimiter rateLimiter) {
+    long deadline = System.nanoTime() + timeoutNanos;
+    Semaphore permits = new Semaphore(maxConcurrency);
+    Set<K> distinctKeys = new LinkedHashSet<>();
+    Map<K, FutureTask<V>> tasks = new LinkedHashMap<>();
+    Map<K, V> results = new LinkedHashMap<>();
+    Map<K, RuntimeException> failures = new LinkedHashMap<>();
+
+    try {
+      Iterator<? extends K> iterator = keys.iterator();
+      while (iterator.hasNext()) {
+        K key = iterator.next();
+        if (!distinctKeys.add(key)) {
+          continue;
+        }
+        if (!permits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+          break;
+        }
+        if (rateLimiter != null && !rateLimiter.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+          permits.release();
+          break;
+        }
+        FutureTask<V> task = new FutureTask<V>(() -> {
+          try {
+            return operation.apply(key);
+          } finally {
+            permits.release();
+          }
+        });
+        try {
+          executor.execute(task);
+        } catch (RejectedExecutionException e) {
+          permits.release();
+          failures.put(key, e);
+          continue;
+        }
+        tasks.put(key, task);
+      }
+      // Items not reached because the deadline passed are reported as timed out below
+      while (iterator.hasNext()) {
+        distinctKeys.add(iterator.next());
+      }
+
+      for (Map.Entry<K, FutureTask<V>> entry : tasks.entrySet()) {
+        K key = entry.getKey();
+        FutureTask<V> task = entry.getValue();
+        try {
+          results.put(key, task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+        } catch (ExecutionException e) {
+          failures.put(key, unwrap(e));
+        } catch (TimeoutException e) {
+          task.cancel(true);
+          failures.put(key, timedOut(key));
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      for (FutureTask<V> task : tasks.values()) {
+        task.cancel(true);
+      }
+      throw new ContentRepoException.ContentRepoExceptionBuilder(ErrorType.ServerError).baseException(e).build();
+    }
+
+    for (K key : distinctKeys) {
+      if (!results.containsKey(key) && !failures.containsKey(key)) {
+        failures.put(key, timedOut(key));
+      }
+    }
+    return new BulkResult<>(orderBy(distinctKeys, results), orderBy(distinctKeys, failures));
+  }
+
+  private static <K, V> Map<K, V> orderBy(Set<K> keys, Map<K, V> map) {
+    Map<K, V> ordered = new LinkedHashMap<>();
+    for (K key : keys) {
+      if (map.containsKey(key)) {
+        ordered.put(key, map.get(key));
+      }
+    }
+    return ordered;
+  }
+
+
+  // ------------------------ Objects ------------------------
+
+  public BulkResult<RepoVersion, RepoObjectMetadata> getRepoObjectMetadataForVersions(
+      Collection<RepoVersion> versions) {
+    return executeAll(versions, this::getRepoObjectMetadata);
+  }
+
+  public BulkResult<RepoVersionNumber, RepoObjectMetadata> getRepoObjectMetadataForVersionNumbers(
+      Collection<RepoVersionNumber> numbers) {
+    return executeAll(numbers, this::getRepoObjectMetadata);
+  }
+
+  public BulkResult<RepoVersionTag, RepoObjectMetadata> getRepoObjectMetadataForTags(
+      Collection<RepoVersionTag> tags) {
+    return executeAll(tags, this::getRepoObjectMetadata);
+  }
+
+  /**
+   * Create many objects, with at most the concurrency limit being uploaded, and so having their content open, at once.
+   * The inputs are iterated only as fast as they are uploaded, so they may be produced lazily.
+   */
+  public BulkResult<RepoObjectInput, RepoObjectMetadata> createRepoObjects(Iterable<RepoObjectInput> inputs) {
+    return executeAll(inputs, this::createRepoObject);
+  }
+
+  /**
+   * Create many objects as {@link #createRepoObjects(Iterable)} does, starting at most a given number of uploads per
+   * second.
+   */
+  public BulkResult<RepoObjectInput, RepoObjectMetadata> createRepoObjects(Iterable<RepoObjectInput> inputs,
+                                                                           RateLimiter rateLimiter) {
+    return executeAll(inputs, this::createRepoObject, Objects.requireNonNull(rateLimiter));
+  }
+
+  /**
+   * Create or version many objects, with the same limits as {@link #createRepoObjects(Iterable)}.
+   */
+  public BulkResult<RepoObjectInput, RepoObjectMetadata> autoCreateRepoObjects(Iterable<RepoObjectInput> inputs) {
+    return executeAll(inputs, this::autoCreateRepoObject);
+  }
+
+  /**
+   * Create or version many objects as {@link #autoCreateRepoObjects(Iterable)} does, starting at most a given number of
+   * uploads per second.
+   */
+  public BulkResult<RepoObjectInput, RepoObjectMetadata> autoCreateRepoObjects(Iterable<RepoObjectInput> inputs,
+                                                                               RateLimiter rateLimiter) {
+    return executeAll(inputs, this::autoCreateRepoObject, Objects.requireNonNull(rateLimiter));
+  }
+
+  /**
+   * Delete many object versions. An item's result is what {@link #deleteRepoObject(RepoVersion)} returned for it.
+   */
+  public BulkResult<RepoVersion, Boolean> deleteRepoObjectsForVersions(Collection<RepoVersion> versions) {
+    return executeAll(versions, this::deleteRepoObject);
+  }
+
+  /**
+   * Delete many object versions. An item's result is what {@link #deleteRepoObject(RepoVersionNumber)} returned for
+   * it.
+   */
+  public BulkResult<RepoVersionNumber, Boolean> deleteRepoObjectsForVersionNumbers(
+      Collection<RepoVersionNumber> numbers) {
+    return executeAll(numbers, this::deleteRepoObject);
+  }
+
+
+  // ------------------------ Collections ------------------------
+
+  public BulkResult<RepoVersion, RepoCollectionList> getCollectionsForVersions(Collection<RepoVersion> versions) {
+    return executeAll(versions, this::getCollection);
+  }
+
+  public BulkResult<RepoVersionNumber, RepoCollectionList> getCollectionsForVersionNumbers(
+      Collection<RepoVersionNumber> numbers) {
+    return executeAll(numbers, this::getCollection);
+  }
+
+  public BulkResult<RepoVersionTag, RepoCollectionList> getCollectionsForTags(Collection<RepoVersionTag> tags) {
+    return executeAll(tags, this::getCollection);
+  }
+
+  /**
+   * Delete many collection versions. An item's result is what {@link #deleteCollection(RepoVersion)} returned for it.
+   */
+  public BulkResult<RepoVersion, Boolean> deleteCollectionsForVersions(Collection<RepoVersion> versions) {
+    return executeAll(versions, this::deleteCollection);
+  }
+
+  /**
+   * Delete many collection versions. An item's result is what {@link #deleteCollection(RepoVersionNumber)} returned
+   * for it.
+   */
+  public BulkResult<RepoVersionNumber, Boolean> deleteCollectionsForVersionNumbers(
+      Collection<RepoVersionNumber> numbers) {
+    return executeAll(numbers, this::deleteCollection);
+  }
+
+
+
+  // ------------------------ Collection materialization ------------------------
+
+  /**
+   * Look up a collection and download the contents of all its members concurrently, within the concurrency limit and
+   * deadline. Each member is passed to the callback as soon as it has been downloaded; the callback may be called from
+   * several threads at once. A member's content counts against the memory budget until the callback returns.
+   * <p>
+   * Returns once every member has been passed to the callback. Members not downloaded by the deadline are passed with
+   * a {@link ErrorType#RequestTimedOut} failure.
+   *
+   * @param tag              the collection
+   * @param maxBufferedBytes the most bytes of content to hold in memory at once; an object larger than this is
+   *                         downloaded on its own
+   * @param callback         receives each member
+   * @return the collection
+   */
+  public RepoCollectionList materializeCollection(RepoVersionTag tag, long maxBufferedBytes,
+                                                  Consumer<? super MaterializedObject> callback) {
+    long deadline = System.nanoTime() + timeoutNanos;
+    RepoCollectionList collection = getCollection(tag);
+    MemberDownloads downloads = new MemberDownloads(this, executor, collection.getObjects(),
+        maxConcurrency, maxBufferedBytes, deadline, callback::accept);
+    downloads.pump();
+    try {
+      downloads.awaitAll();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      downloads.close();
+      throw new ContentRepoException.ContentRepoExceptionBuilder(ErrorType.ServerError).baseException(e).build();
+    }
+    return collection;
+  }
+
+  /**
+   * Look up a collection and start downloading the contents of its members concurrently, within the concurrency limit
+   * and deadline. The members are delivered in order, and downloads run ahead of the reader only as far as the memory
+   * budget allows.
+   *
+   * @param tag              the collection
+   * @param maxBufferedBytes the most bytes of content to hold in memory at once; an object larger than this is
+   *                         downloaded on its own
+   * @return the collection and its members, which must be closed if not read to the end
+   */
+  public MaterializedCollection materializeCollection(RepoVersionTag tag, long maxBufferedBytes) {
+    long deadline = System.nanoTime() + timeoutNanos;
+    RepoCollectionList collection = getCollection(tag);
+    MemberDownloads downloads = new MemberDownloads(this, executor, collection.getObjects(),
+        maxConcurrency, maxBufferedBytes, deadline, null);
+    downloads.pump();
+    return new MaterializedCollection(collection, downloads);
+  }
+
+}
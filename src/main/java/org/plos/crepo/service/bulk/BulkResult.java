@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.bulk;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+
+/**
+ * The outcome of a bulk operation: a result for each item that succeeded and an exception for each item that failed.
+ * Every distinct item requested appears in exactly one of the two maps, in the order in which it was requested.
+ * <p>
+ * An item that did not complete before the operation's deadline fails with a {@link
+ * org.plos.crepo.exceptions.ContentRepoException} of type {@link org.plos.crepo.exceptions.ErrorType#RequestTimedOut}.
+ */
+public class BulkResult<K, V> {
+
+  private final ImmutableMap<K, V> results;
+  private final ImmutableMap<K, RuntimeException> failures;
+
+  BulkResult(Map<K, V> results, Map<K, RuntimeException> failures) {
+    this.results = ImmutableMap.copyOf(results);
+    this.failures = ImmutableMap.copyOf(failures);
+  }
+
+  public ImmutableMap<K, V> getResults() {
+    return results;
+  }
+
+  public ImmutableMap<K, RuntimeException> getFailures() {
+    return failures;
+  }
+
+  /**
+   * @return true if every item succeeded
+   */
+  public boolean isSuccessful() {
+    return failures.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return "BulkResult{" +
+        "results=" + results.size() +
+        ", failures=" + failures +
+        '}';
+  }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.bulk;
+
+import com.google.common.io.ByteStreams;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.identity.RepoVersionNumber;
+import org.plos.crepo.model.identity.RepoVersionTag;
+import org.plos.crepo.model.metadata.RepoCollectionList;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+import org.plos.crepo.service.ContentRepoService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes the contents of a collection's members to a zip archive as they are downloaded, without holding any of them
+ * in memory.
+ * <p>
+ * While one member is being copied into the archive, the responses for the next few members are opened in the
+ * background, so that the server is already sending them when the copy reaches them. Each entry is named after the
+ * member's download name, or its key if it has none; names are made unique within the archive.
+ */
+public class CollectionZipExporter {
+
+  private static final Logger log = LoggerFactory.getLogger(CollectionZipExporter.class);
+
+  private final ContentRepoService service;
+  private final Executor executor;
+  private final int prefetch;
+
+  /**
+   * @param service  the service from which to download
+   * @param executor the executor on which to open responses ahead of time
+   * @param prefetch the number of members after the current one to open ahead of time
+   */
+  public CollectionZipExporter(ContentRepoService service, Executor executor, int prefetch) {
+    if (prefetch < 0) {
+      throw new IllegalArgumentException("prefetch must not be negative");
+    }
+    this.service = Objects.requireNonNull(service);
+    this.executor = Objects.requireNonNull(executor);
+    this.prefetch = prefetch;
+  }
+
+  public RepoCollectionList export(RepoVersion version, OutputStream output) throws IOException {
+    return export(service.getCollection(version), output);
+  }
+
+  public RepoCollectionList export(RepoVersionNumber number, OutputStream output) throws IOException {
+    return export(service.getCollection(number), output);
+  }
+
+  public RepoCollectionList export(RepoVersionTag tag, OutputStream output) throws IOException {
+    return export(service.getCollection(tag), output);
+  }
+
+  /**
+   * Write an archive of a collection's members. The archive is finished, but the output stream is not closed.
+   *
+   * @param collection the collection
+   * @param output     the stream to which to write the archive
+   * @return the collection
+   */
+  public RepoCollectionList export(RepoCollectionList collection, OutputStream output) throws IOException {
+    List<RepoObjectMetadata> members = collection.getObjects();
+    Iterator<RepoObjectMetadata> toOpen = members.iterator();
+    Deque<CompletableFuture<InputStream>> opening = new ArrayDeque<>();
+    Set<String> names = new HashSet<>();
+    ZipOutputStream zip = new ZipOutputStream(output);
+    try {
+      for (RepoObjectMetadata member : members) {
+        while (toOpen.hasNext() && opening.size() <= prefetch) {
+          RepoVersion version = toOpen.next().getVersion();
+          opening.add(CompletableFuture.supplyAsync(() -> service.getRepoObject(version), executor));
+        }
+        try (InputStream content = join(opening.remove())) {
+          zip.putNextEntry(new ZipEntry(uniqueName(names, member)));
+          ByteStreams.copy(content, zip);
+          zip.closeEntry();
+        }
+      }
+      zip.finish();
+    } finally {
+      // Responses opened ahead of a failure are closed once they arrive
+      for (CompletableFuture<InputStream> future : opening) {
+        future.thenAccept(CollectionZipExporter::closeQuietly);
+      }
+    }
+    return collection;
+  }
+
+  private static InputStream join(CompletableFuture<InputStream> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw e;
+    }
+  }
+
+  private static void closeQuietly(InputStream stream) {
+    try {
+      stream.close();
+    } catch (IOException e) {
+      log.warn("Error closing prefetched content", e);
+    }
+  }
+
+  /**
+   * Choose an entry name that is not a path and that no earlier entry has, by numbering repeated names before their
+   * extension, as in {@code figure (2).png}.
+   */
+  static String uniqueName(Set<String> names, RepoObjectMetadata member) {
+    String name = member.getDownloadName().orElse(member.getVersion().getId().getKey())
+        .replace('/', '_').replace('\\', '_');
+    if (name.isEmpty() || name.equals(".") || name.equals("..")) {
+      name = "_" + name;
+    }
+    String candidate = name;
+    int extension = name.lastIndexOf('.');
+    String base = (extension > 0) ? name.substring(0, extension) : name;
+    String suffix = (extension > 0) ? name.substring(extension) : "";
+    for (int count = 2; !names.add(candidate); count++) {
+      candidate = base + " (" + count + ")" + suffix;
+    }
+    return candidate;
+  }
+
+}
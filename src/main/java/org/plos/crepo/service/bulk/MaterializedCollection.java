@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.bulk;
+
+import org.plos.crepo.model.metadata.RepoCollectionList;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A collection whose members are being downloaded in the background. The members are delivered in the collection's
+ * order, each as soon as it and all the members before it have been downloaded.
+ * <p>
+ * Each member's content counts against the memory budget until it has been taken from the iterator. Close this
+ * object to cancel the downloads of any members not taken.
+ */
+public class MaterializedCollection implements Iterable<MaterializedObject>, AutoCloseable {
+
+  private final RepoCollectionList collection;
+  private final MemberDownloads downloads;
+
+  MaterializedCollection(RepoCollectionList collection, MemberDownloads downloads) {
+    this.collection = collection;
+    this.downloads = downloads;
+  }
+
+  public RepoCollectionList getCollection() {
+    return collection;
+  }
+
+  /**
+   * @return an iterator over the members; it may be obtained only once, since taking a member releases its content
+   */
+  @Override
+  public Iterator<MaterializedObject> iterator() {
+    return downloads;
+  }
+
+  public Stream<MaterializedObject> stream() {
+    Spliterator<MaterializedObject> spliterator = Spliterators.spliterator(downloads, collection.getObjectCount(),
+        Spliterator.ORDERED | Spliterator.NONNULL);
+    return StreamSupport.stream(spliterator, false).onClose(this::close);
+  }
+
+  @Override
+  public void close() {
+    downloads.close();
+  }
+
+}
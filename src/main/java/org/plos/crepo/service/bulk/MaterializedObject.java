@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.bulk;
+
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A member of a collection together with its downloaded content, or the reason it could not be downloaded.
+ */
+public class MaterializedObject {
+
+  private final RepoObjectMetadata metadata;
+  private final byte[] content;
+  private final RuntimeException failure;
+
+  private MaterializedObject(RepoObjectMetadata metadata, byte[] content, RuntimeException failure) {
+    this.metadata = Objects.requireNonNull(metadata);
+    this.content = content;
+    this.failure = failure;
+  }
+
+  static MaterializedObject success(RepoObjectMetadata metadata, byte[] content) {
+    return new MaterializedObject(metadata, Objects.requireNonNull(content), null);
+  }
+
+  static MaterializedObject failure(RepoObjectMetadata metadata, RuntimeException failure) {
+    return new MaterializedObject(metadata, null, Objects.requireNonNull(failure));
+  }
+
+  public RepoObjectMetadata getMetadata() {
+    return metadata;
+  }
+
+  /**
+   * @return the object's content
+   * @throws RuntimeException the exception with which the download failed, if it did
+   */
+  public byte[] getContent() {
+    if (failure != null) {
+      throw failure;
+    }
+    return content;
+  }
+
+  public Optional<RuntimeException> getFailure() {
+    return Optional.ofNullable(failure);
+  }
+
+  @Override
+  public String toString() {
+    return "MaterializedObject{" +
+        "version=" + metadata.getVersion() +
+        (failure == null ? ", size=" + content.length : ", failure=" + failure) +
+        '}';
+  }
+
+}
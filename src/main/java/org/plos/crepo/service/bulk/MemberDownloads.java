@@ -0,0 +1,301 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.bulk;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.ByteStreams;
+import org.plos.crepo.exceptions.ContentRepoException;
+import org.plos.crepo.exceptions.ErrorType;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+import org.plos.crepo.service.ContentRepoService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Downloads the contents of a list of objects concurrently into memory, within a limit on the number of downloads in
+ * progress and on the number of bytes held.
+ * <p>
+ * Downloads are started in list order. Each one reserves its object's size, capped at the whole budget, until its
+ * content has been delivered. Because the earliest undelivered object is always the next one started, delivering in
+ * list order can never wait on a budget held by later objects.
+ * <p>
+ * Nothing here keeps an object's content once it has been handed over, so that the budget bounds the content that is
+ * actually reachable.
+ */
+class MemberDownloads implements Iterator<MaterializedObject> {
+
+  /**
+   * Receives each downloaded object. May be called from several threads at once.
+   */
+  interface Callback {
+    void accept(MaterializedObject object);
+  }
+
+  private final ContentRepoService service;
+  private final Executor executor;
+  private final List<RepoObjectMetadata> members;
+  private final int maxConcurrency;
+  private final long maxBufferedBytes;
+  private final long deadline;
+  private final Callback callback;
+
+  /**
+   * The result of each object until it is handed over to the consumer, after which its slot is cleared. With a
+   * callback, results are completed with {@code null} once the callback returns, only to signal that it is done.
+   */
+  private final AtomicReferenceArray<CompletableFuture<MaterializedObject>> results;
+  private final List<AtomicBoolean> claimed;
+  private final List<FutureTask<Void>> tasks;
+
+  // Guarded by this
+  private final boolean[] reserved; // whether a member's reservation is counted in bufferedBytes
+  private int started;
+  private int running;
+  private long bufferedBytes;
+  private boolean closed;
+
+  // Accessed only by the consuming thread
+  private int delivered;
+
+  /**
+   * @param callback receives each object as soon as it is downloaded, or {@code null} to deliver them in list order
+   *                 through {@link #next()}
+   */
+  MemberDownloads(ContentRepoService service, Executor executor, List<RepoObjectMetadata> members,
+                  int maxConcurrency, long maxBufferedBytes, long deadline, Callback callback) {
+    if (maxBufferedBytes < 1) {
+      throw new IllegalArgumentException("maxBufferedBytes must be positive");
+    }
+    this.service = service;
+    this.executor = executor;
+    this.members = members;
+    this.maxConcurrency = maxConcurrency;
+    this.maxBufferedBytes = maxBufferedBytes;
+    this.deadline = deadline;
+    this.callback = callback;
+
+    int size = members.size();
+    this.results = new AtomicReferenceArray<>(size);
+    this.claimed = new ArrayList<>(size);
+    this.tasks = new ArrayList<>(size);
+    this.reserved = new boolean[size];
+    for (int i = 0; i < size; i++) {
+      results.set(i, new CompletableFuture<>());
+      claimed.add(new AtomicBoolean());
+      tasks.add(null);
+    }
+  }
+
+  private long reservation(RepoObjectMetadata member) {
+    return Math.min(Math.max(member.getSize(), 1L), maxBufferedBytes);
+  }
+
+  /**
+   * Start as many downloads, in order, as the limits allow. Members whose download the executor rejects are delivered
+   * as failures once the monitor is released, so that a callback never runs while it is held.
+   */
+  void pump() {
+    Map<Integer, RejectedExecutionException> rejected = new LinkedHashMap<>();
+    do {
+      for (Map.Entry<Integer, RejectedExecutionException> entry : rejected.entrySet()) {
+        int index = entry.getKey();
+        deliver(index, MaterializedObject.failure(members.get(index), entry.getValue()));
+      }
+      rejected.clear();
+      startDownloads(rejected);
+    } while (!rejected.isEmpty());
+  }
+
+  private synchronized void startDownloads(Map<Integer, RejectedExecutionException> rejected) {
+    while (!closed && started < members.size() && running < maxConcurrency
+        && bufferedBytes + reservation(members.get(started)) <= maxBufferedBytes) {
+      int index = started++;
+      RepoObjectMetadata member = members.get(index);
+      bufferedBytes += reservation(member);
+      reserved[index] = true;
+      running++;
+
+      FutureTask<Void> task = new FutureTask<>(() -> download(index, member), null);
+      tasks.set(index, task);
+      try {
+        executor.execute(task);
+      } catch (RejectedExecutionException e) {
+        running--;
+        rejected.put(index, e);
+      }
+    }
+  }
+
+  private void download(int index, RepoObjectMetadata member) {
+    MaterializedObject result;
+    try (InputStream stream = service.getRepoObject(member.getVersion())) {
+      result = MaterializedObject.success(member, ByteStreams.toByteArray(stream));
+    } catch (IOException e) {
+      result = MaterializedObject.failure(member,
+          new ContentRepoException.ContentRepoExceptionBuilder(ErrorType.ErrorFetchingObject)
+              .baseException(e)
+              .key(member.getVersion().getId().getKey())
+              .build());
+    } catch (RuntimeException e) {
+      result = MaterializedObject.failure(member, e);
+    }
+    synchronized (this) {
+      running--;
+    }
+    deliver(index, result);
+    pump();
+  }
+
+  /**
+   * Hand over an object's result, unless another result has already been handed over for it.
+   */
+  private void deliver(int index, MaterializedObject result) {
+    if (!claimed.get(index).compareAndSet(false, true)) {
+      return;
+    }
+    CompletableFuture<MaterializedObject> future = results.get(index);
+    if (callback == null) {
+      if (future != null) {
+        future.complete(result);
+      }
+    } else {
+      try {
+        callback.accept(result);
+      } finally {
+        future.complete(null);
+        release(index);
+      }
+    }
+  }
+
+  /**
+   * Return a member's reservation to the budget, if it was ever reserved. Members that were never started, such as
+   * those failed at the deadline, hold nothing.
+   */
+  private synchronized void release(int index) {
+    if (reserved[index]) {
+      reserved[index] = false;
+      bufferedBytes -= reservation(members.get(index));
+    }
+  }
+
+  @VisibleForTesting
+  synchronized long getBufferedBytes() {
+    return bufferedBytes;
+  }
+
+  private static RuntimeException timedOut(RepoObjectMetadata member) {
+    return new ContentRepoException.ContentRepoExceptionBuilder(ErrorType.RequestTimedOut)
+        .key(member.getVersion().getId().getKey())
+        .build();
+  }
+
+  /**
+   * Wait for every callback to be made. Objects that have not been delivered at the deadline are cancelled, and
+   * delivered with a timeout failure from the calling thread.
+   */
+  void awaitAll() throws InterruptedException {
+    for (int index = 0; index < members.size(); index++) {
+      try {
+        results.get(index).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+      } catch (ExecutionException e) {
+        throw new AssertionError(e); // results are never completed exceptionally
+      } catch (TimeoutException e) {
+        close();
+        for (int remaining = index; remaining < members.size(); remaining++) {
+          RepoObjectMetadata member = members.get(remaining);
+          deliver(remaining, MaterializedObject.failure(member, timedOut(member)));
+        }
+        return;
+      }
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    return delivered < members.size();
+  }
+
+  @Override
+  public MaterializedObject next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    int index = delivered++;
+    RepoObjectMetadata member = members.get(index);
+    MaterializedObject result;
+    try {
+      result = results.get(index).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+      results.set(index, null);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new ContentRepoException.ContentRepoExceptionBuilder(ErrorType.ServerError).baseException(e).build();
+    } catch (ExecutionException e) {
+      throw new AssertionError(e); // results are never completed exceptionally
+    } catch (TimeoutException e) {
+      close(); // every later member would time out too
+      claimed.get(index).set(true);
+      results.set(index, null);
+      result = MaterializedObject.failure(member, timedOut(member));
+    }
+    release(index);
+    pump();
+    return result;
+  }
+
+  /**
+   * Start no more downloads and cancel those in progress.
+   */
+  void close() {
+    List<FutureTask<Void>> toCancel = new ArrayList<>();
+    synchronized (this) {
+      closed = true;
+      for (FutureTask<Void> task : tasks) {
+        if (task != null) {
+          toCancel.add(task);
+        }
+      }
+    }
+    for (FutureTask<Void> task : toCancel) {
+      task.cancel(true);
+    }
+  }
+
+}
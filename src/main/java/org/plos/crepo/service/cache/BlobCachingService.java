@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.cache;
+
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.identity.RepoVersionNumber;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+import org.plos.crepo.service.ContentRepoService;
+import org.plos.crepo.service.ForwardingContentRepoService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A service that keeps object content in a {@link DiskBlobCache}, so that content that was read before is streamed
+ * from local disk instead of the network.
+ * <p>
+ * Each read first looks up the object's metadata to find its checksum, so this decorator should be stacked on top of a
+ * {@link VersionMetadataCachingService} to avoid a round trip on every hit. Objects without a checksum, or too large
+ * for the cache, are streamed from the server as before. Content that does not match its checksum is rejected with a
+ * {@link org.plos.crepo.exceptions.ContentRepoException}.
+ */
+public class BlobCachingService extends ForwardingContentRepoService {
+
+  private static final Logger log = LoggerFactory.getLogger(BlobCachingService.class);
+
+  private final DiskBlobCache blobCache;
+
+  public BlobCachingService(ContentRepoService delegate, DiskBlobCache blobCache) {
+    super(delegate);
+    this.blobCache = Objects.requireNonNull(blobCache);
+  }
+
+  @Override
+  public InputStream getRepoObject(RepoVersion version) {
+    return read(getRepoObjectMetadata(version));
+  }
+
+  @Override
+  public InputStream getRepoObject(RepoVersionNumber number) {
+    return read(getRepoObjectMetadata(number));
+  }
+
+  private InputStream read(RepoObjectMetadata metadata) {
+    RepoVersion version = metadata.getVersion();
+    Optional<String> checksum = metadata.getChecksum();
+    if (!checksum.isPresent() || !blobCache.isCacheable(checksum.get(), metadata.getSize())) {
+      return super.getRepoObject(version);
+    }
+
+    try {
+      InputStream cached = blobCache.open(checksum.get());
+      if (cached != null) return cached;
+      try (InputStream content = super.getRepoObject(version)) {
+        return blobCache.store(checksum.get(), content);
+      }
+    } catch (IOException e) {
+      // A full or broken disk should not fail the read, so go around the cache
+      log.warn("Error reading or writing the cached content of " + version + "; reading it from the server", e);
+      return super.getRepoObject(version);
+    }
+  }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.cache;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Helpers for reading through Guava caches without letting the cache's exception wrapping leak to the client.
+ */
+class CacheLoading {
+
+  private CacheLoading() {
+  }
+
+  /**
+   * Get a value from the cache, loading it with {@code loader} on a miss. Concurrent misses on the same key wait for a
+   * single load. If the loader throws, the original exception (such as a {@link
+   * org.plos.crepo.exceptions.ContentRepoException} or {@link org.plos.crepo.exceptions.NotFoundException}) is rethrown
+   * unwrapped and nothing is cached.
+   */
+  static <K, V> V getOrLoad(Cache<K, V> cache, K key, Supplier<? extends V> loader) {
+    try {
+      return cache.get(key, loader::get);
+    } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.cache;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.io.ByteStreams;
+import org.plos.crepo.exceptions.ContentRepoException;
+import org.plos.crepo.exceptions.ErrorType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * A local directory of object content, addressed by the checksum that the content repo computed for it. Content that is
+ * stored under several keys or versions is kept only once.
+ * <p>
+ * Content is downloaded to a temporary file, verified against its checksum and then atomically moved into place, so a
+ * reader never sees a partial file. The directory is bounded by a total number of bytes, with the least recently read
+ * files deleted first. Files already present when the cache is created are adopted, oldest first.
+ * <p>
+ * This class is thread-safe, but assumes that no other process writes to its directory.
+ */
+public class DiskBlobCache {
+
+  private static final Logger log = LoggerFactory.getLogger(DiskBlobCache.class);
+
+  private static final Pattern CHECKSUM_PATTERN = Pattern.compile("[0-9a-f]{8,}");
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private final Path directory;
+  private final long maximumBytes;
+  private final HashFunction hashFunction;
+
+  // Access-ordered, so iteration starts with the least recently used file. Guarded by itself.
+  private final LinkedHashMap<String, Long> sizes = new LinkedHashMap<>(16, 0.75f, true);
+  private long totalBytes = 0L;
+
+  /**
+   * Create a cache that verifies content with SHA-1, as the content repo server does.
+   *
+   * @param directory    the directory in which to keep files, which is created if necessary
+   * @param maximumBytes the total size of the files to keep
+   */
+  public DiskBlobCache(Path directory, long maximumBytes) throws IOException {
+    this(directory, maximumBytes, Hashing.sha1());
+  }
+
+  /**
+   * @param directory    the directory in which to keep files, which is created if necessary
+   * @param maximumBytes the total size of the files to keep
+   * @param hashFunction the function that the server uses to produce checksums
+   */
+  public DiskBlobCache(Path directory, long maximumBytes, HashFunction hashFunction) throws IOException {
+    Preconditions.checkArgument(maximumBytes >= 0);
+    this.directory = Files.createDirectories(directory);
+    this.maximumBytes = maximumBytes;
+    this.hashFunction = Objects.requireNonNull(hashFunction);
+    adoptExistingFiles();
+  }
+
+  private void adoptExistingFiles() throws IOException {
+    try (Stream<Path> files = Files.walk(directory, 2)) {
+      Iterator<Path> iterator = files.filter(Files::isRegularFile)
+          .sorted(Comparator.comparing(DiskBlobCache::lastModified))
+          .iterator();
+      while (iterator.hasNext()) {
+        Path file = iterator.next();
+        String name = file.getFileName().toString();
+        if (name.endsWith(TEMP_SUFFIX)) {
+          Files.deleteIfExists(file); // left over from an interrupted download
+        } else if (CHECKSUM_PATTERN.matcher(name).matches() && file.equals(pathFor(name))) {
+          register(name, Files.size(file));
+        }
+      }
+    }
+  }
+
+  private static long lastModified(Path file) {
+    try {
+      return Files.readAttributes(file, BasicFileAttributes.class).lastModifiedTime().toMillis();
+    } catch (IOException e) {
+      return 0L;
+    }
+  }
+
+  /**
+   * @return true if content with this checksum can be stored in this cache
+   */
+  public boolean isCacheable(String checksum, long size) {
+    return size <= maximumBytes && CHECKSUM_PATTERN.matcher(normalize(checksum)).matches();
+  }
+
+  private static String normalize(String checksum) {
+    return checksum.toLowerCase();
+  }
+
+  private Path pathFor(String checksum) {
+    return directory.resolve(checksum.substring(0, 2)).resolve(checksum);
+  }
+
+  /**
+   * Open cached content.
+   *
+   * @param checksum the content's checksum
+   * @return a stream of the content, or null if it is not cached
+   */
+  public InputStream open(String checksum) throws IOException {
+    checksum = normalize(checksum);
+    synchronized (sizes) {
+      if (sizes.get(checksum) == null) return null;
+    }
+    try {
+      return Channels.newInputStream(FileChannel.open(pathFor(checksum), StandardOpenOption.READ));
+    } catch (NoSuchFileException e) {
+      synchronized (sizes) {
+        Long size = sizes.remove(checksum);
+        if (size != null) totalBytes -= size;
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Download content into the cache and open it. The stream is read to the end but not closed.
+   *
+   * @param checksum the checksum that the content is expected to have
+   * @param content  the content to store
+   * @return a stream of the stored content
+   * @throws ContentRepoException if the content does not match the checksum
+   */
+  public InputStream store(String checksum, InputStream content) throws IOException {
+    checksum = normalize(checksum);
+    Path target = pathFor(checksum);
+    Files.createDirectories(target.getParent());
+    Path temp = Files.createTempFile(target.getParent(), checksum, TEMP_SUFFIX);
+    try {
+      String actual;
+      try (HashingOutputStream hashingStream = new HashingOutputStream(hashFunction, Files.newOutputStream(temp))) {
+        ByteStreams.copy(content, hashingStream);
+        actual = hashingStream.hash().toString();
+      }
+      if (!actual.equals(checksum)) {
+        log.error("Downloaded content did not match its checksum. Expected: " + checksum + " Actual: " + actual);
+        throw new ContentRepoException.ContentRepoExceptionBuilder(ErrorType.ErrorVerifyingObject)
+            .repoMessage("expected " + checksum + " but got " + actual)
+            .build();
+      }
+      Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+
+    // Open before evicting, so that the new file can be read even if it is evicted right away
+    InputStream stream = Channels.newInputStream(FileChannel.open(target, StandardOpenOption.READ));
+    synchronized (sizes) {
+      register(checksum, Files.size(target));
+      evict();
+    }
+    return stream;
+  }
+
+  private void register(String checksum, long size) {
+    synchronized (sizes) {
+      Long previous = sizes.put(checksum, size);
+      totalBytes += size - (previous == null ? 0L : previous);
+    }
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<String, Long>> iterator = sizes.entrySet().iterator();
+    while (totalBytes > maximumBytes && iterator.hasNext()) {
+      Map.Entry<String, Long> eldest = iterator.next();
+      try {
+        Files.deleteIfExists(pathFor(eldest.getKey()));
+      } catch (IOException e) {
+        log.warn("Could not delete cached file for " + eldest.getKey(), e);
+        continue;
+      }
+      totalBytes -= eldest.getValue();
+      iterator.remove();
+    }
+  }
+
+  /**
+   * @return the total size of the files currently in the cache
+   */
+  public long getTotalBytes() {
+    synchronized (sizes) {
+      return totalBytes;
+    }
+  }
+
+  /**
+   * @return the number of files currently in the cache
+   */
+  public int getFileCount() {
+    synchronized (sizes) {
+      return sizes.size();
+    }
+  }
+
+}
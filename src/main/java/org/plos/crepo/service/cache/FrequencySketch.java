@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.cache;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * An approximate, aging count of how often keys were seen recently, used to decide whether a key is popular enough to
+ * be admitted to a cache.
+ * <p>
+ * This is a count-min sketch of four rows of small saturating counters. After a number of increments proportional to
+ * its width, every counter is halved, so that keys which were popular long ago lose their advantage. Estimates can be
+ * too high when keys collide, but never too low.
+ */
+class FrequencySketch {
+
+  private static final int DEPTH = 4;
+  private static final int MAXIMUM_COUNT = 15;
+  private static final int[] SEEDS = {0x97cb3127, 0xb7e15163, 0x9e3779b9, 0xc2b2ae35};
+
+  private final int[] counters;
+  private final int mask;
+  private final int sampleSize;
+  private int additions = 0;
+
+  /**
+   * @param expectedKeys roughly how many distinct keys should be told apart
+   */
+  FrequencySketch(int expectedKeys) {
+    Preconditions.checkArgument(expectedKeys > 0);
+    int width = Integer.highestOneBit(Math.max(expectedKeys - 1, 1)) << 1;
+    this.counters = new int[DEPTH * width];
+    this.mask = width - 1;
+    this.sampleSize = 10 * width;
+  }
+
+  private int indexOf(int hash, int row) {
+    int h = (hash + SEEDS[row]) * SEEDS[row];
+    h ^= h >>> 16;
+    return row * (mask + 1) + (h & mask);
+  }
+
+  synchronized void increment(Object key) {
+    int hash = key.hashCode();
+    for (int row = 0; row < DEPTH; row++) {
+      int index = indexOf(hash, row);
+      if (counters[index] < MAXIMUM_COUNT) {
+        counters[index]++;
+      }
+    }
+    if (++additions >= sampleSize) {
+      age();
+    }
+  }
+
+  synchronized int frequency(Object key) {
+    int hash = key.hashCode();
+    int frequency = MAXIMUM_COUNT;
+    for (int row = 0; row < DEPTH; row++) {
+      frequency = Math.min(frequency, counters[indexOf(hash, row)]);
+    }
+    return frequency;
+  }
+
+  private void age() {
+    for (int i = 0; i < counters.length; i++) {
+      counters[i] >>>= 1;
+    }
+    additions >>>= 1;
+  }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.cache;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.io.ByteStreams;
+import org.apache.commons.io.IOUtils;
+import org.plos.crepo.exceptions.ContentRepoException;
+import org.plos.crepo.exceptions.ErrorType;
+import org.plos.crepo.model.identity.RepoId;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.identity.RepoVersionNumber;
+import org.plos.crepo.service.ContentRepoService;
+import org.plos.crepo.service.ForwardingContentRepoService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.function.Supplier;
+
+/**
+ * A service that holds the content of small, frequently read objects in memory.
+ * <p>
+ * The cache is bounded by the total size of the content it holds. An object is only admitted once it has been read
+ * more than once recently, so a one-off scan over many objects passes through without displacing the objects that are
+ * read over and over. Objects larger than a threshold are never held; they are streamed from the server with only the
+ * first bytes buffered.
+ * <p>
+ * Versions deleted through this service are dropped from the cache.
+ */
+public class HotContentCachingService extends ForwardingContentRepoService {
+
+  private static final Logger log = LoggerFactory.getLogger(HotContentCachingService.class);
+
+  public static final int DEFAULT_MAXIMUM_OBJECT_SIZE = 256 * 1024;
+
+  private static final int ADMISSION_FREQUENCY = 2;
+
+  private final Cache<Object, byte[]> content;
+  private final FrequencySketch sketch;
+  private final int maximumObjectSize;
+
+  public HotContentCachingService(ContentRepoService delegate, long maximumBytes) {
+    this(delegate, maximumBytes, DEFAULT_MAXIMUM_OBJECT_SIZE);
+  }
+
+  /**
+   * @param delegate          the service to read through to
+   * @param maximumBytes      the total size of the content to hold
+   * @param maximumObjectSize the size above which objects are not held
+   */
+  public HotContentCachingService(ContentRepoService delegate, long maximumBytes, int maximumObjectSize) {
+    super(delegate);
+    Preconditions.checkArgument(maximumBytes >= 0);
+    Preconditions.checkArgument(maximumObjectSize >= 0);
+    this.maximumObjectSize = maximumObjectSize;
+    this.content = CacheBuilder.newBuilder()
+        .maximumWeight(maximumBytes)
+        .weigher((Object key, byte[] bytes) -> bytes.length)
+        .recordStats()
+        .build();
+
+    // Track several times as many keys as are expected to fit, to remember the ones that were turned away
+    long expectedObjects = maximumBytes / Math.max(maximumObjectSize / 4, 1);
+    this.sketch = new FrequencySketch((int) Math.min(Math.max(expectedObjects * 4, 64), 1 << 24));
+  }
+
+  /**
+   * @return hit, miss and eviction counts for the cached content
+   */
+  public CacheStats getStats() {
+    return content.stats();
+  }
+
+  @Override
+  public InputStream getRepoObject(RepoVersion version) {
+    return read(version, () -> super.getRepoObject(version));
+  }
+
+  @Override
+  public InputStream getRepoObject(RepoVersionNumber number) {
+    return read(number, () -> super.getRepoObject(number));
+  }
+
+  private InputStream read(Object key, Supplier<InputStream> loader) {
+    sketch.increment(key);
+    byte[] cached = content.getIfPresent(key);
+    if (cached != null) return new ByteArrayInputStream(cached);
+
+    InputStream stream = loader.get();
+    if (sketch.frequency(key) < ADMISSION_FREQUENCY) return stream;
+
+    byte[] prefix;
+    try {
+      prefix = ByteStreams.toByteArray(ByteStreams.limit(stream, maximumObjectSize + 1L));
+    } catch (IOException e) {
+      IOUtils.closeQuietly(stream);
+      log.error("Error buffering the content of " + key, e);
+      throw new ContentRepoException.ContentRepoExceptionBuilder(ErrorType.ErrorFetchingObject)
+          .baseException(e)
+          .build();
+    }
+    if (prefix.length > maximumObjectSize) {
+      return new SequenceInputStream(new ByteArrayInputStream(prefix), stream);
+    }
+    IOUtils.closeQuietly(stream);
+    content.put(key, prefix);
+    return new ByteArrayInputStream(prefix);
+  }
+
+  private void invalidate(RepoId id) {
+    content.asMap().keySet().removeIf(key -> id.equals(key instanceof RepoVersion
+        ? ((RepoVersion) key).getId() : ((RepoVersionNumber) key).getId()));
+  }
+
+  @Override
+  @Deprecated
+  public boolean deleteLatestRepoObject(RepoId id) {
+    try {
+      return super.deleteLatestRepoObject(id);
+    } finally {
+      invalidate(id);
+    }
+  }
+
+  @Override
+  public boolean deleteRepoObject(RepoVersion version) {
+    try {
+      return super.deleteRepoObject(version);
+    } finally {
+      invalidate(version.getId());
+    }
+  }
+
+  @Override
+  public boolean deleteRepoObject(RepoVersionNumber number) {
+    try {
+      return super.deleteRepoObject(number);
+    } finally {
+      invalidate(number.getId());
+    }
+  }
+
+}
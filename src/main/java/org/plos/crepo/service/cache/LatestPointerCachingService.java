@@ -0,0 +1,240 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.cache;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.plos.crepo.model.identity.RepoId;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.identity.RepoVersionNumber;
+import org.plos.crepo.model.identity.RepoVersionTag;
+import org.plos.crepo.model.input.RepoCollectionInput;
+import org.plos.crepo.model.input.RepoObjectInput;
+import org.plos.crepo.model.metadata.RepoCollectionList;
+import org.plos.crepo.model.metadata.RepoCollectionMetadata;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+import org.plos.crepo.service.ContentRepoService;
+import org.plos.crepo.service.ForwardingContentRepoService;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A service that caches the resolution of "latest" and tag lookups, which point to a version that can change when new
+ * versions are written.
+ * <p>
+ * Each pointer is held for at most a configured staleness. Once an entry is halfway to that limit, the next read
+ * returns the cached version and triggers a reload in the background, so a hot key is never reloaded by the callers
+ * themselves. The entries hold the metadata of the version they point to, so a hit needs no further lookup.
+ * <p>
+ * Creating, versioning or deleting through this service updates or invalidates the affected pointers immediately, so
+ * a client always reads its own writes. Writes by other clients become visible within the staleness limit.
+ */
+public class LatestPointerCachingService extends ForwardingContentRepoService {
+
+  public static final long DEFAULT_MAXIMUM_SIZE = 10000L;
+
+  private final RefreshAheadCache<RepoId, RepoObjectMetadata> latestObjects;
+  private final RefreshAheadCache<RepoVersionTag, RepoObjectMetadata> taggedObjects;
+  private final RefreshAheadCache<RepoId, RepoCollectionMetadata> latestCollections;
+  private final RefreshAheadCache<RepoVersionTag, RepoCollectionList> taggedCollections;
+
+  /**
+   * Create a cache that refreshes on a pool of daemon threads.
+   *
+   * @param delegate     the service to read through to
+   * @param maxStaleness the longest time to serve a pointer without reloading it
+   * @param unit         the unit of {@code maxStaleness}
+   */
+  public LatestPointerCachingService(ContentRepoService delegate, long maxStaleness, TimeUnit unit) {
+    this(delegate, maxStaleness, unit, Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+        .setNameFormat("crepo-pointer-refresh-%d").setDaemon(true).build()));
+  }
+
+  /**
+   * @param delegate        the service to read through to
+   * @param maxStaleness    the longest time to serve a pointer without reloading it
+   * @param unit            the unit of {@code maxStaleness}
+   * @param refreshExecutor the executor on which to reload entries in the background
+   */
+  public LatestPointerCachingService(ContentRepoService delegate, long maxStaleness, TimeUnit unit,
+                                     Executor refreshExecutor) {
+    this(delegate, maxStaleness, unit, refreshExecutor, DEFAULT_MAXIMUM_SIZE, Ticker.systemTicker());
+  }
+
+  LatestPointerCachingService(ContentRepoService delegate, long maxStaleness, TimeUnit unit,
+                              Executor refreshExecutor, long maximumSize, Ticker ticker) {
+    super(delegate);
+    this.latestObjects = new RefreshAheadCache<>(delegate::getLatestRepoObjectMetadata,
+        maximumSize, maxStaleness, unit, refreshExecutor, ticker);
+    this.taggedObjects = new RefreshAheadCache<>(delegate::getRepoObjectMetadata,
+        maximumSize, maxStaleness, unit, refreshExecutor, ticker);
+    this.latestCollections = new RefreshAheadCache<>(delegate::getLatestCollection,
+        maximumSize, maxStaleness, unit, refreshExecutor, ticker);
+    this.taggedCollections = new RefreshAheadCache<>(delegate::getCollection,
+        maximumSize, maxStaleness, unit, refreshExecutor, ticker);
+  }
+
+  /**
+   * Discard all cached pointers.
+   */
+  public void invalidateAll() {
+    latestObjects.invalidateAll();
+    taggedObjects.invalidateAll();
+    latestCollections.invalidateAll();
+    taggedCollections.invalidateAll();
+  }
+
+
+  // ------------------------ Objects ------------------------
+
+  @Override
+  @Deprecated
+  public RepoObjectMetadata getLatestRepoObjectMetadata(RepoId id) {
+    return latestObjects.get(id);
+  }
+
+  @Override
+  public RepoObjectMetadata getRepoObjectMetadata(RepoVersionTag tagObj) {
+    return taggedObjects.get(tagObj);
+  }
+
+  private void invalidateObject(RepoId id) {
+    latestObjects.invalidate(id);
+    taggedObjects.invalidateIf(tag -> tag.getId().equals(id));
+  }
+
+  /**
+   * A new version becomes the latest one, but may or may not be the latest one with its tag, so only the tag pointers
+   * are dropped.
+   */
+  private RepoObjectMetadata written(RepoObjectMetadata metadata) {
+    RepoId id = metadata.getVersion().getId();
+    taggedObjects.invalidateIf(tag -> tag.getId().equals(id));
+    latestObjects.put(id, metadata);
+    return metadata;
+  }
+
+  @Override
+  public RepoObjectMetadata createRepoObject(RepoObjectInput repoObjectInput) {
+    return written(super.createRepoObject(repoObjectInput));
+  }
+
+  @Override
+  public RepoObjectMetadata versionRepoObject(RepoObjectInput repoObjectInput) {
+    return written(super.versionRepoObject(repoObjectInput));
+  }
+
+  @Override
+  public RepoObjectMetadata autoCreateRepoObject(RepoObjectInput repoObjectInput) {
+    return written(super.autoCreateRepoObject(repoObjectInput));
+  }
+
+  @Override
+  @Deprecated
+  public boolean deleteLatestRepoObject(RepoId id) {
+    try {
+      return super.deleteLatestRepoObject(id);
+    } finally {
+      invalidateObject(id);
+    }
+  }
+
+  @Override
+  public boolean deleteRepoObject(RepoVersion version) {
+    try {
+      return super.deleteRepoObject(version);
+    } finally {
+      invalidateObject(version.getId());
+    }
+  }
+
+  @Override
+  public boolean deleteRepoObject(RepoVersionNumber number) {
+    try {
+      return super.deleteRepoObject(number);
+    } finally {
+      invalidateObject(number.getId());
+    }
+  }
+
+
+  // ------------------------ Collections ------------------------
+
+  @Override
+  public RepoCollectionMetadata getLatestCollection(RepoId id) {
+    return latestCollections.get(id);
+  }
+
+  @Override
+  public RepoCollectionList getCollection(RepoVersionTag tagObj) {
+    return taggedCollections.get(tagObj);
+  }
+
+  private void invalidateCollection(RepoId id) {
+    latestCollections.invalidate(id);
+    taggedCollections.invalidateIf(tag -> tag.getId().equals(id));
+  }
+
+  private RepoCollectionList written(RepoCollectionList collection) {
+    RepoId id = collection.getVersion().getId();
+    taggedCollections.invalidateIf(tag -> tag.getId().equals(id));
+    latestCollections.put(id, collection);
+    return collection;
+  }
+
+  @Override
+  public RepoCollectionList createCollection(RepoCollectionInput repoCollectionInput) {
+    return written(super.createCollection(repoCollectionInput));
+  }
+
+  @Override
+  public RepoCollectionList versionCollection(RepoCollectionInput repoCollectionInput) {
+    return written(super.versionCollection(repoCollectionInput));
+  }
+
+  @Override
+  public RepoCollectionList autoCreateCollection(RepoCollectionInput repoCollectionInput) {
+    return written(super.autoCreateCollection(repoCollectionInput));
+  }
+
+  @Override
+  public boolean deleteCollection(RepoVersion version) {
+    try {
+      return super.deleteCollection(version);
+    } finally {
+      invalidateCollection(version.getId());
+    }
+  }
+
+  @Override
+  public boolean deleteCollection(RepoVersionNumber number) {
+    try {
+      return super.deleteCollection(number);
+    } finally {
+      invalidateCollection(number.getId());
+    }
+  }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.plos.crepo.exceptions.NotFoundException;
+import org.plos.crepo.model.identity.RepoId;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.identity.RepoVersionNumber;
+import org.plos.crepo.model.identity.RepoVersionTag;
+import org.plos.crepo.model.input.RepoCollectionInput;
+import org.plos.crepo.model.input.RepoObjectInput;
+import org.plos.crepo.model.metadata.RepoCollectionList;
+import org.plos.crepo.model.metadata.RepoCollectionMetadata;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+import org.plos.crepo.service.ContentRepoService;
+import org.plos.crepo.service.ForwardingContentRepoService;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A service that remembers, for a short time, which metadata lookups failed with a {@link NotFoundException}, so that
+ * repeated probes for an absent object or collection are answered without a round trip.
+ * <p>
+ * A remembered miss is replayed as a new {@code NotFoundException} with the original message and no stack trace.
+ * Successfully creating or versioning an object or collection through this service forgets all misses for its key at
+ * once. Objects created by other clients may keep reading as absent until the time to live runs out.
+ */
+public class NotFoundCachingService extends ForwardingContentRepoService {
+
+  public static final long DEFAULT_MAXIMUM_SIZE = 10000L;
+
+  private final Cache<Object, String> objectMisses;
+  private final Cache<Object, String> collectionMisses;
+
+  /**
+   * @param delegate   the service to read through to
+   * @param timeToLive how long to remember that a lookup found nothing
+   * @param unit       the unit of {@code timeToLive}
+   */
+  public NotFoundCachingService(ContentRepoService delegate, long timeToLive, TimeUnit unit) {
+    this(delegate, timeToLive, unit, DEFAULT_MAXIMUM_SIZE);
+  }
+
+  public NotFoundCachingService(ContentRepoService delegate, long timeToLive, TimeUnit unit, long maximumSize) {
+    super(delegate);
+    this.objectMisses = buildCache(timeToLive, unit, maximumSize);
+    this.collectionMisses = buildCache(timeToLive, unit, maximumSize);
+  }
+
+  private static Cache<Object, String> buildCache(long timeToLive, TimeUnit unit, long maximumSize) {
+    return CacheBuilder.newBuilder()
+        .expireAfterWrite(timeToLive, unit)
+        .maximumSize(maximumSize)
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * @return counts of lookups that were answered from a remembered miss ({@code hitCount}) or passed through
+   */
+  public CacheStats getObjectStats() {
+    return objectMisses.stats();
+  }
+
+  /**
+   * @return counts of lookups that were answered from a remembered miss ({@code hitCount}) or passed through
+   */
+  public CacheStats getCollectionStats() {
+    return collectionMisses.stats();
+  }
+
+  private static <T> T lookUp(Cache<Object, String> misses, Object key, Supplier<T> lookup) {
+    String message = misses.getIfPresent(key);
+    if (message != null) {
+      throw new NotFoundException(message, false);
+    }
+    try {
+      return lookup.get();
+    } catch (NotFoundException e) {
+      misses.put(key, String.valueOf(e.getMessage()));
+      throw e;
+    }
+  }
+
+  private static RepoId idOf(Object key) {
+    if (key instanceof RepoVersion) return ((RepoVersion) key).getId();
+    if (key instanceof RepoVersionNumber) return ((RepoVersionNumber) key).getId();
+    if (key instanceof RepoVersionTag) return ((RepoVersionTag) key).getId();
+    return (RepoId) key;
+  }
+
+  private static void forget(Cache<Object, String> misses, RepoId id) {
+    misses.asMap().keySet().removeIf(key -> idOf(key).equals(id));
+  }
+
+
+  // ------------------------ Objects ------------------------
+
+  @Override
+  @Deprecated
+  public RepoObjectMetadata getLatestRepoObjectMetadata(RepoId id) {
+    return lookUp(objectMisses, id, () -> super.getLatestRepoObjectMetadata(id));
+  }
+
+  @Override
+  public RepoObjectMetadata getRepoObjectMetadata(RepoVersion version) {
+    return lookUp(objectMisses, version, () -> super.getRepoObjectMetadata(version));
+  }
+
+  @Override
+  public RepoObjectMetadata getRepoObjectMetadata(RepoVersionNumber number) {
+    return lookUp(objectMisses, number, () -> super.getRepoObjectMetadata(number));
+  }
+
+  @Override
+  public RepoObjectMetadata getRepoObjectMetadata(RepoVersionTag tagObj) {
+    return lookUp(objectMisses, tagObj, () -> super.getRepoObjectMetadata(tagObj));
+  }
+
+  private RepoObjectMetadata written(RepoObjectMetadata metadata) {
+    forget(objectMisses, metadata.getVersion().getId());
+    return metadata;
+  }
+
+  @Override
+  public RepoObjectMetadata createRepoObject(RepoObjectInput repoObjectInput) {
+    return written(super.createRepoObject(repoObjectInput));
+  }
+
+  @Override
+  public RepoObjectMetadata versionRepoObject(RepoObjectInput repoObjectInput) {
+    return written(super.versionRepoObject(repoObjectInput));
+  }
+
+  @Override
+  public RepoObjectMetadata autoCreateRepoObject(RepoObjectInput repoObjectInput) {
+    return written(super.autoCreateRepoObject(repoObjectInput));
+  }
+
+
+  // ------------------------ Collections ------------------------
+
+  @Override
+  public RepoCollectionMetadata getLatestCollection(RepoId id) {
+    return lookUp(collectionMisses, id, () -> super.getLatestCollection(id));
+  }
+
+  @Override
+  public RepoCollectionList getCollection(RepoVersion version) {
+    return lookUp(collectionMisses, version, () -> super.getCollection(version));
+  }
+
+  @Override
+  public RepoCollectionList getCollection(RepoVersionNumber number) {
+    return lookUp(collectionMisses, number, () -> super.getCollection(number));
+  }
+
+  @Override
+  public RepoCollectionList getCollection(RepoVersionTag tagObj) {
+    return lookUp(collectionMisses, tagObj, () -> super.getCollection(tagObj));
+  }
+
+  private RepoCollectionList written(RepoCollectionList metadata) {
+    forget(collectionMisses, metadata.getVersion().getId());
+    return metadata;
+  }
+
+  @Override
+  public RepoCollectionList createCollection(RepoCollectionInput repoCollectionInput) {
+    return written(super.createCollection(repoCollectionInput));
+  }
+
+  @Override
+  public RepoCollectionList versionCollection(RepoCollectionInput repoCollectionInput) {
+    return written(super.versionCollection(repoCollectionInput));
+  }
+
+  @Override
+  public RepoCollectionList autoCreateCollection(RepoCollectionInput repoCollectionInput) {
+    return written(super.autoCreateCollection(repoCollectionInput));
+  }
+
+}
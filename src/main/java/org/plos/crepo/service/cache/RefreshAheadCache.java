@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.cache;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A bounded cache whose entries expire after a maximum staleness, and are reloaded in the background once they are
+ * halfway to expiry so that readers keep getting the old value instead of waiting on the reload.
+ * <p>
+ * A background reload only replaces the entry it was started for. If the entry is overwritten or invalidated while the
+ * reload is in flight, the reloaded value is discarded, so a write through {@link #put} or {@link #invalidate} is never
+ * undone by an older read.
+ */
+class RefreshAheadCache<K, V> {
+
+  private static final Logger log = LoggerFactory.getLogger(RefreshAheadCache.class);
+
+  private static final class Entry<V> {
+    private final V value; // null for a tombstone
+    private final long loadedAt;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private Entry(V value, long loadedAt) {
+      this.value = value;
+      this.loadedAt = loadedAt;
+    }
+  }
+
+  private final Cache<K, Entry<V>> entries;
+  private final Function<? super K, ? extends V> loader;
+  private final Executor refreshExecutor;
+  private final Ticker ticker;
+  private final long refreshAfterNanos;
+
+  RefreshAheadCache(Function<? super K, ? extends V> loader, long maximumSize,
+                    long maxStaleness, TimeUnit unit, Executor refreshExecutor, Ticker ticker) {
+    Preconditions.checkArgument(maxStaleness > 0);
+    this.loader = Objects.requireNonNull(loader);
+    this.refreshExecutor = Objects.requireNonNull(refreshExecutor);
+    this.ticker = Objects.requireNonNull(ticker);
+    this.refreshAfterNanos = unit.toNanos(maxStaleness) / 2;
+    this.entries = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(maxStaleness, unit)
+        .ticker(ticker)
+        .build();
+  }
+
+  V get(K key) {
+    Entry<V> entry = entries.getIfPresent(key);
+    if (entry == null) {
+      return CacheLoading.getOrLoad(entries, key, () -> load(key)).value;
+    }
+    if (entry.value == null) {
+      // Clear the tombstone, unless a concurrent reader already has, and load through the cache so that only one
+      // reader reloads the key
+      entries.asMap().remove(key, entry);
+      return CacheLoading.getOrLoad(entries, key, () -> load(key)).value;
+    }
+    if (ticker.read() - entry.loadedAt >= refreshAfterNanos && entry.refreshing.compareAndSet(false, true)) {
+      refreshExecutor.execute(() -> refresh(key, entry));
+    }
+    return entry.value;
+  }
+
+  private Entry<V> load(K key) {
+    return new Entry<>(Objects.requireNonNull(loader.apply(key)), ticker.read());
+  }
+
+  private void refresh(K key, Entry<V> stale) {
+    try {
+      entries.asMap().replace(key, stale, load(key));
+    } catch (RuntimeException e) {
+      log.warn("Could not refresh " + key + "; serving the cached value until it expires", e);
+      stale.refreshing.set(false);
+    }
+  }
+
+  void put(K key, V value) {
+    entries.put(key, new Entry<>(Objects.requireNonNull(value), ticker.read()));
+  }
+
+  /**
+   * Force the next read of {@code key} to load a fresh value. This also covers a load of the key that is already in
+   * flight, whose result will be discarded.
+   */
+  void invalidate(K key) {
+    entries.put(key, new Entry<>(null, ticker.read()));
+  }
+
+  void invalidateIf(Predicate<? super K> predicate) {
+    entries.asMap().keySet().stream().filter(predicate).forEach(this::invalidate);
+  }
+
+  void invalidateAll() {
+    entries.invalidateAll();
+  }
+
+}
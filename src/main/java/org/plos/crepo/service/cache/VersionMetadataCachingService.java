@@ -0,0 +1,221 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.cache;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.plos.crepo.model.identity.RepoId;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.identity.RepoVersionNumber;
+import org.plos.crepo.model.input.RepoCollectionInput;
+import org.plos.crepo.model.input.RepoObjectInput;
+import org.plos.crepo.model.metadata.RepoCollectionList;
+import org.plos.crepo.model.metadata.RepoMetadata;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+import org.plos.crepo.service.ContentRepoService;
+import org.plos.crepo.service.ForwardingContentRepoService;
+
+/**
+ * A service that caches the metadata of object and collection versions that are identified by key and UUID.
+ * <p>
+ * The content repo never changes a version once it is written, so entries are held without any expiry. Each cache is
+ * bounded by a total weight. A version weighs one unit, plus one for each KiB of its user metadata, which is the only
+ * part of the metadata that can grow without limit; a collection also weighs one unit per member object, which is
+ * counted without building the members' metadata. When a cache is full, the least recently used entries are
+ * evicted.
+ * <p>
+ * Deleting a version through this service removes it from the cache. Versions deleted through another client stay
+ * cached until evicted.
+ */
+public class VersionMetadataCachingService extends ForwardingContentRepoService {
+
+  public static final long DEFAULT_MAXIMUM_OBJECT_WEIGHT = 100000L;
+  public static final long DEFAULT_MAXIMUM_COLLECTION_WEIGHT = 100000L;
+
+  private static final int USER_METADATA_UNIT = 1024;
+
+  private final Cache<RepoVersion, RepoObjectMetadata> objectMetadata;
+  private final Cache<RepoVersion, RepoCollectionList> collections;
+
+  public VersionMetadataCachingService(ContentRepoService delegate) {
+    this(delegate, DEFAULT_MAXIMUM_OBJECT_WEIGHT, DEFAULT_MAXIMUM_COLLECTION_WEIGHT);
+  }
+
+  /**
+   * @param delegate                the service to read through to
+   * @param maximumObjectWeight     the maximum total weight of object metadata to hold
+   * @param maximumCollectionWeight the maximum total weight of collections, including one unit per member, to hold
+   */
+  public VersionMetadataCachingService(ContentRepoService delegate,
+                                       long maximumObjectWeight, long maximumCollectionWeight) {
+    super(delegate);
+    Preconditions.checkArgument(maximumObjectWeight >= 0);
+    Preconditions.checkArgument(maximumCollectionWeight >= 0);
+    this.objectMetadata = CacheBuilder.newBuilder()
+        .maximumWeight(maximumObjectWeight)
+        .weigher((RepoVersion version, RepoObjectMetadata metadata) -> weigh(metadata))
+        .recordStats()
+        .build();
+    this.collections = CacheBuilder.newBuilder()
+        .maximumWeight(maximumCollectionWeight)
+        .weigher((RepoVersion version, RepoCollectionList collection) -> weigh(collection))
+        .recordStats()
+        .build();
+  }
+
+  private static int weigh(RepoMetadata metadata) {
+    return 1 + metadata.getRawUserMetadata().map(String::length).orElse(0) / USER_METADATA_UNIT;
+  }
+
+  private static int weigh(RepoCollectionList collection) {
+    long weight = (long) weigh((RepoMetadata) collection) + collection.getObjectCount();
+    return (int) Math.min(weight, Integer.MAX_VALUE);
+  }
+
+  /**
+   * @return hit, miss, load and eviction counts for object metadata
+   */
+  public CacheStats getObjectMetadataStats() {
+    return objectMetadata.stats();
+  }
+
+  /**
+   * @return hit, miss, load and eviction counts for collections
+   */
+  public CacheStats getCollectionStats() {
+    return collections.stats();
+  }
+
+  /**
+   * Discard all cached entries.
+   */
+  public void invalidateAll() {
+    objectMetadata.invalidateAll();
+    collections.invalidateAll();
+  }
+
+
+  // ------------------------ Objects ------------------------
+
+  @Override
+  public RepoObjectMetadata getRepoObjectMetadata(RepoVersion version) {
+    return CacheLoading.getOrLoad(objectMetadata, version, () -> super.getRepoObjectMetadata(version));
+  }
+
+  private RepoObjectMetadata cacheObject(RepoObjectMetadata metadata) {
+    objectMetadata.put(metadata.getVersion(), metadata);
+    return metadata;
+  }
+
+  @Override
+  public RepoObjectMetadata createRepoObject(RepoObjectInput repoObjectInput) {
+    return cacheObject(super.createRepoObject(repoObjectInput));
+  }
+
+  @Override
+  public RepoObjectMetadata versionRepoObject(RepoObjectInput repoObjectInput) {
+    return cacheObject(super.versionRepoObject(repoObjectInput));
+  }
+
+  @Override
+  public RepoObjectMetadata autoCreateRepoObject(RepoObjectInput repoObjectInput) {
+    return cacheObject(super.autoCreateRepoObject(repoObjectInput));
+  }
+
+  @Override
+  @Deprecated
+  public boolean deleteLatestRepoObject(RepoId id) {
+    try {
+      return super.deleteLatestRepoObject(id);
+    } finally {
+      objectMetadata.asMap().keySet().removeIf(version -> version.getId().equals(id));
+    }
+  }
+
+  @Override
+  public boolean deleteRepoObject(RepoVersion version) {
+    try {
+      return super.deleteRepoObject(version);
+    } finally {
+      objectMetadata.invalidate(version);
+    }
+  }
+
+  @Override
+  public boolean deleteRepoObject(RepoVersionNumber number) {
+    try {
+      return super.deleteRepoObject(number);
+    } finally {
+      objectMetadata.asMap().values().removeIf(metadata -> metadata.getVersionNumber().equals(number));
+    }
+  }
+
+
+  // ------------------------ Collections ------------------------
+
+  @Override
+  public RepoCollectionList getCollection(RepoVersion version) {
+    return CacheLoading.getOrLoad(collections, version, () -> super.getCollection(version));
+  }
+
+  private RepoCollectionList cacheCollection(RepoCollectionList collection) {
+    collections.put(collection.getVersion(), collection);
+    return collection;
+  }
+
+  @Override
+  public RepoCollectionList createCollection(RepoCollectionInput repoCollectionInput) {
+    return cacheCollection(super.createCollection(repoCollectionInput));
+  }
+
+  @Override
+  public RepoCollectionList versionCollection(RepoCollectionInput repoCollectionInput) {
+    return cacheCollection(super.versionCollection(repoCollectionInput));
+  }
+
+  @Override
+  public RepoCollectionList autoCreateCollection(RepoCollectionInput repoCollectionInput) {
+    return cacheCollection(super.autoCreateCollection(repoCollectionInput));
+  }
+
+  @Override
+  public boolean deleteCollection(RepoVersion version) {
+    try {
+      return super.deleteCollection(version);
+    } finally {
+      collections.invalidate(version);
+    }
+  }
+
+  @Override
+  public boolean deleteCollection(RepoVersionNumber number) {
+    try {
+      return super.deleteCollection(number);
+    } finally {
+      collections.asMap().values().removeIf(collection -> collection.getVersionNumber().equals(number));
+    }
+  }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.coalesce;
+
+import org.plos.crepo.model.identity.RepoId;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.identity.RepoVersionNumber;
+import org.plos.crepo.model.identity.RepoVersionTag;
+import org.plos.crepo.model.metadata.RepoCollectionList;
+import org.plos.crepo.model.metadata.RepoCollectionMetadata;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+import org.plos.crepo.service.ContentRepoService;
+import org.plos.crepo.service.ForwardingContentRepoService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A service that merges identical read calls made concurrently. When many threads ask for the same metadata,
+ * collection or listing page at once, only the first one calls through; the rest wait for it and share its result.
+ * If the call fails, every waiting caller gets the same exception.
+ * <p>
+ * No results are kept after the call completes, so this does not serve stale data. It can be stacked under the caching
+ * decorators so that a burst of cache misses for one key becomes a single request to the server.
+ */
+public class CoalescingContentRepoService extends ForwardingContentRepoService {
+
+  private final SingleFlight<List<Object>, Object> calls = new SingleFlight<>();
+
+  public CoalescingContentRepoService(ContentRepoService delegate) {
+    super(delegate);
+  }
+
+  @SuppressWarnings("unchecked") // each key's operation name determines its result type
+  private <T> T coalesce(Supplier<T> call, String operation, Object... arguments) {
+    List<Object> key = new ArrayList<>(arguments.length + 1);
+    key.add(operation);
+    key.addAll(Arrays.asList(arguments));
+    return (T) calls.execute(key, call);
+  }
+
+  /**
+   * Give each caller its own copy of a shared list, so that one caller modifying it cannot affect another.
+   */
+  private <T> List<T> coalesceList(Supplier<List<T>> call, String operation, Object... arguments) {
+    List<T> shared = coalesce(call, operation, arguments);
+    return new ArrayList<>(shared);
+  }
+
+
+  // ------------------------ Objects ------------------------
+
+  @Override
+  @Deprecated
+  public RepoObjectMetadata getLatestRepoObjectMetadata(RepoId id) {
+    return coalesce(() -> super.getLatestRepoObjectMetadata(id), "getLatestRepoObjectMetadata", id);
+  }
+
+  @Override
+  public RepoObjectMetadata getRepoObjectMetadata(RepoVersion version) {
+    return coalesce(() -> super.getRepoObjectMetadata(version), "getRepoObjectMetadata", version);
+  }
+
+  @Override
+  public RepoObjectMetadata getRepoObjectMetadata(RepoVersionNumber number) {
+    return coalesce(() -> super.getRepoObjectMetadata(number), "getRepoObjectMetadata", number);
+  }
+
+  @Override
+  public RepoObjectMetadata getRepoObjectMetadata(RepoVersionTag tagObj) {
+    return coalesce(() -> super.getRepoObjectMetadata(tagObj), "getRepoObjectMetadata", tagObj);
+  }
+
+  @Override
+  public List<RepoObjectMetadata> getRepoObjectVersions(RepoId id) {
+    return coalesceList(() -> super.getRepoObjectVersions(id), "getRepoObjectVersions", id);
+  }
+
+  @Override
+  public List<RepoObjectMetadata> getRepoObjects(String bucketName, int offset, int limit, boolean includeDeleted, String tag) {
+    return coalesceList(() -> super.getRepoObjects(bucketName, offset, limit, includeDeleted, tag),
+        "getRepoObjects", bucketName, offset, limit, includeDeleted, tag);
+  }
+
+
+  // ------------------------ Collections ------------------------
+
+  @Override
+  public RepoCollectionList getCollection(RepoVersion version) {
+    return coalesce(() -> super.getCollection(version), "getCollection", version);
+  }
+
+  @Override
+  public RepoCollectionList getCollection(RepoVersionNumber number) {
+    return coalesce(() -> super.getCollection(number), "getCollection", number);
+  }
+
+  @Override
+  public RepoCollectionList getCollection(RepoVersionTag tagObj) {
+    return coalesce(() -> super.getCollection(tagObj), "getCollection", tagObj);
+  }
+
+  @Override
+  public RepoCollectionMetadata getLatestCollection(RepoId id) {
+    return coalesce(() -> super.getLatestCollection(id), "getLatestCollection", id);
+  }
+
+  @Override
+  public List<RepoCollectionList> getCollectionVersions(RepoId id) {
+    return coalesceList(() -> super.getCollectionVersions(id), "getCollectionVersions", id);
+  }
+
+  @Override
+  public List<RepoCollectionMetadata> getCollections(String bucketName, int offset, int limit, boolean includeDeleted, String tag) {
+    return coalesceList(() -> super.getCollections(bucketName, offset, limit, includeDeleted, tag),
+        "getCollections", bucketName, offset, limit, includeDeleted, tag);
+  }
+
+}
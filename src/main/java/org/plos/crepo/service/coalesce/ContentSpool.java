@@ -0,0 +1,307 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.coalesce;
+
+import com.google.common.base.Throwables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A download copied to a temporary file as it arrives, which any number of readers follow at their own pace. A reader
+ * that catches up with the download waits for more bytes to be written.
+ * <p>
+ * The file is deleted once the download has finished and every reader has been closed. If every reader is closed
+ * before the download finishes, the download is abandoned.
+ */
+class ContentSpool {
+
+  private static final Logger log = LoggerFactory.getLogger(ContentSpool.class);
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Consumer<ContentSpool> onRetire;
+
+  /**
+   * Completes when the download has been opened: with {@code true} if it is being spooled, {@code false} if it could
+   * not be spooled and each caller must download it separately, or exceptionally if it could not be opened.
+   */
+  private final CompletableFuture<Boolean> opened = new CompletableFuture<>();
+  private Path file;
+
+  // Guarded by this
+  private long written;
+  private boolean done;
+  private IOException failure;
+  private int readers;
+  private boolean deleted;
+
+  /**
+   * @param onRetire called when new readers should no longer join this spool
+   */
+  ContentSpool(Consumer<ContentSpool> onRetire) {
+    this.onRetire = onRetire;
+  }
+
+  /**
+   * Open the download and start copying it to a file. Must be called once, by the caller that created the spool.
+   *
+   * @return a reader of the download for the calling thread
+   */
+  InputStream start(Supplier<? extends InputStream> download, Path directory, Executor executor) {
+    InputStream source;
+    try {
+      source = download.get();
+    } catch (RuntimeException | Error e) {
+      onRetire.accept(this);
+      opened.completeExceptionally(e);
+      throw e;
+    }
+
+    InputStream reader;
+    try {
+      file = Files.createTempFile(directory, "crepo-spool-", ".tmp");
+      reader = openReader();
+    } catch (IOException e) {
+      log.warn("Could not create a spool file in " + directory + "; downloading without sharing", e);
+      deleteFile();
+      onRetire.accept(this);
+      opened.complete(false);
+      return source;
+    }
+    opened.complete(true);
+
+    try {
+      executor.execute(() -> fill(source));
+    } catch (RuntimeException e) {
+      closeQuietly(source);
+      finish(new IOException("Could not start spooling the download", e));
+    }
+    return reader;
+  }
+
+  /**
+   * Read a download that another caller has started, waiting for it to be opened if necessary. If the download could
+   * not be opened, the exception it failed with is thrown.
+   *
+   * @return a reader of the download, or {@code null} if this spool is no longer accepting readers
+   */
+  InputStream join(Supplier<? extends InputStream> download) {
+    boolean shared;
+    try {
+      shared = opened.join();
+    } catch (CompletionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+    if (!shared) {
+      return download.get();
+    }
+
+    try {
+      return openReader();
+    } catch (IOException e) {
+      log.warn("Could not read spool file " + file + "; downloading without sharing", e);
+      return download.get();
+    }
+  }
+
+  private synchronized InputStream openReader() throws IOException {
+    if (deleted || failure != null) {
+      return null;
+    }
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    readers++;
+    return new Reader(channel);
+  }
+
+  private void fill(InputStream source) {
+    IOException failure = null;
+    try (InputStream in = source; FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int count;
+      while ((count = in.read(buffer)) != -1) {
+        ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, count);
+        while (chunk.hasRemaining()) {
+          out.write(chunk);
+        }
+        if (!advance(count)) {
+          failure = this.failure;
+          break;
+        }
+      }
+    } catch (IOException e) {
+      failure = e;
+    }
+    finish(failure);
+  }
+
+  /**
+   * @return whether any reader remains to receive the bytes; if not, the download is marked as abandoned so that no new
+   * reader can join it
+   */
+  private synchronized boolean advance(int count) {
+    written += count;
+    notifyAll();
+    if (readers == 0) {
+      failure = new IOException("Download abandoned by all readers");
+      return false;
+    }
+    return true;
+  }
+
+  private synchronized void finish(IOException failure) {
+    done = true;
+    this.failure = failure;
+    notifyAll();
+    if (failure != null) {
+      onRetire.accept(this);
+    }
+    if (readers == 0) {
+      delete();
+    }
+  }
+
+  private synchronized void release() {
+    readers--;
+    if (readers == 0 && done) {
+      delete();
+    }
+  }
+
+  private synchronized void delete() {
+    if (!deleted) {
+      deleted = true;
+      onRetire.accept(this);
+      deleteFile();
+    }
+  }
+
+  private void deleteFile() {
+    if (file != null) {
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        log.warn("Could not delete spool file " + file, e);
+      }
+    }
+  }
+
+  /**
+   * Wait until bytes past the given position have been written or the download has ended.
+   *
+   * @return the number of bytes available to read at the position, or -1 at the end of a completed download
+   */
+  private synchronized long awaitAvailable(long position) throws IOException {
+    while (position >= written && !done) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for the download");
+      }
+    }
+    if (position < written) {
+      return written - position;
+    }
+    if (failure != null) {
+      throw new IOException("Download failed", failure);
+    }
+    return -1;
+  }
+
+  private synchronized long available(long position) {
+    return Math.max(0, written - position);
+  }
+
+  private static void closeQuietly(InputStream stream) {
+    try {
+      stream.close();
+    } catch (IOException e) {
+      log.warn("Error closing download", e);
+    }
+  }
+
+  private class Reader extends InputStream {
+    private final FileChannel channel;
+    private long position;
+    private boolean closed;
+
+    private Reader(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      return (read(single, 0, 1) == -1) ? -1 : (single[0] & 0xFF);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed");
+      }
+      if (len == 0) {
+        return 0;
+      }
+      long available = awaitAvailable(position);
+      if (available < 0) {
+        return -1;
+      }
+      int count = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, available)), position);
+      position += count;
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return (int) Math.min(Integer.MAX_VALUE, ContentSpool.this.available(position));
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!closed) {
+        closed = true;
+        try {
+          channel.close();
+        } finally {
+          release();
+        }
+      }
+    }
+  }
+
+}
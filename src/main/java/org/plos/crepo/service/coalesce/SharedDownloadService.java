@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.coalesce;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.identity.RepoVersionNumber;
+import org.plos.crepo.service.ContentRepoService;
+import org.plos.crepo.service.ForwardingContentRepoService;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * A service that downloads an object's content once for all the callers reading it at the same time. The first caller
+ * starts the download, which is copied to a temporary file in the background; that caller and any others that ask for
+ * the same version while it is in progress each get their own stream over the file, and read it at their own pace.
+ * <p>
+ * The file is deleted as soon as the download has finished and every stream over it has been closed, so callers must
+ * close the streams they get. A caller that arrives after that starts a new download.
+ * <p>
+ * Every download goes through a file, which costs a little latency for small objects. This service is meant for large
+ * content, and can be stacked under {@link org.plos.crepo.service.cache.HotContentCachingService} to keep small,
+ * frequently read objects off the disk.
+ */
+public class SharedDownloadService extends ForwardingContentRepoService {
+
+  private final Path spoolDirectory;
+  private final Executor executor;
+  private final ConcurrentMap<Object, ContentSpool> spools = new ConcurrentHashMap<>();
+
+  /**
+   * Create a service that spools to the system's temporary directory, on a pool of daemon threads.
+   *
+   * @param delegate the service to download from
+   */
+  public SharedDownloadService(ContentRepoService delegate) {
+    this(delegate, Paths.get(System.getProperty("java.io.tmpdir")), Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("crepo-download-spool-%d").setDaemon(true).build()));
+  }
+
+  /**
+   * @param delegate       the service to download from
+   * @param spoolDirectory the directory in which to write the temporary files
+   * @param executor       the executor on which to copy downloads to their files
+   */
+  public SharedDownloadService(ContentRepoService delegate, Path spoolDirectory, Executor executor) {
+    super(delegate);
+    this.spoolDirectory = Objects.requireNonNull(spoolDirectory);
+    this.executor = Objects.requireNonNull(executor);
+  }
+
+  private InputStream share(Object key, Supplier<InputStream> download) {
+    while (true) {
+      ContentSpool spool = spools.get(key);
+      if (spool == null) {
+        ContentSpool created = new ContentSpool(retired -> spools.remove(key, retired));
+        spool = spools.putIfAbsent(key, created);
+        if (spool == null) {
+          return created.start(download, spoolDirectory, executor);
+        }
+      }
+
+      InputStream reader = spool.join(download);
+      if (reader != null) {
+        return reader;
+      }
+      spools.remove(key, spool);
+    }
+  }
+
+  /**
+   * @return the number of downloads currently being shared
+   */
+  public int getActiveDownloadCount() {
+    return spools.size();
+  }
+
+  @Override
+  public InputStream getRepoObject(RepoVersion version) {
+    return share(version, () -> super.getRepoObject(version));
+  }
+
+  @Override
+  public InputStream getRepoObject(RepoVersionNumber number) {
+    return share(number, () -> super.getRepoObject(number));
+  }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.coalesce;
+
+import com.google.common.base.Throwables;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs at most one call per key at a time. A caller that arrives while a call for the same key is in flight waits for
+ * that call and gets its result, or the exception it threw, instead of making its own.
+ * <p>
+ * Nothing is kept once a call finishes, so a caller that arrives afterward always makes a new call.
+ */
+class SingleFlight<K, V> {
+
+  private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+  V execute(K key, Supplier<? extends V> call) {
+    CompletableFuture<V> own = new CompletableFuture<>();
+    CompletableFuture<V> existing = inFlight.putIfAbsent(key, own);
+    if (existing != null) {
+      return await(existing);
+    }
+
+    try {
+      V value = call.get();
+      own.complete(value);
+      return value;
+    } catch (RuntimeException | Error e) {
+      own.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, own);
+    }
+  }
+
+  private static <V> V await(CompletableFuture<V> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  /**
+   * @return the number of keys with a call in flight
+   */
+  int size() {
+    return inFlight.size();
+  }
+
+}
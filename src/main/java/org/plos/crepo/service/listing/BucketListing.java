@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.listing;
+
+import com.google.common.base.Preconditions;
+import org.plos.crepo.model.metadata.RepoCollectionMetadata;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+import org.plos.crepo.service.ContentRepoService;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+/**
+ * Lists the whole contents of a bucket without making the caller page through it. Each listing fetches its pages
+ * through {@link ContentRepoService#getRepoObjects} or {@link ContentRepoService#getCollections}, one page ahead of the
+ * consumer.
+ */
+public class BucketListing {
+
+  public static final int DEFAULT_PAGE_SIZE = 1000;
+
+  private final ContentRepoService service;
+  private final Executor executor;
+  private final int pageSize;
+
+  public BucketListing(ContentRepoService service, Executor executor) {
+    this(service, executor, DEFAULT_PAGE_SIZE);
+  }
+
+  /**
+   * @param service  the service whose listings are paged
+   * @param executor runs the page fetches
+   * @param pageSize the number of items requested per page
+   */
+  public BucketListing(ContentRepoService service, Executor executor, int pageSize) {
+    Preconditions.checkArgument(pageSize > 0);
+    this.service = Objects.requireNonNull(service);
+    this.executor = Objects.requireNonNull(executor);
+    this.pageSize = pageSize;
+  }
+
+  /**
+   * @param bucketName     the bucket to list
+   * @param includeDeleted if true the listing includes deleted objects
+   * @param tag            if not null, only objects with this tag are listed
+   * @return an iterator over the metadata of every object in the bucket
+   */
+  public PagedIterator<RepoObjectMetadata> iterateRepoObjects(String bucketName, boolean includeDeleted, String tag) {
+    Objects.requireNonNull(bucketName);
+    return new PagedIterator<>((offset, limit) -> service.getRepoObjects(bucketName, offset, limit, includeDeleted, tag),
+        executor, pageSize);
+  }
+
+  public Stream<RepoObjectMetadata> streamRepoObjects(String bucketName, boolean includeDeleted, String tag) {
+    return iterateRepoObjects(bucketName, includeDeleted, tag).stream();
+  }
+
+  /**
+   * @param bucketName     the bucket to list
+   * @param includeDeleted if true the listing includes deleted collections
+   * @param tag            if not null, only collections with this tag are listed
+   * @return an iterator over the metadata of every collection in the bucket
+   */
+  public PagedIterator<RepoCollectionMetadata> iterateCollections(String bucketName, boolean includeDeleted, String tag) {
+    Objects.requireNonNull(bucketName);
+    return new PagedIterator<>((offset, limit) -> service.getCollections(bucketName, offset, limit, includeDeleted, tag),
+        executor, pageSize);
+  }
+
+  public Stream<RepoCollectionMetadata> streamCollections(String bucketName, boolean includeDeleted, String tag) {
+    return iterateCollections(bucketName, includeDeleted, tag).stream();
+  }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.listing;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over every item of an offset-paginated listing. While the items of one page are being consumed, the next
+ * page is already being fetched on the executor, so at most two pages are held at a time.
+ * <p>
+ * Pages are requested by offset, so items added or removed during the iteration may be skipped or repeated. Close the
+ * iterator if it is abandoned before the end, so that no further page is requested.
+ *
+ * @param <T> the type of the listed items
+ */
+public class PagedIterator<T> implements Iterator<T>, AutoCloseable {
+
+  private final PageFetcher<? extends T> fetcher;
+  private final Executor executor;
+  private final int pageSize;
+
+  private Iterator<? extends T> page = Collections.emptyIterator();
+  private CompletableFuture<? extends List<? extends T>> nextPage;
+  private int nextOffset = 0;
+
+  public PagedIterator(PageFetcher<? extends T> fetcher, Executor executor, int pageSize) {
+    Preconditions.checkArgument(pageSize > 0);
+    this.fetcher = Objects.requireNonNull(fetcher);
+    this.executor = Objects.requireNonNull(executor);
+    this.pageSize = pageSize;
+    requestNextPage();
+  }
+
+  private void requestNextPage() {
+    int offset = nextOffset;
+    nextOffset += pageSize;
+    nextPage = CompletableFuture.supplyAsync(() -> fetcher.fetch(offset, pageSize), executor);
+  }
+
+  @Override
+  public synchronized boolean hasNext() {
+    while (!page.hasNext()) {
+      if (nextPage == null) return false;
+      List<? extends T> fetched;
+      try {
+        fetched = nextPage.join();
+      } catch (CompletionException e) {
+        nextPage = null;
+        throw Throwables.propagate(e.getCause());
+      }
+      if (fetched.size() < pageSize) {
+        nextPage = null;
+      } else {
+        requestNextPage();
+      }
+      page = fetched.iterator();
+    }
+    return true;
+  }
+
+  @Override
+  public synchronized T next() {
+    if (!hasNext()) throw new NoSuchElementException();
+    return page.next();
+  }
+
+  /**
+   * @return a sequential stream over the remaining items, which closes this iterator when it is closed
+   */
+  public Stream<T> stream() {
+    Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+    return StreamSupport.stream(spliterator, false).onClose(this::close);
+  }
+
+  /**
+   * Stops the iteration. A page fetch already in progress is allowed to finish, but its result is discarded.
+   */
+  @Override
+  public synchronized void close() {
+    if (nextPage != null) {
+      nextPage.cancel(false);
+      nextPage = null;
+    }
+    page = Collections.emptyIterator();
+  }
+
+}
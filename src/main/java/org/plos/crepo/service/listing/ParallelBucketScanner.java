@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.listing;
+
+import com.google.common.base.Preconditions;
+import org.plos.crepo.model.metadata.RepoCollectionMetadata;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+import org.plos.crepo.service.ContentRepoService;
+
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Scans a whole bucket by splitting its offset space into pages and fetching up to {@code maxConcurrency} of them at
+ * once. Unlike {@link BucketListing}, the items are delivered in no particular order.
+ * <p>
+ * Since the size of the bucket is unknown, up to {@code maxConcurrency - 1} requests may be made past its end. Pages
+ * are requested by offset, so items added or removed during the scan may be skipped or repeated.
+ */
+public class ParallelBucketScanner {
+
+  private final ContentRepoService service;
+  private final Executor executor;
+  private final int maxConcurrency;
+  private final int pageSize;
+
+  /**
+   * @param service        the service whose listings are scanned
+   * @param executor       runs the page fetches; it should have at least {@code maxConcurrency} threads
+   * @param maxConcurrency the maximum number of pages fetched, or held for the consumer, at a time
+   * @param pageSize       the number of items requested per page
+   */
+  public ParallelBucketScanner(ContentRepoService service, Executor executor, int maxConcurrency, int pageSize) {
+    Preconditions.checkArgument(maxConcurrency > 0);
+    Preconditions.checkArgument(pageSize > 0);
+    this.service = Objects.requireNonNull(service);
+    this.executor = Objects.requireNonNull(executor);
+    this.maxConcurrency = maxConcurrency;
+    this.pageSize = pageSize;
+  }
+
+  private PageFetcher<RepoObjectMetadata> objectPages(String bucketName, boolean includeDeleted, String tag) {
+    Objects.requireNonNull(bucketName);
+    return (offset, limit) -> service.getRepoObjects(bucketName, offset, limit, includeDeleted, tag);
+  }
+
+  private PageFetcher<RepoCollectionMetadata> collectionPages(String bucketName, boolean includeDeleted, String tag) {
+    Objects.requireNonNull(bucketName);
+    return (offset, limit) -> service.getCollections(bucketName, offset, limit, includeDeleted, tag);
+  }
+
+  /**
+   * Pass every object in a bucket to a sink, returning when the scan is complete. The sink is called concurrently
+   * from the executor's threads. If a page fetch or the sink fails, no further pages are requested and the failure is
+   * thrown once the fetches in progress finish.
+   *
+   * @param bucketName     the bucket to scan
+   * @param includeDeleted if true the scan includes deleted objects
+   * @param tag            if not null, only objects with this tag are scanned
+   * @param sink           receives the metadata of each object
+   */
+  public void scanRepoObjects(String bucketName, boolean includeDeleted, String tag,
+                              Consumer<? super RepoObjectMetadata> sink) {
+    scan(objectPages(bucketName, includeDeleted, tag), Objects.requireNonNull(sink));
+  }
+
+  public void scanCollections(String bucketName, boolean includeDeleted, String tag,
+                              Consumer<? super RepoCollectionMetadata> sink) {
+    scan(collectionPages(bucketName, includeDeleted, tag), Objects.requireNonNull(sink));
+  }
+
+  /**
+   * Stream every object in a bucket, in the order the pages arrive. The stream may be made parallel, in which case
+   * batches of items are split off to the stream's own workers. Close the stream if it is abandoned before the end.
+   *
+   * @param bucketName     the bucket to scan
+   * @param includeDeleted if true the scan includes deleted objects
+   * @param tag            if not null, only objects with this tag are scanned
+   * @return the metadata of each object
+   */
+  public Stream<RepoObjectMetadata> streamRepoObjects(String bucketName, boolean includeDeleted, String tag) {
+    return stream(objectPages(bucketName, includeDeleted, tag));
+  }
+
+  public Stream<RepoCollectionMetadata> streamCollections(String bucketName, boolean includeDeleted, String tag) {
+    return stream(collectionPages(bucketName, includeDeleted, tag));
+  }
+
+  private <T> void scan(PageFetcher<T> fetcher, Consumer<? super T> sink) {
+    new PartitionedScan<>(fetcher, executor, pageSize, maxConcurrency, sink).start().awaitDone();
+  }
+
+  private <T> Stream<T> stream(PageFetcher<T> fetcher) {
+    PartitionedScan<T> scan = new PartitionedScan<T>(fetcher, executor, pageSize, maxConcurrency, null).start();
+    Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(scan.items(), Spliterator.NONNULL);
+    return StreamSupport.stream(spliterator, false).onClose(scan::cancel);
+  }
+
+}
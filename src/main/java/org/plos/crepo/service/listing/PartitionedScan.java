@@ -0,0 +1,213 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.listing;
+
+import com.google.common.base.Throwables;
+import org.plos.crepo.exceptions.ContentRepoException;
+import org.plos.crepo.exceptions.ErrorType;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Fetches the pages of an offset-paginated listing concurrently. Pages are requested in offset order, with at most
+ * {@code maxConcurrency} of them fetched or waiting to be consumed at a time.
+ * <p>
+ * The size of the listing is not known in advance. The first page shorter than the page size marks the end, and no
+ * page past it is requested afterward; the pages already in flight past the end come back empty and are dropped.
+ * <p>
+ * Pages are handed over either to a sink on the fetching threads, or through {@link #nextPage} in the order they
+ * complete.
+ */
+final class PartitionedScan<T> {
+
+  private final PageFetcher<? extends T> fetcher;
+  private final Executor executor;
+  private final int pageSize;
+  private final int maxConcurrency;
+  private final Consumer<? super T> sink; // null if pages are consumed through nextPage
+
+  // Guarded by this
+  private long nextOffset = 0;
+  private long endOffset = Integer.MAX_VALUE;
+  private int outstanding = 0; // pages being fetched, or fetched and not yet consumed
+  private final Deque<List<? extends T>> fetched = new ArrayDeque<>();
+  private Throwable failure;
+  private boolean cancelled;
+
+  PartitionedScan(PageFetcher<? extends T> fetcher, Executor executor, int pageSize, int maxConcurrency,
+                  Consumer<? super T> sink) {
+    this.fetcher = fetcher;
+    this.executor = executor;
+    this.pageSize = pageSize;
+    this.maxConcurrency = maxConcurrency;
+    this.sink = sink;
+  }
+
+  synchronized PartitionedScan<T> start() {
+    dispatch();
+    return this;
+  }
+
+  private synchronized boolean isStopped() {
+    return cancelled || failure != null;
+  }
+
+  private synchronized boolean isDone() {
+    return outstanding == 0 && (isStopped() || nextOffset >= endOffset);
+  }
+
+  private synchronized void dispatch() {
+    while (!isStopped() && outstanding < maxConcurrency && nextOffset < endOffset) {
+      int offset = (int) nextOffset;
+      nextOffset += pageSize;
+      outstanding++;
+      try {
+        executor.execute(() -> fetch(offset));
+      } catch (RuntimeException e) {
+        outstanding--;
+        fail(e);
+      }
+    }
+  }
+
+  private synchronized void fail(Throwable e) {
+    if (failure == null) {
+      failure = e;
+    }
+    notifyAll();
+  }
+
+  private void fetch(int offset) {
+    List<? extends T> page;
+    try {
+      page = fetcher.fetch(offset, pageSize);
+      synchronized (this) {
+        if (page.size() < pageSize) {
+          endOffset = Math.min(endOffset, offset + page.size());
+        }
+        if (sink == null && !page.isEmpty() && !isStopped()) {
+          fetched.add(page);
+          notifyAll();
+          return; // still outstanding until it is consumed
+        }
+      }
+      if (sink != null && !isStopped()) {
+        page.forEach(sink);
+      }
+    } catch (Throwable e) {
+      fail(e);
+    }
+    release();
+  }
+
+  private synchronized void release() {
+    outstanding--;
+    dispatch();
+    notifyAll();
+  }
+
+  /**
+   * Block until every page has been fetched and passed to the sink.
+   */
+  synchronized void awaitDone() {
+    try {
+      while (!isDone()) {
+        wait();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      cancel();
+      throw new ContentRepoException.ContentRepoExceptionBuilder(ErrorType.ServerError).baseException(e).build();
+    }
+    throwFailure();
+  }
+
+  private void throwFailure() {
+    if (failure != null) {
+      throw Throwables.propagate(failure);
+    }
+  }
+
+  /**
+   * @return the next page to complete, or null if there are no more pages
+   */
+  synchronized List<? extends T> nextPage() {
+    try {
+      while (fetched.isEmpty()) {
+        throwFailure();
+        if (isDone()) return null;
+        wait();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      cancel();
+      throw new ContentRepoException.ContentRepoExceptionBuilder(ErrorType.ServerError).baseException(e).build();
+    }
+    List<? extends T> page = fetched.remove();
+    release();
+    return page;
+  }
+
+  /**
+   * Stop requesting pages and discard the ones not yet consumed. Fetches already in progress are allowed to finish.
+   */
+  synchronized void cancel() {
+    cancelled = true;
+    outstanding -= fetched.size();
+    fetched.clear();
+    notifyAll();
+  }
+
+  /**
+   * @return an iterator over the items of {@link #nextPage}
+   */
+  Iterator<T> items() {
+    return new Iterator<T>() {
+      private Iterator<? extends T> page = Collections.emptyIterator();
+
+      @Override
+      public boolean hasNext() {
+        while (!page.hasNext()) {
+          List<? extends T> next = nextPage();
+          if (next == null) return false;
+          page = next.iterator();
+        }
+        return true;
+      }
+
+      @Override
+      public T next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return page.next();
+      }
+    };
+  }
+
+}
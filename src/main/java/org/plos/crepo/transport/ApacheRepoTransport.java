@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.plos.crepo.transport;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+
+/**
+ * Sends requests with an Apache {@link CloseableHttpClient}.
+ */
+public class ApacheRepoTransport implements RepoTransport {
+
+  private final CloseableHttpClient client;
+
+  /**
+   * @param client the client with which to send requests, which is closed along with this transport
+   */
+  public ApacheRepoTransport(CloseableHttpClient client) {
+    this.client = Objects.requireNonNull(client);
+  }
+
+  @Override
+  public RepoResponse execute(RepoRequest request) throws IOException {
+    RequestBuilder builder = RequestBuilder.create(request.getMethod()).setUri(request.getUri());
+    for (Entry<String, String> header : request.getHeaders()) {
+      builder.addHeader(header.getKey(), header.getValue());
+    }
+    if (request.getBody().isPresent()) {
+      builder.setEntity(new BodyEntity(request.getBody().get()));
+    }
+    return new ApacheResponse(client.execute(builder.build()));
+  }
+
+  @Override
+  public void close() throws IOException {
+    client.close();
+  }
+
+  private static class BodyEntity extends AbstractHttpEntity {
+    private final RepoRequestBody body;
+
+    private BodyEntity(RepoRequestBody body) {
+      this.body = body;
+      setContentType(body.getContentType());
+    }
+
+    @Override
+    public boolean isRepeatable() {
+      return false;
+    }
+
+    @Override
+    public long getContentLength() {
+      return body.getContentLength();
+    }
+
+    @Override
+    public InputStream getContent() {
+      throw new UnsupportedOperationException("Request bodies can only be written");
+    }
+
+    @Override
+    public void writeTo(OutputStream outstream) throws IOException {
+      body.writeTo(outstream);
+    }
+
+    @Override
+    public boolean isStreaming() {
+      return false;
+    }
+  }
+
+  private static class ApacheResponse implements RepoResponse {
+    private final CloseableHttpResponse response;
+
+    private ApacheResponse(CloseableHttpResponse response) {
+      this.response = response;
+    }
+
+    @Override
+    public int getStatusCode() {
+      return response.getStatusLine().getStatusCode();
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaders() {
+      Map<String, List<String>> headers = new LinkedHashMap<>();
+      for (Header header : response.getAllHeaders()) {
+        headers.computeIfAbsent(header.getName(), name -> new ArrayList<>(1)).add(header.getValue());
+      }
+      return Collections.unmodifiableMap(headers);
+    }
+
+    @Override
+    public InputStream getBody() throws IOException {
+      HttpEntity entity = response.getEntity();
+      return (entity == null) ? new ByteArrayInputStream(new byte[0]) : entity.getContent();
+    }
+
+    @Override
+    public void close() throws IOException {
+      response.close();
+    }
+  }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.plos.crepo.transport;
+
+import com.google.common.collect.ImmutableList;
+
+import java.net.URI;
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A request to the content repo server.
+ */
+public final class RepoRequest {
+
+  private final String method;
+  private final URI uri;
+  private final ImmutableList<Map.Entry<String, String>> headers;
+  private final RepoRequestBody body;
+
+  private RepoRequest(Builder builder) {
+    this.method = builder.method;
+    this.uri = builder.uri;
+    this.headers = builder.headers.build();
+    this.body = builder.body;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public URI getUri() {
+    return uri;
+  }
+
+  /**
+   * @return the request headers, in order, as name-value pairs; names may repeat
+   */
+  public List<Map.Entry<String, String>> getHeaders() {
+    return headers;
+  }
+
+  /**
+   * @return the request body, or empty if the request has none
+   */
+  public Optional<RepoRequestBody> getBody() {
+    return Optional.ofNullable(body);
+  }
+
+  @Override
+  public String toString() {
+    return method + " " + uri;
+  }
+
+  public static Builder builder(String method, URI uri) {
+    return new Builder(method, uri);
+  }
+
+  public static class Builder {
+
+    private final String method;
+    private final URI uri;
+    private final ImmutableList.Builder<Map.Entry<String, String>> headers = ImmutableList.builder();
+    private RepoRequestBody body;
+
+    private Builder(String method, URI uri) {
+      this.method = Objects.requireNonNull(method);
+      this.uri = Objects.requireNonNull(uri);
+    }
+
+    public Builder addHeader(String name, String value) {
+      headers.add(new AbstractMap.SimpleImmutableEntry<>(Objects.requireNonNull(name), Objects.requireNonNull(value)));
+      return this;
+    }
+
+    public Builder setBody(RepoRequestBody body) {
+      this.body = body;
+      return this;
+    }
+
+    public RepoRequest build() {
+      return new RepoRequest(this);
+    }
+  }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.plos.crepo.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The body of a {@link RepoRequest}. The body is written out rather than read from, so that multipart uploads and
+ * streamed JSON can be produced as they are sent.
+ */
+public interface RepoRequestBody {
+
+  /**
+   * @return the value of the {@code Content-Type} header, or {@code null} if not known
+   */
+  String getContentType();
+
+  /**
+   * @return the length of the body in bytes, or a negative number if not known in advance
+   */
+  long getContentLength();
+
+  /**
+   * Write the body to a stream. The stream is not closed.
+   *
+   * @param outputStream the stream to write to
+   * @throws IOException if the body could not be written
+   */
+  void writeTo(OutputStream outputStream) throws IOException;
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.plos.crepo.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Sends requests to the content repo server over some HTTP implementation. This is the transport-neutral counterpart
+ * of {@link org.plos.crepo.config.HttpClientFunction}; wrap an implementation in a {@link TransportClientFunction} to
+ * plug it in under the DAO layer.
+ * <p>
+ * The Apache client, through {@link ApacheRepoTransport} or directly through {@link
+ * org.plos.crepo.config.HttpClientFunction#from}, is the default. On Java 11 or later, the separate {@code
+ * content-repo-library-jdk-http} artifact provides {@code org.plos.crepo.transport.jdk.JdkHttpRepoTransport}, which
+ * multiplexes requests over HTTP/2.
+ */
+public interface RepoTransport extends Closeable {
+
+  /**
+   * Send a request and open its response. The caller must close the response.
+   *
+   * @param request the request to send
+   * @return the response, with its body not yet read
+   * @throws IOException if the request could not be sent or the response could not be opened
+   */
+  RepoResponse execute(RepoRequest request) throws IOException;
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.plos.crepo.transport;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.plos.crepo.config.HttpClientFunction;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Opens the requests built by the DAO layer with a {@link RepoTransport}. Pass an instance wherever an {@link
+ * HttpClientFunction} is expected, for example to {@link org.plos.crepo.service.ContentRepoServiceImpl}.
+ * <p>
+ * The DAOs still describe requests and read responses in terms of Apache's message classes; this class only converts
+ * those messages to and from the transport's, so no Apache connection code is involved.
+ */
+public class TransportClientFunction implements HttpClientFunction {
+
+  private final RepoTransport transport;
+
+  public TransportClientFunction(RepoTransport transport) {
+    this.transport = Objects.requireNonNull(transport);
+  }
+
+  @Override
+  public CloseableHttpResponse open(HttpUriRequest request) throws IOException {
+    RepoRequest.Builder builder = RepoRequest.builder(request.getMethod(), request.getURI());
+    for (Header header : request.getAllHeaders()) {
+      builder.addHeader(header.getName(), header.getValue());
+    }
+    if (request instanceof HttpEntityEnclosingRequest) {
+      HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+      if (entity != null) {
+        builder.setBody(new EntityBody(entity));
+      }
+    }
+
+    RepoResponse response = transport.execute(builder.build());
+    try {
+      return toHttpResponse(response);
+    } catch (IOException | RuntimeException e) {
+      response.close();
+      throw e;
+    }
+  }
+
+  private static CloseableHttpResponse toHttpResponse(RepoResponse response) throws IOException {
+    int statusCode = response.getStatusCode();
+    TransportResponse httpResponse = new TransportResponse(statusCode, response);
+    for (Map.Entry<String, List<String>> header : response.getHeaders().entrySet()) {
+      for (String value : header.getValue()) {
+        httpResponse.addHeader(header.getKey(), value);
+      }
+    }
+
+    BasicHttpEntity entity = new BasicHttpEntity();
+    entity.setContent(response.getBody());
+    Header contentLength = httpResponse.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
+    entity.setContentLength(contentLength == null ? -1 : parseLength(contentLength.getValue()));
+    entity.setContentType(httpResponse.getFirstHeader(HttpHeaders.CONTENT_TYPE));
+    entity.setContentEncoding(httpResponse.getFirstHeader(HttpHeaders.CONTENT_ENCODING));
+    httpResponse.setEntity(entity);
+    return httpResponse;
+  }
+
+  private static long parseLength(String value) {
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static class EntityBody implements RepoRequestBody {
+    private final HttpEntity entity;
+
+    private EntityBody(HttpEntity entity) {
+      this.entity = entity;
+    }
+
+    @Override
+    public String getContentType() {
+      Header contentType = entity.getContentType();
+      return (contentType == null) ? null : contentType.getValue();
+    }
+
+    @Override
+    public long getContentLength() {
+      return entity.getContentLength();
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+      entity.writeTo(outputStream);
+    }
+  }
+
+  private static class TransportResponse extends BasicHttpResponse implements CloseableHttpResponse {
+    private final RepoResponse response;
+
+    private TransportResponse(int statusCode, RepoResponse response) {
+      super(new BasicStatusLine(HttpVersion.HTTP_1_1, statusCode,
+          EnglishReasonPhraseCatalog.INSTANCE.getReason(statusCode, Locale.ENGLISH)));
+      this.response = response;
+    }
+
+    @Override
+    public void close() throws IOException {
+      response.close();
+    }
+  }
+
+}
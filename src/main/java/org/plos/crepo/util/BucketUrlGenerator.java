@@ -22,27 +22,25 @@
 
 package org.plos.crepo.util;
 
-import static org.plos.crepo.util.BaseUrlGenerator.*;
-
 /**
  * Generates the content repo urls for buckets services.
  */
 public class BucketUrlGenerator {
 
-  private static final String CREATE_BUCKET = "${repoServer}/buckets";
-  private static final String BUCKETS_URL = "${repoServer}/buckets";
-  private static final String BUCKET_URL = "${repoServer}/buckets/${bucketName}";
+  private static final UrlTemplate CREATE_BUCKET = UrlTemplate.compile("${repoServer}/buckets");
+  private static final UrlTemplate BUCKETS_URL = UrlTemplate.compile("${repoServer}/buckets");
+  private static final UrlTemplate BUCKET_URL = UrlTemplate.compile("${repoServer}/buckets/${bucketName}");
 
   public static String getCreateBucketUrl(String repoServer) {
-    return replaceUrl(CREATE_BUCKET, getUrlBasicMap(repoServer));
+    return CREATE_BUCKET.render(repoServer);
   }
 
   public static String getBucketsUrl(String repoServer) {
-    return replaceUrl(BUCKETS_URL, getUrlBasicMap(repoServer));
+    return BUCKETS_URL.render(repoServer);
   }
 
   public static String getBucketUrl(String repoServer, String key) {
-    return replaceUrl(BUCKET_URL, getBucketBasicMap(repoServer, key));
+    return BUCKET_URL.render(repoServer, key);
   }
 
 }
@@ -22,15 +22,16 @@
 
 package org.plos.crepo.util;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonSyntaxException;
 import org.apache.commons.lang3.CharEncoding;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.util.EntityUtils;
+import org.plos.crepo.json.GsonRepoJsonCodec;
+import org.plos.crepo.json.RepoJsonCodec;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
 
 /**
  * Utility class used to handle the Http responses.
@@ -47,6 +48,13 @@ public class HttpResponseUtil {
   }
 
   public static String getErrorMessage(HttpResponse response) {
+    return getErrorMessage(response, GsonRepoJsonCodec.getInstance());
+  }
+
+  /**
+   * @param jsonCodec the codec with which to read the error body
+   */
+  public static String getErrorMessage(HttpResponse response, RepoJsonCodec jsonCodec) {
     HttpEntity entity = response.getEntity();
     String responseMessage;
     String errorMessage;
@@ -57,11 +65,10 @@ public class HttpResponseUtil {
     }
 
     try {
-      Gson gson = new Gson();
-      JsonElement responseElement = gson.fromJson(responseMessage, JsonElement.class);
-      JsonElement message = responseElement.getAsJsonObject().get("message");
-      errorMessage = (message == null)? "No error message":message.getAsString();
-    } catch (JsonSyntaxException e) { // Catch the possibles NOT JSON responses.
+      Map<String, Object> responseObject = jsonCodec.readMap(new StringReader(responseMessage));
+      Object message = responseObject.get("message");
+      errorMessage = (message == null)? "No error message":message.toString();
+    } catch (IOException e) { // Catch the possibles NOT JSON responses.
       errorMessage = "There was an error trying to obtain the JSON response error: " + response.getStatusLine();
     }
     return errorMessage;
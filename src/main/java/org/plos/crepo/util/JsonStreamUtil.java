@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.util;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+/**
+ * Utility class used to decode JSON responses without first reading them into memory whole.
+ */
+public class JsonStreamUtil {
+
+  /**
+   * Decode a JSON array one element at a time. Each element is passed to the consumer as soon as it has been read, so
+   * only one element is held in memory at a time, besides whatever the consumer keeps.
+   *
+   * @param adapter  decodes each element
+   * @param reader   the source of the JSON array
+   * @param consumer receives the decoded elements, in order
+   * @param <T>      the element type
+   * @throws IOException if the source cannot be read or does not hold a JSON array
+   */
+  public static <T> void readArray(TypeAdapter<? extends T> adapter, Reader reader, Consumer<? super T> consumer)
+      throws IOException {
+    JsonReader jsonReader = newReader(reader);
+    try {
+      jsonReader.beginArray();
+    } catch (IllegalStateException e) {
+      throw new IOException("Expected a JSON array", e);
+    }
+    while (jsonReader.hasNext()) {
+      T element;
+      try {
+        element = adapter.read(jsonReader);
+      } catch (IllegalStateException | JsonParseException e) {
+        throw new IOException("Malformed JSON array element", e);
+      }
+      consumer.accept(element);
+    }
+    jsonReader.endArray();
+  }
+
+  /**
+   * Decode a single JSON value.
+   *
+   * @param adapter decodes the value
+   * @param reader  the source of the JSON value
+   * @param <T>     the value type
+   * @return the decoded value
+   * @throws IOException if the source cannot be read or does not hold a value that the adapter accepts
+   */
+  public static <T> T read(TypeAdapter<T> adapter, Reader reader) throws IOException {
+    try {
+      return adapter.read(newReader(reader));
+    } catch (IllegalStateException | JsonParseException e) {
+      throw new IOException("Malformed JSON value", e);
+    }
+  }
+
+  private static JsonReader newReader(Reader reader) {
+    JsonReader jsonReader = new JsonReader(reader);
+    jsonReader.setLenient(true); // as Gson reads
+    return jsonReader;
+  }
+
+}
@@ -22,101 +22,65 @@
 
 package org.plos.crepo.util;
 
-import java.util.Map;
-
-import static org.plos.crepo.util.BaseUrlGenerator.*;
-
 /**
  * Generates the content repo urls for objects services.
  */
 public class ObjectUrlGenerator {
 
-  private static final String CREATE_OBJECT_URL = "${repoServer}/objects";
-  private static final String LATEST_OBJECT_URL = "${repoServer}/objects/${bucketName}?key=${objectKey}";
-  private static final String OBJECT_USING_VERSION_NUM_URL = "${repoServer}/objects/${bucketName}?key=${objectKey}&version=${versionNumber}";
-  private static final String OBJECT_USING_VERSION_UUID_URL = "${repoServer}/objects/${bucketName}?key=${objectKey}&uuid=${uuid}";
-  private static final String GET_LATEST_OBJECT_META_URL = "${repoServer}/objects/meta/${bucketName}?key=${objectKey}";
-  private static final String GET_OBJECT_META_USING_VERSION_NUM_URL = "${repoServer}/objects/meta/${bucketName}?key=${objectKey}&version=${versionNumber}";
-  private static final String GET_OBJECT_META_USING_VERSIONS_CKS = "${repoServer}/objects/meta/${bucketName}?key=${objectKey}&uuid=${uuid}";
-  private static final String GET_OBJECT_META_USING_TAG_URL = "${repoServer}/objects/meta/${bucketName}?key=${objectKey}&tag=${tag}";
-  private static final String GET_OBJECT_VERSIONS_URL = "${repoServer}/objects/versions/${bucketName}?key=${objectKey}";
-  private static final String GET_OBJECTS_URL = "${repoServer}/objects?bucketName=${bucketName}&offset=${offset}&limit=${limit}&includeDeleted=${includeDeleted}";
-  private static final String GET_OBJECTS_USING_TAG_URL = GET_OBJECTS_URL + "&tag=${tag}";
+  private static final UrlTemplate CREATE_OBJECT_URL = UrlTemplate.compile("${repoServer}/objects");
+  private static final UrlTemplate LATEST_OBJECT_URL = UrlTemplate.compile("${repoServer}/objects/${bucketName}?key=${objectKey}");
+  private static final UrlTemplate OBJECT_USING_VERSION_NUM_URL = UrlTemplate.compile("${repoServer}/objects/${bucketName}?key=${objectKey}&version=${versionNumber}");
+  private static final UrlTemplate OBJECT_USING_VERSION_UUID_URL = UrlTemplate.compile("${repoServer}/objects/${bucketName}?key=${objectKey}&uuid=${uuid}");
+  private static final UrlTemplate GET_LATEST_OBJECT_META_URL = UrlTemplate.compile("${repoServer}/objects/meta/${bucketName}?key=${objectKey}");
+  private static final UrlTemplate GET_OBJECT_META_USING_VERSION_NUM_URL = UrlTemplate.compile("${repoServer}/objects/meta/${bucketName}?key=${objectKey}&version=${versionNumber}");
+  private static final UrlTemplate GET_OBJECT_META_USING_VERSIONS_CKS = UrlTemplate.compile("${repoServer}/objects/meta/${bucketName}?key=${objectKey}&uuid=${uuid}");
+  private static final UrlTemplate GET_OBJECT_META_USING_TAG_URL = UrlTemplate.compile("${repoServer}/objects/meta/${bucketName}?key=${objectKey}&tag=${tag}");
+  private static final UrlTemplate GET_OBJECT_VERSIONS_URL = UrlTemplate.compile("${repoServer}/objects/versions/${bucketName}?key=${objectKey}");
+  private static final UrlTemplate GET_OBJECTS_URL = UrlTemplate.compile("${repoServer}/objects?bucketName=${bucketName}&offset=${offset}&limit=${limit}&includeDeleted=${includeDeleted}");
+  private static final UrlTemplate GET_OBJECTS_USING_TAG_URL = GET_OBJECTS_URL.extend("&tag=${tag}");
 
   public static String getLatestObjectUrl(String repoServer, String bucketName, String repoObjKey) {
-    return replaceUrl(LATEST_OBJECT_URL, getObjectBasicMap(repoServer, bucketName, repoObjKey));
+    return LATEST_OBJECT_URL.render(repoServer, bucketName, repoObjKey);
   }
 
   public static String getObjectUsingVersionNumUrl(String repoServer, String bucketName, String repoObjKey, int versionNumber) {
-    return replaceUrl(OBJECT_USING_VERSION_NUM_URL, getObjectMapWithVersionNum(repoServer, bucketName, repoObjKey, versionNumber));
+    return OBJECT_USING_VERSION_NUM_URL.render(repoServer, bucketName, repoObjKey, versionNumber);
   }
-/*
-  public static String getDeleteObjectVersionNumUrl(String repoServer, String bucketName, String repoObjKey, int versionNumber) {
-    return replaceUrl(OBJECT_USING_VERSION_NUM_URL, getObjectMapWithVersionNum(repoServer, bucketName, repoObjKey, versionNumber));
-  }*/
 
   public static String getObjectUsingUuidUrl(String repoServer, String bucketName, String repoObjKey, String uuid) {
-    return replaceUrl(OBJECT_USING_VERSION_UUID_URL, getObjectMapWithUuid(repoServer, bucketName, repoObjKey, uuid));
+    return OBJECT_USING_VERSION_UUID_URL.render(repoServer, bucketName, repoObjKey, uuid);
   }
 
-/*  public static String getDeleteObjectUuidUrl(String repoServer, String bucketName, String repoObjKey, String uuid) {
-    return replaceUrl(OBJECT_USING_VERSION_UUID_URL, getObjectMapWithUuid(repoServer, bucketName, repoObjKey, uuid));
-  }*/
-
   public static String getLatestObjectMetaUrl(String repoServer, String bucketName, String repoObjKey) {
-    return replaceUrl(GET_LATEST_OBJECT_META_URL, getObjectBasicMap(repoServer, bucketName, repoObjKey));
+    return GET_LATEST_OBJECT_META_URL.render(repoServer, bucketName, repoObjKey);
   }
 
   public static String getObjectMetaUsingVersionNumUrl(String repoServer, String bucketName, String repoObjKey, Integer versionNumber) {
-    return replaceUrl(GET_OBJECT_META_USING_VERSION_NUM_URL, getObjectMapWithVersionNum(repoServer, bucketName, repoObjKey, versionNumber));
+    return GET_OBJECT_META_USING_VERSION_NUM_URL.render(repoServer, bucketName, repoObjKey, versionNumber);
   }
 
   public static String getObjectMetaUsingUuidUrl(String repoServer, String bucketName, String repoObjKey, String uuid) {
-    return replaceUrl(GET_OBJECT_META_USING_VERSIONS_CKS, getObjectMapWithUuid(repoServer, bucketName, repoObjKey, uuid));
+    return GET_OBJECT_META_USING_VERSIONS_CKS.render(repoServer, bucketName, repoObjKey, uuid);
   }
 
   public static String getObjectVersionsUrl(String repoServer, String bucketName, String repoObjKey) {
-    return replaceUrl(GET_OBJECT_VERSIONS_URL, getObjectBasicMap(repoServer, bucketName, repoObjKey));
+    return GET_OBJECT_VERSIONS_URL.render(repoServer, bucketName, repoObjKey);
   }
 
   public static String getCreateObjectUrl(String repoServer) {
-    return replaceUrl(CREATE_OBJECT_URL, getUrlBasicMap(repoServer));
+    return CREATE_OBJECT_URL.render(repoServer);
   }
 
   public static String getGetObjMetaUsingTagUrl(String repoServer, String bucketName, String key, String tag) {
-    return replaceUrl(GET_OBJECT_META_USING_TAG_URL, getObjectMapWithTag(repoServer, bucketName, key, tag));
+    return GET_OBJECT_META_USING_TAG_URL.render(repoServer, bucketName, key, tag);
   }
 
   public static String getGetObjectsUrl(String repoServer, String bucketName, int offset, int limit, boolean includeDeleted) {
-    return replaceUrl(GET_OBJECTS_URL, getContentInBucketMap(repoServer, bucketName, offset, limit, includeDeleted));
+    return GET_OBJECTS_URL.render(repoServer, bucketName, offset, limit, includeDeleted);
   }
 
   public static String getGetObjectsUrl(String repoServer, String bucketName, int offset, int limit, boolean includeDeleted, String tag) {
-    return replaceUrl(GET_OBJECTS_USING_TAG_URL, getContentInBucketMap(repoServer, bucketName, offset, limit, includeDeleted, tag));
-  }
-
-  private static Map<String, String> getObjectBasicMap(String repoServer, String bucketName, String repoObjKey) {
-    Map<String, String> values = getBucketBasicMap(repoServer, bucketName);
-    values.put("objectKey", repoObjKey);
-    return values;
-  }
-
-  private static Map<String, String> getObjectMapWithUuid(String repoServer, String bucketName, String repoObjKey, String uuid) {
-    Map<String, String> values = getObjectBasicMap(repoServer, bucketName, repoObjKey);
-    values.put("uuid", uuid);
-    return values;
-  }
-
-  private static Map<String, String> getObjectMapWithTag(String repoServer, String bucketName, String collKey, String tag) {
-    Map<String, String> values = getObjectBasicMap(repoServer, bucketName, collKey);
-    values.put("tag", String.valueOf(tag));
-    return values;
-  }
-
-  private static Map<String, String> getObjectMapWithVersionNum(String repoServer, String bucketName, String repoObjKey, int versionNumber) {
-    Map<String, String> values = getObjectBasicMap(repoServer, bucketName, repoObjKey);
-    values.put("versionNumber", String.valueOf(versionNumber));
-    return values;
+    return GET_OBJECTS_USING_TAG_URL.render(repoServer, bucketName, offset, limit, includeDeleted, tag);
   }
 
 }
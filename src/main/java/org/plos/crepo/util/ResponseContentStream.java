@@ -0,0 +1,207 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.util;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The content of a response, which owns the response and so the pooled connection that it holds. The connection is
+ * released as soon as the content has been read to the end, or when the stream is closed, whichever comes first.
+ * <p>
+ * Closing the stream before the end drains what is left if it is small, so that the connection can be reused. If more
+ * than the drain limit is left, the connection is closed instead, because reading it all would cost more than opening
+ * a new one.
+ */
+public class ResponseContentStream extends FilterInputStream {
+
+  private static final Logger log = LoggerFactory.getLogger(ResponseContentStream.class);
+
+  public static final long DEFAULT_DRAIN_LIMIT = 64 * 1024;
+
+  private final CloseableHttpResponse response;
+  private final long contentLength;
+  private final long drainLimit;
+  private final long openedAt;
+
+  private long bytesRead;
+  private boolean released;
+  private boolean closed;
+
+  private ResponseContentStream(CloseableHttpResponse response, InputStream content, long contentLength,
+                                long drainLimit) {
+    super(content);
+    this.response = response;
+    this.contentLength = contentLength;
+    this.drainLimit = drainLimit;
+    this.openedAt = System.nanoTime();
+  }
+
+  /**
+   * @param response a response with content
+   * @return a stream of the response's content that owns the response
+   * @throws IOException if the content cannot be opened, in which case the response has been closed
+   */
+  public static ResponseContentStream open(CloseableHttpResponse response) throws IOException {
+    return open(response, DEFAULT_DRAIN_LIMIT);
+  }
+
+  /**
+   * @param response   a response with content
+   * @param drainLimit the most bytes to read and discard when the stream is closed early
+   * @return a stream of the response's content that owns the response
+   * @throws IOException if the content cannot be opened, in which case the response has been closed
+   */
+  public static ResponseContentStream open(CloseableHttpResponse response, long drainLimit) throws IOException {
+    Objects.requireNonNull(response);
+    try {
+      HttpEntity entity = response.getEntity();
+      return new ResponseContentStream(response, entity.getContent(), entity.getContentLength(), drainLimit);
+    } catch (IOException | RuntimeException e) {
+      response.close();
+      throw e;
+    }
+  }
+
+  private void checkOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    checkOpen();
+    if (released) return -1;
+    int b = in.read();
+    if (b < 0) {
+      release(true);
+    } else {
+      bytesRead++;
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    checkOpen();
+    if (released) return -1;
+    int count = in.read(b, off, len);
+    if (count < 0) {
+      release(true);
+    } else {
+      bytesRead += count;
+    }
+    return count;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    checkOpen();
+    if (released) return 0;
+    long skipped = in.skip(n);
+    bytesRead += skipped;
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    checkOpen();
+    return released ? 0 : in.available();
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  @Override
+  public synchronized void mark(int readlimit) {
+  }
+
+  @Override
+  public synchronized void reset() throws IOException {
+    throw new IOException("mark/reset not supported");
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) return;
+    closed = true;
+    if (!released) {
+      release(drain());
+    }
+  }
+
+  /**
+   * Read and discard the rest of the content, if there is little enough of it.
+   *
+   * @return whether the end of the content was reached
+   */
+  private boolean drain() {
+    if (contentLength >= 0 && contentLength - bytesRead > drainLimit) {
+      return false;
+    }
+    byte[] buffer = new byte[(int) Math.min(drainLimit + 1, 8192)];
+    long drained = 0;
+    try {
+      int count;
+      while ((count = in.read(buffer)) >= 0) {
+        drained += count;
+        if (drained > drainLimit) return false;
+      }
+      return true;
+    } catch (IOException e) {
+      log.debug("Could not drain response content", e);
+      return false;
+    }
+  }
+
+  /**
+   * Release the connection, to the pool if the content was read to the end and otherwise by closing it.
+   */
+  private void release(boolean reusable) throws IOException {
+    released = true;
+    try {
+      if (reusable) {
+        in.close(); // at the end of the content, this returns the connection to the pool
+      }
+    } finally {
+      response.close(); // closes the connection, unless it was already returned
+      if (log.isDebugEnabled()) {
+        log.debug("Released connection after {} ms; read {} of {} bytes; {}",
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - openedAt), bytesRead,
+            (contentLength < 0) ? "unknown" : contentLength, reusable ? "reusable" : "closed");
+      }
+    }
+  }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.util;
+
+import com.google.common.base.Preconditions;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A URL template such as <code>${repoServer}/objects/${bucketName}?key=${objectKey}</code>, parsed once into literal
+ * and parameter segments so that rendering is a single pass into a {@link StringBuilder}.
+ * <p>
+ * The first parameter is the repo server's base URL and is inserted as given. Every other value is percent-encoded
+ * (RFC 3986, as UTF-8), so keys and tags containing spaces, <code>&amp;</code>, <code>=</code>, <code>/</code> or
+ * non-ASCII characters arrive at the server intact.
+ */
+final class UrlTemplate {
+
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+  private final String[] literals; // literals[i] precedes parameter i; the last element follows the last parameter
+  private final String[] parameterNames;
+  private final int literalLength;
+
+  private UrlTemplate(String[] literals, String[] parameterNames) {
+    this.literals = literals;
+    this.parameterNames = parameterNames;
+    int length = 0;
+    for (String literal : literals) {
+      length += literal.length();
+    }
+    this.literalLength = length;
+  }
+
+  /**
+   * @param template a template whose parameters are written as <code>${name}</code>
+   * @return the compiled template
+   */
+  static UrlTemplate compile(String template) {
+    List<String> literals = new ArrayList<>();
+    List<String> parameterNames = new ArrayList<>();
+    int position = 0;
+    int start;
+    while ((start = template.indexOf("${", position)) >= 0) {
+      int end = template.indexOf('}', start);
+      Preconditions.checkArgument(end > start + 2, "Malformed template: %s", template);
+      literals.add(template.substring(position, start));
+      parameterNames.add(template.substring(start + 2, end));
+      position = end + 1;
+    }
+    literals.add(template.substring(position));
+    return new UrlTemplate(literals.toArray(new String[literals.size()]),
+        parameterNames.toArray(new String[parameterNames.size()]));
+  }
+
+  /**
+   * Append a template with further literals and parameters, as in <code>LIST_URL.extend("&amp;tag=${tag}")</code>.
+   */
+  UrlTemplate extend(String suffix) {
+    StringBuilder template = new StringBuilder();
+    for (int i = 0; i < parameterNames.length; i++) {
+      template.append(literals[i]).append("${").append(parameterNames[i]).append('}');
+    }
+    return compile(template.append(literals[parameterNames.length]).append(suffix).toString());
+  }
+
+  /**
+   * @param values one value per parameter, in the order the parameters appear; rendered with {@link
+   *               String#valueOf(Object)}
+   * @return the URL
+   */
+  String render(Object... values) {
+    Preconditions.checkArgument(values.length == parameterNames.length,
+        "Expected %s values; got %s", parameterNames.length, values.length);
+    String[] strings = new String[values.length];
+    int length = literalLength;
+    for (int i = 0; i < values.length; i++) {
+      strings[i] = String.valueOf(values[i]);
+      length += strings[i].length();
+    }
+
+    StringBuilder url = new StringBuilder(length + 16);
+    for (int i = 0; i < strings.length; i++) {
+      url.append(literals[i]);
+      if (i == 0) {
+        url.append(strings[i]);
+      } else {
+        appendEncoded(url, strings[i]);
+      }
+    }
+    return url.append(literals[strings.length]).toString();
+  }
+
+  private static boolean isUnreserved(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+        || c == '-' || c == '.' || c == '_' || c == '~';
+  }
+
+  static void appendEncoded(StringBuilder url, String value) {
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (isUnreserved(c)) {
+        url.append(c);
+      } else if (c < 0x80) {
+        appendEscape(url, c);
+      } else {
+        // encode the rest of a run of non-ASCII characters, keeping surrogate pairs together
+        int end = i + 1;
+        while (end < length && value.charAt(end) >= 0x80) {
+          end++;
+        }
+        for (byte b : value.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+          appendEscape(url, b & 0xFF);
+        }
+        i = end - 1;
+      }
+    }
+  }
+
+  private static void appendEscape(StringBuilder url, int octet) {
+    url.append('%').append(HEX_DIGITS[octet >> 4]).append(HEX_DIGITS[octet & 0xF]);
+  }
+
+}
@@ -34,6 +34,7 @@ import org.mockito.Mockito;
 import org.plos.crepo.config.ContentRepoAccessConfig;
 import org.plos.crepo.exceptions.ContentRepoException;
 import org.plos.crepo.exceptions.ErrorType;
+import org.plos.crepo.json.RepoJsonCodec;
 import org.plos.crepo.util.HttpResponseUtil;
 import org.powermock.api.mockito.PowerMockito;
 
@@ -42,6 +43,8 @@ import java.io.IOException;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -74,7 +77,8 @@ public class BaseDaoTest {
 
   protected void mockHttpResponseUtilCalls(CloseableHttpResponse mockResponse) {
     PowerMockito.mockStatic(HttpResponseUtil.class);
-    Mockito.when(HttpResponseUtil.getErrorMessage(mockResponse)).thenReturn(ERROR_MESSAGE);
+    Mockito.when(HttpResponseUtil.getErrorMessage(eq(mockResponse), any(RepoJsonCodec.class)))
+        .thenReturn(ERROR_MESSAGE);
   }
 
   protected void mockCommonCalls(ContentRepoAccessConfig accessConfig, int status) throws IOException {
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.plos.crepo.dao.async;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+import org.plos.crepo.exceptions.ErrorType;
+import org.plos.crepo.json.GsonRepoJsonCodec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class ContentResponseConsumerTest {
+
+  private static ContentResponseConsumer receive() throws IOException, HttpException {
+    ContentResponseConsumer consumer = new ContentResponseConsumer(new HttpGet("http://localhost/objects/bucket"),
+        ErrorType.ErrorFetchingObject, GsonRepoJsonCodec.getInstance(), Runnable::run);
+    consumer.responseReceived(new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK"));
+    return consumer;
+  }
+
+  @Test
+  public void testCloseRunsHook() throws Exception {
+    ContentResponseConsumer consumer = receive();
+    AtomicInteger calls = new AtomicInteger();
+    consumer.setOnClose(calls::incrementAndGet);
+
+    InputStream stream = consumer.getStream().get();
+    stream.close();
+    stream.close();
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void testHookSetAfterClose() throws Exception {
+    ContentResponseConsumer consumer = receive();
+    consumer.getStream().get().close();
+
+    AtomicInteger calls = new AtomicInteger();
+    consumer.setOnClose(calls::incrementAndGet);
+    assertEquals(1, calls.get());
+  }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.dao.collections.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+import org.plos.crepo.json.GsonRepoJsonCodec;
+import org.plos.crepo.json.JacksonRepoJsonCodec;
+import org.plos.crepo.json.RepoJsonCodec;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.input.RepoCollectionEntity;
+import org.plos.crepo.model.input.RepoCollectionInput;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CollectionJsonEntityTest {
+
+  private static JsonElement parse(String json) {
+    return new JsonParser().parse(json);
+  }
+
+  private static final RepoJsonCodec[] CODECS = {GsonRepoJsonCodec.getInstance(), new JacksonRepoJsonCodec()};
+
+  private static void assertMatchesReflectiveForm(RepoCollectionEntity collection) throws IOException {
+    for (RepoJsonCodec codec : CODECS) {
+      assertMatchesReflectiveForm(codec, collection);
+    }
+  }
+
+  private static void assertMatchesReflectiveForm(RepoJsonCodec codec, RepoCollectionEntity collection)
+      throws IOException {
+    CollectionJsonEntity entity = new CollectionJsonEntity(codec, collection);
+    JsonElement expected = parse(new Gson().toJson(collection));
+
+    ByteArrayOutputStream written = new ByteArrayOutputStream();
+    entity.writeTo(written);
+    assertEquals(expected, parse(new String(written.toByteArray(), StandardCharsets.UTF_8)));
+
+    // repeatable, and readable as content
+    assertEquals(expected, parse(EntityUtils.toString(entity)));
+    assertEquals(expected, parse(EntityUtils.toString(entity)));
+  }
+
+  @Test
+  public void testWriteFullCollection() throws IOException {
+    RepoCollectionInput input = RepoCollectionInput.builder("bucket", "coll\u00e9ction \u2603")
+        .setObjects(ImmutableList.of(
+            RepoVersion.create("bucket", "obj1", "a90cdd64-0536-40c2-b07d-03f7f2ed6ee6"),
+            RepoVersion.create("other", "obj\"2", "b90cdd64-0536-40c2-b07d-03f7f2ed6ee7")))
+        .setTimestamp("2014-09-23 11:47:15")
+        .setTag("t\u00e4g")
+        .setUserMetadata("{\"nested\":[1,2]}")
+        .setCreationDateTime("2014-09-23 11:47:15")
+        .build();
+    assertMatchesReflectiveForm(new RepoCollectionEntity(input, "bucket", "new"));
+  }
+
+  @Test
+  public void testWriteOmitsAbsentFields() throws IOException {
+    RepoCollectionInput input = RepoCollectionInput.create("bucket", "key", ImmutableList.<RepoVersion>of());
+    RepoCollectionEntity collection = new RepoCollectionEntity(input, "bucket", "auto");
+    assertMatchesReflectiveForm(collection);
+    assertTrue(new CollectionJsonEntity(GsonRepoJsonCodec.getInstance(), collection).getContentType().getValue().contains("application/json"));
+  }
+
+}
@@ -41,6 +41,7 @@ import org.plos.crepo.config.ContentRepoAccessConfig;
 import org.plos.crepo.dao.BaseDaoTest;
 import org.plos.crepo.exceptions.ContentRepoException;
 import org.plos.crepo.exceptions.ErrorType;
+import org.plos.crepo.json.GsonRepoJsonCodec;
 import org.plos.crepo.model.identity.RepoVersion;
 import org.plos.crepo.model.input.RepoCollectionInput;
 import org.plos.crepo.util.CollectionUrlGenerator;
@@ -78,6 +79,7 @@ public class ContentRepoCollectionInputDaoImplTest extends BaseDaoTest {
   public void setUp() {
     contentRepoCollectionDaoImpl = new ContentRepoCollectionDaoImpl(repoAccessConfig);
     when(repoAccessConfig.getRepoServer()).thenReturn(REPO_SERVER);
+    when(repoAccessConfig.getJsonCodec()).thenReturn(GsonRepoJsonCodec.getInstance());
     PowerMockito.mockStatic(CollectionUrlGenerator.class);
   }
 
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.json;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.plos.crepo.model.metadata.RepoCollectionList;
+import org.plos.crepo.model.metadata.RepoMetadataFactory;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the Gson and Jackson codecs on metadata shaped like what the content repo serves for an article: a listing
+ * of object versions and a collection with its member objects inlined. Run with
+ * <pre>
+ *   mvn test-compile exec:java -Dexec.mainClass=org.plos.crepo.json.RepoJsonCodecBenchmark -Dexec.classpathScope=test
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepoJsonCodecBenchmark {
+
+  private static final int OBJECT_COUNT = 100;
+
+  @Param({"gson", "jackson"})
+  public String backend;
+
+  private RepoJsonCodec codec;
+  private String objectListJson;
+  private String collectionJson;
+  private String configJson;
+
+  private final RepoMetadataFactory<RepoObjectMetadata> objects = RepoMetadataFactory.forObjects("corpus");
+  private final RepoMetadataFactory<RepoCollectionList> collections = RepoMetadataFactory.forCollectionLists("corpus");
+
+  private static String objectJson(int i) {
+    return "{\"key\":\"10.1371/journal.pone.0123456.g" + String.format("%03d", i) + ".PNG_M\"," +
+        "\"uuid\":\"" + new UUID(i, i) + "\",\"versionNumber\":" + (i % 4) + ",\"tag\":\"ingested\"," +
+        "\"status\":\"USED\",\"timestamp\":\"2017-03-01 12:30:45.0\",\"creationDate\":\"2017-02-01 08:00:00.5\"," +
+        "\"size\":" + (12345 + i) + ",\"checksum\":\"" + Integer.toHexString(i * 7919) + "5d41402abc4b2a76b9719d91\"," +
+        "\"contentType\":\"image/png\",\"downloadName\":\"pone.0123456.g" + i + ".png\"," +
+        "\"userMetadata\":\"{\\\"ingestion\\\":\\\"run-" + i + "\\\",\\\"dimensions\\\":[640,480]}\"," +
+        "\"reproxyURL\":[\"http://mogile1/dev1/" + i + ".fid\",\"http://mogile2/dev2/" + i + ".fid\"]}";
+  }
+
+  @Setup
+  public void setUp() {
+    codec = backend.equals("gson") ? GsonRepoJsonCodec.getInstance() : new JacksonRepoJsonCodec();
+
+    StringBuilder list = new StringBuilder("[");
+    for (int i = 0; i < OBJECT_COUNT; i++) {
+      list.append(i == 0 ? "" : ",").append(objectJson(i));
+    }
+    objectListJson = list.append(']').toString();
+
+    collectionJson = "{\"key\":\"10.1371/journal.pone.0123456\",\"uuid\":\"" + new UUID(1, 2) + "\"," +
+        "\"versionNumber\":2,\"tag\":\"published\",\"status\":\"USED\",\"timestamp\":\"2017-03-01 12:30:45.0\"," +
+        "\"creationDate\":\"2017-02-01 08:00:00.5\",\"userMetadata\":\"{\\\"manuscript\\\":true}\"," +
+        "\"objects\":" + objectListJson + "}";
+
+    configJson = "{\"version\":\"1.4\",\"hasXReproxy\":true,\"objectStore\":\"mogile\"," +
+        "\"buckets\":{\"corpus\":{\"activeObjects\":123456,\"totalObjects\":234567}}}";
+  }
+
+  @Benchmark
+  public void readObjectList(Blackhole blackhole) throws IOException {
+    codec.readMetadataArray(objects, new StringReader(objectListJson), blackhole::consume);
+  }
+
+  @Benchmark
+  public RepoCollectionList readCollection() throws IOException {
+    return codec.readMetadata(collections, new StringReader(collectionJson));
+  }
+
+  @Benchmark
+  public Map<String, Object> readConfig() throws IOException {
+    return codec.readMap(new StringReader(configJson));
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(RepoJsonCodecBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build()).run();
+  }
+
+}
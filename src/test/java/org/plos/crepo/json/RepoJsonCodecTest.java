@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.google.common.collect.ImmutableList;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.junit.Test;
+import org.plos.crepo.model.metadata.RepoCollectionList;
+import org.plos.crepo.model.metadata.RepoMetadataFactory;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RepoJsonCodecTest {
+
+  private static final RepoJsonCodec GSON = GsonRepoJsonCodec.getInstance();
+  private static final RepoJsonCodec JACKSON = new JacksonRepoJsonCodec();
+
+  private static final String MAP_JSON = "{\"string\": \"foo\", \"number\": 5, \"decimal\": 0.25, \"boolean\": true, " +
+      "\"null\": null, \"map\": {\"bar\": [1, null, \"x\"]}, \"empty\": []}";
+
+  private static final String COLLECTION_JSON = "{\"key\": \"collKey\", \"versionNumber\": 3, \"tag\": \"final\", " +
+      "\"uuid\": \"6d4bb1d6-4bb9-4c76-9ad0-7b0f62d4a10f\", \"status\": \"USED\", \"absent\": null, " +
+      "\"timestamp\": \"2017-03-01 12:30:45\", \"extra\": {\"a\": [1, 2]}, \"objects\": [" +
+      "{\"key\": \"obj1\", \"uuid\": \"1d4bb1d6-4bb9-4c76-9ad0-7b0f62d4a10f\", \"versionNumber\": 0, \"size\": 10}, " +
+      "{\"key\": \"obj2\", \"uuid\": \"2d4bb1d6-4bb9-4c76-9ad0-7b0f62d4a10f\", \"versionNumber\": 1, " +
+      "\"reproxyURL\": [\"http://example.com/a\"]}]}";
+
+  private static StringReader reader(String json) {
+    return new StringReader(json);
+  }
+
+  @Test
+  public void testReadMap() throws IOException {
+    Map<String, Object> expected = new Gson().fromJson(MAP_JSON, new TypeToken<Map<String, Object>>() {
+    }.getType());
+    for (RepoJsonCodec codec : new RepoJsonCodec[]{GSON, JACKSON}) {
+      Map<String, Object> map = codec.readMap(reader(MAP_JSON));
+      assertEquals(expected, map);
+      map.put("mutable", true);
+    }
+
+    String listJson = "[" + MAP_JSON + ", null, {}]";
+    assertEquals(GSON.readMapList(reader(listJson)), JACKSON.readMapList(reader(listJson)));
+  }
+
+  @Test
+  public void testReadValue() throws IOException {
+    for (String json : new String[]{MAP_JSON, "[1, [], {}, null]", "\"text\"", "true", "null"}) {
+      assertEquals(GSON.readValue(reader(json)), JACKSON.readValue(reader(json)));
+    }
+    assertNull(JACKSON.readValue(reader("null")));
+  }
+
+  @Test
+  public void testReadMetadata() throws IOException {
+    RepoMetadataFactory<RepoCollectionList> factory = RepoMetadataFactory.forCollectionLists("bucket");
+    RepoCollectionList fromGson = GSON.readMetadata(factory, reader(COLLECTION_JSON));
+    RepoCollectionList fromJackson = JACKSON.readMetadata(factory, reader(COLLECTION_JSON));
+
+    assertEquals(fromGson, fromJackson);
+    assertEquals(fromGson.getVersion(), fromJackson.getVersion());
+    assertEquals(2, fromJackson.getObjectCount());
+    assertEquals(fromGson.getObjects(), fromJackson.getObjects());
+    assertEquals(ImmutableList.of("http://example.com/a").toString(),
+        fromJackson.getObject(1).getReproxyUrls().toString());
+  }
+
+  @Test
+  public void testReadMetadataArray() throws IOException {
+    String json = "[{\"key\": \"a\", \"versionNumber\": 0}, {\"key\": \"b\", \"versionNumber\": 1, \"size\": 7}]";
+    RepoMetadataFactory<RepoObjectMetadata> factory = RepoMetadataFactory.forObjects("bucket");
+    List<RepoObjectMetadata> fromGson = new ArrayList<>();
+    List<RepoObjectMetadata> fromJackson = new ArrayList<>();
+    GSON.readMetadataArray(factory, reader(json), fromGson::add);
+    JACKSON.readMetadataArray(factory, reader(json), fromJackson::add);
+
+    assertEquals(2, fromJackson.size());
+    assertEquals(fromGson, fromJackson);
+    assertEquals(7L, fromJackson.get(1).getSize());
+  }
+
+  @Test
+  public void testMetadataAdapterIsKeptPerKindAndBucket() throws IOException {
+    String json = "{\"key\": \"a\", \"versionNumber\": 0}";
+    assertEquals(RepoMetadataFactory.forObjects("bucket"), RepoMetadataFactory.forObjects("bucket"));
+
+    RepoObjectMetadata first = GSON.readMetadata(RepoMetadataFactory.forObjects("bucket"), reader(json));
+    RepoObjectMetadata other = GSON.readMetadata(RepoMetadataFactory.forObjects("other"), reader(json));
+    RepoCollectionList list = GSON.readMetadata(RepoMetadataFactory.forCollectionLists("bucket"), reader(json));
+    assertEquals("bucket", first.getVersionNumber().getId().getBucketName());
+    assertEquals("other", other.getVersionNumber().getId().getBucketName());
+    assertEquals(0, list.getObjectCount());
+  }
+
+  @Test
+  public void testJacksonLeavesCallersFactoryUnchanged() {
+    JsonFactory factory = new JsonFactory();
+    new JacksonRepoJsonCodec(factory);
+    assertTrue(factory.isEnabled(JsonParser.Feature.AUTO_CLOSE_SOURCE));
+    assertTrue(factory.isEnabled(JsonGenerator.Feature.AUTO_CLOSE_TARGET));
+  }
+
+  @Test
+  public void testLenientSyntax() throws IOException {
+    String json = "{'single': 'quoted', unquoted: 1 /* comment */}";
+    assertEquals(GSON.readMap(reader(json)), JACKSON.readMap(reader(json)));
+  }
+
+  @Test
+  public void testMalformed() {
+    for (RepoJsonCodec codec : new RepoJsonCodec[]{GSON, JACKSON}) {
+      for (String json : new String[]{"", "{\"key\": ", "[1, 2]", "{\"objects\": [null]}"}) {
+        try {
+          codec.readMetadata(RepoMetadataFactory.forCollectionLists("bucket"), reader(json));
+          fail("Expected an IOException from " + codec.getClass().getSimpleName() + " for " + json);
+        } catch (IOException expected) {
+        }
+      }
+    }
+  }
+
+}
@@ -25,17 +25,37 @@ package org.plos.crepo.model.metadata;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.gson.Gson;
-import com.google.gson.JsonElement;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 import org.junit.Test;
+import org.plos.crepo.json.RepoJsonCodec;
+import org.plos.crepo.model.Status;
+import org.plos.crepo.model.identity.RepoVersion;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class RepoMetadataTest {
 
@@ -58,7 +78,7 @@ public class RepoMetadataTest {
   }
 
   @Test
-  public void testConvertJsonToImmutable() {
+  public void testJsonUserMetadataIsImmutable() {
     String json = "{\"string\": \"foo\", \"number\": 5, \"boolean\": true, \"null\": null, " +
         "\"map\": {\"bar\": \"baz\"}, \"list\": [\"a\",\"b\",1,2,true,false], " +
         "\"deepNested\": [[]] } ";
@@ -72,8 +92,9 @@ public class RepoMetadataTest {
     expected.put("list", ImmutableList.of("a", "b", 1.0, 2.0, true, false));
     expected.put("deepNested", ImmutableList.of(ImmutableList.of()));
 
-    JsonElement jsonElement = new Gson().fromJson(json, JsonElement.class);
-    Map<?, ?> actual = (Map<?, ?>) RepoMetadata.convertJsonToImmutable(jsonElement);
+    RepoObjectMetadata metadata = new RepoObjectMetadata("bucket",
+        ImmutableMap.of("key", "objKey", "userMetadata", json));
+    Map<?, ?> actual = (Map<?, ?>) metadata.getJsonUserMetadata().get();
 
     assertEquals(expected, actual);
     assertIsUnmodifiable(actual);
@@ -82,4 +103,131 @@ public class RepoMetadataTest {
     assertIsUnmodifiable((Collection<?>) ((List<?>) actual.get("deepNested")).get(0));
   }
 
+  @Test
+  public void testUserMetadataIsDecodedByTheReadingCodec() throws IOException {
+    RepoJsonCodec codec = mock(RepoJsonCodec.class);
+    when(codec.readValue(any(Reader.class))).thenReturn(ImmutableMap.of("a", 1.0));
+    RepoMetadataFactory<RepoCollectionList> factory = RepoMetadataFactory.forCollectionLists("bucket");
+    RepoMetadataFactory.Fields fields = factory.newFields(codec);
+    fields.put("userMetadata", "{\"a\": 1}");
+    fields.startObjects();
+    fields.addObject().put("userMetadata", "{\"a\": 1}");
+    RepoCollectionList collection = factory.build(fields);
+
+    assertEquals(ImmutableMap.of("a", 1.0), collection.getJsonUserMetadata().get());
+    assertEquals(ImmutableMap.of("a", 1.0), collection.getObject(0).getJsonUserMetadata().get());
+    verify(codec, times(2)).readValue(any(Reader.class));
+  }
+
+  private static final String OBJECT_JSON = "{\"key\": \"objKey\", " +
+      "\"uuid\": \"6d4bb1d6-4bb9-4c76-9ad0-7b0f62d4a10f\", \"versionNumber\": 2, " +
+      "\"tag\": \"final\", \"status\": \"USED\", " +
+      "\"timestamp\": \"2017-03-01 12:30:45\", \"creationDate\": \"2017-02-01 08:00:00.5\", " +
+      "\"userMetadata\": \"{\\\"a\\\": 1}\", \"size\": 12345, \"checksum\": \"abc\", " +
+      "\"contentType\": \"text/plain\", \"downloadName\": \"file.txt\", " +
+      "\"reproxyURL\": [\"http://example.com/a\"], \"unknown\": {\"nested\": [1, \"x\", false]}, \"absent\": null}";
+
+  private static <M extends RepoMetadata> M decode(RepoMetadataAdapter<M> adapter, String json) throws IOException {
+    return adapter.read(new JsonReader(new StringReader(json)));
+  }
+
+  private static Map<String, Object> parseMap(String json) {
+    Map<String, Object> map = new Gson().fromJson(json, new TypeToken<Map<String, Object>>() {
+    }.getType());
+    map.values().removeIf(Objects::isNull);
+    return map;
+  }
+
+  @Test
+  public void testAdapterMatchesMapParsing() throws IOException {
+    RepoObjectMetadata decoded = decode(RepoMetadataAdapter.forObjects("bucket"), OBJECT_JSON);
+    RepoObjectMetadata parsed = new RepoObjectMetadata("bucket", parseMap(OBJECT_JSON));
+
+    assertEquals(parsed.getMapView(), decoded.getMapView());
+    assertEquals(parsed, decoded);
+    assertEquals(parsed.getVersion(), decoded.getVersion());
+    assertEquals(parsed.getVersionNumber(), decoded.getVersionNumber());
+    assertEquals(parsed.getTag(), decoded.getTag());
+    assertEquals(Status.USED, decoded.getStatus());
+    assertEquals(Timestamp.valueOf("2017-03-01 12:30:45"), decoded.getTimestamp());
+    assertEquals(parsed.getCreationDate(), decoded.getCreationDate());
+    assertEquals(parsed.getJsonUserMetadata(), decoded.getJsonUserMetadata());
+    assertEquals(12345L, decoded.getSize());
+    assertEquals(Optional.of("abc"), decoded.getChecksum());
+    assertEquals(Optional.of("text/plain"), decoded.getContentType());
+    assertEquals(Optional.of("file.txt"), decoded.getDownloadName());
+    assertEquals(parsed.getReproxyUrls(), decoded.getReproxyUrls());
+  }
+
+  @Test
+  public void testEqualityDoesNotBuildMapView() throws IOException {
+    RepoObjectMetadata first = decode(RepoMetadataAdapter.forObjects("bucket"), OBJECT_JSON);
+    RepoObjectMetadata second = decode(RepoMetadataAdapter.forObjects("bucket"), OBJECT_JSON);
+    RepoObjectMetadata other = decode(RepoMetadataAdapter.forObjects("bucket"),
+        OBJECT_JSON.replace("\"nested\"", "\"other\""));
+
+    assertEquals(first, second);
+    assertEquals(first.hashCode(), second.hashCode());
+    assertNotEquals(first, other);
+    assertFalse(first.isMapViewBuilt());
+    assertFalse(second.isMapViewBuilt());
+    assertFalse(other.isMapViewBuilt());
+
+    RepoObjectMetadata parsed = new RepoObjectMetadata("bucket", parseMap(OBJECT_JSON));
+    assertEquals(parsed, first);
+    assertEquals(parsed.hashCode(), first.hashCode());
+  }
+
+  @Test
+  public void testAdapterKeepsUntypedFields() throws IOException {
+    String json = "{\"key\": \"objKey\", \"uuid\": \"not-a-uuid\", \"versionNumber\": 1.5, \"size\": \"big\"}";
+    RepoObjectMetadata decoded = decode(RepoMetadataAdapter.forObjects("bucket"), json);
+
+    assertEquals(parseMap(json), decoded.getMapView());
+    assertEquals(1, decoded.getVersionNumber().getNumber());
+    assertFalse(decoded.getTag().isPresent());
+    try {
+      decoded.getVersion();
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertNotNull(expected);
+    }
+  }
+
+  @Test
+  public void testAdapterDecodesCollectionList() throws IOException {
+    String json = "{\"key\": \"collKey\", \"versionNumber\": 0, \"objects\": [" + OBJECT_JSON + "]}";
+    RepoCollectionList decoded = decode(RepoMetadataAdapter.forCollectionLists("bucket"), json);
+    // Parsing into a map does not allow null members
+    RepoCollectionList parsed = new RepoCollectionList("bucket", parseMap(json.replace(", \"absent\": null", "")));
+
+    assertEquals(parsed.getMapView(), decoded.getMapView());
+    assertEquals(1, decoded.getObjects().size());
+    assertEquals(parsed.getObjects().get(0).getVersion(), decoded.getObjects().get(0).getVersion());
+    assertEquals(0, decoded.getVersionNumber().getNumber());
+  }
+
+  @Test
+  public void testLazyCollectionMembers() throws IOException {
+    List<RepoVersion> versions = new ArrayList<>();
+    StringBuilder objectsJson = new StringBuilder();
+    for (int i = 0; i < 3; i++) {
+      RepoVersion version = RepoVersion.create("bucket", "obj" + i, UUID.randomUUID());
+      versions.add(version);
+      objectsJson.append(i == 0 ? "" : ", ").append("{\"key\": \"").append(version.getId().getKey())
+          .append("\", \"uuid\": \"").append(version.getUuid()).append("\"}");
+    }
+    String json = "{\"key\": \"collKey\", \"objects\": [" + objectsJson + "]}";
+
+    RepoCollectionList decoded = decode(RepoMetadataAdapter.forCollectionLists("bucket"), json);
+    RepoCollectionList parsed = new RepoCollectionList("bucket", parseMap(json));
+    for (RepoCollectionList collection : ImmutableList.of(decoded, parsed)) {
+      assertEquals(3, collection.getObjectCount());
+      assertEquals(versions, collection.getObjectVersions());
+      RepoObjectMetadata member = collection.getObject(1);
+      assertEquals(versions.get(1), member.getVersion());
+      assertSame(member, collection.getObjects().get(1));
+    }
+  }
+
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service;
+
+import com.google.common.io.ByteStreams;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.input.RepoObjectInput;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncContentRepoServiceImplTest {
+
+  private static final String BUCKET_NAME = "bucketName";
+
+  private ExecutorService executor;
+  private AsyncContentRepoService service;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+    service = new AsyncContentRepoServiceImpl(new InMemoryContentRepoService(BUCKET_NAME), executor);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private static RepoObjectInput input(String key, byte[] content) {
+    return RepoObjectInput.builder(BUCKET_NAME, key).setByteContent(content).setContentType("text/plain").build();
+  }
+
+  @Test
+  public void testComposeOperations() throws Exception {
+    byte[] content = {1, 2, 3};
+    InputStream stream = service.createRepoObject(input("key", content))
+        .thenCompose(created -> service.getRepoObject(created.getVersion()))
+        .get(10, TimeUnit.SECONDS);
+    try (InputStream s = stream) {
+      assertArrayEquals(content, ByteStreams.toByteArray(s));
+    }
+  }
+
+  @Test
+  public void testFanOut() throws Exception {
+    List<CompletableFuture<RepoObjectMetadata>> created = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      created.add(service.createRepoObject(input("key" + i, new byte[]{(byte) i})));
+    }
+    List<CompletableFuture<RepoObjectMetadata>> read = created.stream()
+        .map(future -> future.thenCompose(metadata -> service.getRepoObjectMetadata(metadata.getVersion())))
+        .collect(Collectors.toList());
+    CompletableFuture.allOf(read.toArray(new CompletableFuture<?>[read.size()])).get(10, TimeUnit.SECONDS);
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals(created.get(i).join(), read.get(i).join());
+    }
+  }
+
+  @Test
+  public void testFailureCompletesFuture() throws Exception {
+    RepoVersion missing = RepoVersion.create(BUCKET_NAME, "missing", "31a6f1cd-ef28-49fa-b811-f881ac4811f5");
+    CompletableFuture<RepoObjectMetadata> future = service.getRepoObjectMetadata(missing);
+    try {
+      future.get(10, TimeUnit.SECONDS);
+      fail("Expected exception");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof InMemoryContentRepoService.InMemoryContentRepoServiceException);
+    }
+  }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service;
+
+import com.google.common.io.ByteStreams;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.plos.crepo.config.AsyncHttpClientFunction;
+import org.plos.crepo.exceptions.NotFoundException;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.identity.RepoVersionNumber;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+import org.plos.crepo.util.EmbeddedRepoServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.plos.crepo.util.EmbeddedRepoServer.BUCKET_NAME;
+import static org.plos.crepo.util.EmbeddedRepoServer.UUID_VALUE;
+import static org.plos.crepo.util.EmbeddedRepoServer.respond;
+
+public class AsyncHttpContentRepoServiceTest {
+
+  @Rule
+  public EmbeddedRepoServer server = new EmbeddedRepoServer();
+
+  private CloseableHttpAsyncClient client;
+  private ExecutorService executor;
+  private AsyncContentRepoService service;
+  private byte[] content;
+
+  @Before
+  public void setUp() {
+    content = new byte[1024 * 1024];
+    new Random(0).nextBytes(content);
+
+    server.handle("/objects/meta/" + BUCKET_NAME, exchange -> {
+      if (exchange.getRequestURI().getQuery().contains("key=missing")) {
+        respond(exchange, 404, "{\"message\":\"Object not found\"}");
+      } else {
+        respond(exchange, 200, "{\"key\":\"key\",\"uuid\":\"" + UUID_VALUE + "\",\"versionNumber\":0,\"size\":3}");
+      }
+    });
+    server.handle("/objects/" + BUCKET_NAME, exchange -> respond(exchange, 200, content));
+
+    client = HttpAsyncClients.createDefault();
+    client.start();
+    executor = Executors.newCachedThreadPool();
+    service = new AsyncHttpContentRepoService(server.getUrl(), AsyncHttpClientFunction.from(client),
+        mock(AsyncContentRepoService.class), executor);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    client.close();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testGetMetadata() throws Exception {
+    RepoObjectMetadata metadata = service.getRepoObjectMetadata(RepoVersionNumber.create(BUCKET_NAME, "key", 0))
+        .get(10, TimeUnit.SECONDS);
+    assertEquals(RepoVersion.create(BUCKET_NAME, "key", UUID_VALUE), metadata.getVersion());
+    assertEquals(3L, metadata.getSize());
+  }
+
+  @Test
+  public void testNotFound() throws Exception {
+    try {
+      service.getRepoObjectMetadata(RepoVersionNumber.create(BUCKET_NAME, "missing", 0)).get(10, TimeUnit.SECONDS);
+      fail("Expected exception");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof NotFoundException);
+      assertEquals("Object not found", e.getCause().getMessage());
+    }
+  }
+
+  @Test
+  public void testStreamContent() throws Exception {
+    InputStream stream = service.getRepoObject(RepoVersion.create(BUCKET_NAME, "key", UUID_VALUE))
+        .get(10, TimeUnit.SECONDS);
+    try (InputStream s = stream) {
+      assertArrayEquals(content, ByteStreams.toByteArray(s));
+    }
+  }
+
+}
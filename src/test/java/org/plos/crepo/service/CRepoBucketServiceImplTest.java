@@ -38,7 +38,6 @@ import org.plos.crepo.util.HttpResponseUtil;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
-import org.powermock.reflect.Whitebox;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
@@ -66,10 +65,8 @@ public class CRepoBucketServiceImplTest extends BaseServiceTest {
   @Before
   public void setUp() {
     cRepoBucketServiceImpl = new TestContentRepoServiceBuilder()
-        .setGson(gson)
         .setBucketsDao(contentRepoBucketsDao)
         .build();
-    Whitebox.setInternalState(cRepoBucketServiceImpl, "gson", gson);
   }
 
   @Test
@@ -31,7 +31,6 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
-import org.mockito.internal.util.reflection.Whitebox;
 import org.plos.crepo.config.ContentRepoAccessConfig;
 import org.plos.crepo.dao.collections.ContentRepoCollectionDao;
 import org.plos.crepo.exceptions.ContentRepoException;
@@ -93,7 +92,6 @@ public class CRepoCollectionInputServiceImplTest extends BaseServiceTest {
         .setAccessConfig(repoAccessConfig)
         .setCollectionDao(contentRepoCollectionDao)
         .build();
-    Whitebox.setInternalState(cRepoCollectionServiceImpl, "gson", gson);
   }
 
   @Test
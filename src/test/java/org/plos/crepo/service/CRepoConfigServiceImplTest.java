@@ -29,7 +29,6 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
-import org.mockito.internal.util.reflection.Whitebox;
 import org.plos.crepo.dao.config.ContentRepoConfigDao;
 import org.plos.crepo.exceptions.ContentRepoException;
 import org.plos.crepo.exceptions.ErrorType;
@@ -63,10 +62,8 @@ public class CRepoConfigServiceImplTest extends BaseServiceTest {
   @Before
   public void setUp() {
     cRepoConfigServiceImpl = new TestContentRepoServiceBuilder()
-        .setGson(gson)
         .setConfigDao(contentRepoConfigDao)
         .build();
-    Whitebox.setInternalState(cRepoConfigServiceImpl, "gson", gson);
   }
 
   @Test
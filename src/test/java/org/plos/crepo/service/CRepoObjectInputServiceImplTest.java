@@ -31,7 +31,6 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
-import org.mockito.internal.util.reflection.Whitebox;
 import org.plos.crepo.config.ContentRepoAccessConfig;
 import org.plos.crepo.dao.objects.ContentRepoObjectDao;
 import org.plos.crepo.exceptions.ContentRepoException;
@@ -41,6 +40,7 @@ import org.plos.crepo.model.identity.RepoVersion;
 import org.plos.crepo.model.identity.RepoVersionNumber;
 import org.plos.crepo.model.identity.RepoVersionTag;
 import org.plos.crepo.model.input.RepoObjectInput;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
 import org.plos.crepo.model.validator.RepoObjectValidator;
 import org.plos.crepo.util.HttpResponseUtil;
 import org.powermock.api.mockito.PowerMockito;
@@ -49,6 +49,7 @@ import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -58,6 +59,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -96,7 +98,6 @@ public class CRepoObjectInputServiceImplTest extends BaseServiceTest {
         .setAccessConfig(repoAccessConfig)
         .setObjectDao(contentRepoObjectDao)
         .build();
-    Whitebox.setInternalState(cRepoObjectServiceImpl, "gson", gson);
   }
 
   @Test
@@ -458,6 +459,35 @@ public class CRepoObjectInputServiceImplTest extends BaseServiceTest {
     assertNull(objectResponse);
   }
 
+  @Test
+  public void forEachRepoObjectVersionTest() throws IOException {
+    CloseableHttpResponse httpResponse = mockJsonResponse(TEST_METADATA_LIST);
+    when(contentRepoObjectDao.getRepoObjVersionsMeta(BUCKET_NAME, KEY)).thenReturn(httpResponse);
+    Mockito.doNothing().when(httpResponse).close();
+
+    List<RepoObjectMetadata> received = new ArrayList<>();
+    ((ContentRepoServiceImpl) cRepoObjectServiceImpl).forEachRepoObjectVersion(RepoId.create(BUCKET_NAME, KEY), received::add);
+
+    verify(httpResponse, atLeastOnce()).close();
+    assertEquals(TEST_METADATA_LIST, asRawList(received));
+  }
+
+  @Test
+  public void forEachRepoObjectNotArrayTest() throws IOException {
+    CloseableHttpResponse httpResponse = mockJsonResponse(ImmutableMap.of("message", "not a list"));
+    when(contentRepoObjectDao.getObjects(BUCKET_NAME, OFFSET, LIMIT, true)).thenReturn(httpResponse);
+    Mockito.doNothing().when(httpResponse).close();
+
+    try {
+      ((ContentRepoServiceImpl) cRepoObjectServiceImpl).forEachRepoObject(BUCKET_NAME, OFFSET, LIMIT, true, null,
+          metadata -> fail());
+      fail();
+    } catch (ContentRepoException exception) {
+      assertEquals(ErrorType.ServerError, exception.getErrorType());
+    }
+    verify(httpResponse, atLeastOnce()).close();
+  }
+
 
   @Test
   public void deleteCollectionUsingVersionNumbTest() throws IOException {
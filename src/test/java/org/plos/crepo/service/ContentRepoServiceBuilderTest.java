@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.plos.crepo.service;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.plos.crepo.exceptions.ContentRepoException;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.identity.RepoVersionNumber;
+import org.plos.crepo.util.EmbeddedRepoServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.plos.crepo.util.EmbeddedRepoServer.BUCKET_NAME;
+import static org.plos.crepo.util.EmbeddedRepoServer.UUID_VALUE;
+import static org.plos.crepo.util.EmbeddedRepoServer.respond;
+
+public class ContentRepoServiceBuilderTest {
+
+  private static final byte[] CONTENT = "content".getBytes(Charsets.UTF_8);
+  private static final long SERVER_DELAY = 500;
+
+  @Rule
+  public EmbeddedRepoServer server = EmbeddedRepoServer.threaded();
+
+  private String repoServer;
+
+  @Before
+  public void setUp() {
+    server.handle("/objects/meta/" + BUCKET_NAME, exchange -> {
+      pause();
+      respond(exchange, 200, "{\"key\":\"key\",\"uuid\":\"" + UUID_VALUE + "\",\"versionNumber\":0,\"size\":7}");
+    });
+    server.handle("/objects/" + BUCKET_NAME, exchange -> {
+      pause();
+      respond(exchange, 200, CONTENT);
+    });
+    repoServer = server.getUrl();
+  }
+
+  private static void pause() {
+    try {
+      Thread.sleep(SERVER_DELAY);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Test
+  public void testTimeoutsPerOperation() throws IOException {
+    try (PooledContentRepoService service = new ContentRepoServiceBuilder(repoServer)
+        .setMetadataSocketTimeout(SERVER_DELAY / 5, TimeUnit.MILLISECONDS)
+        .setContentSocketTimeout(SERVER_DELAY * 10, TimeUnit.MILLISECONDS)
+        .build()) {
+      try (InputStream stream = service.getRepoObject(RepoVersion.create(BUCKET_NAME, "key", UUID_VALUE))) {
+        assertArrayEquals(CONTENT, ByteStreams.toByteArray(stream));
+      }
+
+      try {
+        service.getRepoObjectMetadata(RepoVersionNumber.create(BUCKET_NAME, "key", 0));
+        fail("Expected exception");
+      } catch (ContentRepoException e) {
+        assertTrue(e.getCause() instanceof SocketTimeoutException);
+      }
+    }
+  }
+
+  @Test
+  public void testConnectionReuse() throws IOException {
+    try (PooledContentRepoService service = new ContentRepoServiceBuilder(repoServer).build()) {
+      for (int i = 0; i < 3; i++) {
+        assertEquals(UUID_VALUE, service.getRepoObjectMetadata(RepoVersionNumber.create(BUCKET_NAME, "key", 0))
+            .getVersion().getUuid());
+        try (InputStream stream = service.getRepoObject(RepoVersionNumber.create(BUCKET_NAME, "key", 0))) {
+          assertArrayEquals(CONTENT, ByteStreams.toByteArray(stream));
+        }
+      }
+      assertEquals(0, service.getPoolStats().getLeased());
+      assertEquals(1, service.getPoolStats().getAvailable());
+    }
+  }
+
+  @Test
+  public void testIdleEviction() throws Exception {
+    try (PooledContentRepoService service = new ContentRepoServiceBuilder(repoServer)
+        .setMaxIdleTime(0, TimeUnit.MILLISECONDS)
+        .setEvictionInterval(50, TimeUnit.MILLISECONDS)
+        .build()) {
+      service.getRepoObjectMetadata(RepoVersionNumber.create(BUCKET_NAME, "key", 0));
+      for (int i = 0; i < 100 && service.getPoolStats().getAvailable() > 0; i++) {
+        Thread.sleep(50);
+      }
+      assertEquals(0, service.getPoolStats().getAvailable());
+    }
+  }
+
+  @Test
+  public void testIsContentRequest() {
+    String contentPath = "/repo/objects/";
+    assertTrue(ContentRepoServiceBuilder.isContentRequest(contentPath,
+        new HttpGet("http://localhost/repo/objects/bucket?key=k&version=0")));
+    assertFalse(ContentRepoServiceBuilder.isContentRequest(contentPath,
+        new HttpGet("http://localhost/repo/objects/meta/bucket?key=k&version=0")));
+    assertFalse(ContentRepoServiceBuilder.isContentRequest(contentPath,
+        new HttpGet("http://localhost/repo/objects/versions/bucket?key=k")));
+    assertFalse(ContentRepoServiceBuilder.isContentRequest(contentPath,
+        new HttpGet("http://localhost/repo/objects?bucketName=bucket&offset=0&limit=10&includeDeleted=false")));
+    assertFalse(ContentRepoServiceBuilder.isContentRequest(contentPath,
+        new HttpDelete("http://localhost/repo/objects/bucket?key=k&version=0")));
+  }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.bulk;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.RateLimiter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.plos.crepo.exceptions.ContentRepoException;
+import org.plos.crepo.exceptions.ErrorType;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.identity.RepoVersionNumber;
+import org.plos.crepo.model.input.RepoObjectInput;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+import org.plos.crepo.service.ContentRepoService;
+import org.plos.crepo.service.InMemoryContentRepoService;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BulkContentRepoServiceTest {
+
+  private static final String BUCKET_NAME = "bucketName";
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testResultsAndFailures() {
+    InMemoryContentRepoService backend = new InMemoryContentRepoService(BUCKET_NAME);
+    List<RepoVersion> versions = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      versions.add(backend.createRepoObject(RepoObjectInput.builder(BUCKET_NAME, "key" + i)
+          .setByteContent(new byte[]{(byte) i}).setContentType("text/plain").build()).getVersion());
+    }
+    RepoVersion missing = RepoVersion.create(BUCKET_NAME, "missing", "31a6f1cd-ef28-49fa-b811-f881ac4811f5");
+    List<RepoVersion> requested = new ArrayList<>(versions);
+    requested.add(5, missing);
+    requested.add(versions.get(0)); // duplicate
+
+    BulkContentRepoService service = new BulkContentRepoService(backend, executor, 4, 10, TimeUnit.SECONDS);
+    BulkResult<RepoVersion, RepoObjectMetadata> result = service.getRepoObjectMetadataForVersions(requested);
+
+    assertEquals(versions, ImmutableList.copyOf(result.getResults().keySet()));
+    for (RepoVersion version : versions) {
+      assertEquals(version, result.getResults().get(version).getVersion());
+    }
+    assertEquals(ImmutableList.of(missing), ImmutableList.copyOf(result.getFailures().keySet()));
+    assertTrue(result.getFailures().get(missing) instanceof InMemoryContentRepoService.InMemoryContentRepoServiceException);
+  }
+
+  @Test
+  public void testConcurrencyIsLimited() {
+    AtomicInteger inProgress = new AtomicInteger();
+    AtomicInteger maximum = new AtomicInteger();
+    ContentRepoService backend = mock(ContentRepoService.class);
+    when(backend.getRepoObjectMetadata(any(RepoVersionNumber.class))).thenAnswer(invocation -> {
+      maximum.accumulateAndGet(inProgress.incrementAndGet(), Math::max);
+      Thread.sleep(20);
+      inProgress.decrementAndGet();
+      return mock(RepoObjectMetadata.class);
+    });
+
+    List<RepoVersionNumber> numbers = new ArrayList<>();
+    for (int i = 0; i < 12; i++) {
+      numbers.add(RepoVersionNumber.create(BUCKET_NAME, "key", i));
+    }
+    BulkContentRepoService service = new BulkContentRepoService(backend, executor, 3, 10, TimeUnit.SECONDS);
+    BulkResult<RepoVersionNumber, RepoObjectMetadata> result = service.getRepoObjectMetadataForVersionNumbers(numbers);
+
+    assertTrue(result.isSuccessful());
+    assertEquals(12, result.getResults().size());
+    assertTrue(maximum.get() <= 3);
+  }
+
+  @Test
+  public void testDeadline() {
+    CountDownLatch never = new CountDownLatch(1);
+    ContentRepoService backend = mock(ContentRepoService.class);
+    RepoVersionNumber slow = RepoVersionNumber.create(BUCKET_NAME, "slow", 0);
+    RepoVersionNumber fast = RepoVersionNumber.create(BUCKET_NAME, "fast", 0);
+    RepoObjectMetadata metadata = mock(RepoObjectMetadata.class);
+    when(backend.getRepoObjectMetadata(slow)).thenAnswer(invocation -> {
+      never.await();
+      return metadata;
+    });
+    when(backend.getRepoObjectMetadata(fast)).thenReturn(metadata);
+
+    BulkContentRepoService service = new BulkContentRepoService(backend, executor, 2, 200, TimeUnit.MILLISECONDS);
+    BulkResult<RepoVersionNumber, RepoObjectMetadata> result =
+        service.getRepoObjectMetadataForVersionNumbers(ImmutableList.of(slow, fast));
+
+    assertEquals(ImmutableList.of(fast), ImmutableList.copyOf(result.getResults().keySet()));
+    RuntimeException failure = result.getFailures().get(slow);
+    assertEquals(ErrorType.RequestTimedOut, ((ContentRepoException) failure).getErrorType());
+  }
+
+  @Test
+  public void testCreateWithBackpressure() {
+    AtomicInteger pulled = new AtomicInteger();
+    AtomicInteger completed = new AtomicInteger();
+    AtomicInteger maximumOutstanding = new AtomicInteger();
+    ContentRepoService backend = mock(ContentRepoService.class);
+    when(backend.createRepoObject(any(RepoObjectInput.class))).thenAnswer(invocation -> {
+      RepoObjectInput input = (RepoObjectInput) invocation.getArguments()[0];
+      Thread.sleep(10);
+      completed.incrementAndGet();
+      if (input.getKey().equals("key3")) {
+        throw new ContentRepoException.ContentRepoExceptionBuilder(ErrorType.ErrorCreatingObject).build();
+      }
+      return mock(RepoObjectMetadata.class);
+    });
+
+    // Produce inputs lazily, tracking how many have been taken but not finished
+    Iterable<RepoObjectInput> inputs = () -> new Iterator<RepoObjectInput>() {
+      private int index = 0;
+
+      @Override
+      public boolean hasNext() {
+        return index < 10;
+      }
+
+      @Override
+      public RepoObjectInput next() {
+        maximumOutstanding.accumulateAndGet(pulled.incrementAndGet() - completed.get(), Math::max);
+        return RepoObjectInput.builder(BUCKET_NAME, "key" + index++)
+            .setByteContent(new byte[]{1}).setContentType("text/plain").build();
+      }
+    };
+
+    BulkContentRepoService service = new BulkContentRepoService(backend, executor, 2, 10, TimeUnit.SECONDS);
+    BulkResult<RepoObjectInput, RepoObjectMetadata> result = service.createRepoObjects(inputs, RateLimiter.create(1000.0));
+
+    assertEquals(9, result.getResults().size());
+    RepoObjectInput failed = Iterables.getOnlyElement(result.getFailures().keySet());
+    assertEquals("key3", failed.getKey());
+    assertEquals(ErrorType.ErrorCreatingObject, ((ContentRepoException) result.getFailures().get(failed)).getErrorType());
+    // One more than the limit: the next input is taken while waiting for a slot
+    assertTrue(maximumOutstanding.get() <= 3);
+  }
+
+  @Test
+  public void testDeleteReport() {
+    InMemoryContentRepoService backend = new InMemoryContentRepoService(BUCKET_NAME);
+    List<RepoVersion> versions = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      versions.add(backend.createRepoObject(RepoObjectInput.builder(BUCKET_NAME, "key" + i)
+          .setByteContent(new byte[]{(byte) i}).setContentType("text/plain").build()).getVersion());
+    }
+    RepoVersion missing = RepoVersion.create(BUCKET_NAME, "missing", "31a6f1cd-ef28-49fa-b811-f881ac4811f5");
+    List<RepoVersion> requested = new ArrayList<>(versions);
+    requested.add(missing);
+
+    BulkContentRepoService service = new BulkContentRepoService(backend, executor, 4, 10, TimeUnit.SECONDS);
+    BulkResult<RepoVersion, Boolean> result = service.deleteRepoObjectsForVersions(requested);
+
+    assertEquals(versions, ImmutableList.copyOf(result.getResults().keySet()));
+    assertTrue(result.getResults().values().stream().allMatch(Boolean::booleanValue));
+    assertEquals(ImmutableList.of(missing), ImmutableList.copyOf(result.getFailures().keySet()));
+    assertTrue(backend.getRepoObjects(BUCKET_NAME, 0, 10, false, null).isEmpty());
+  }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.bulk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.identity.RepoVersionTag;
+import org.plos.crepo.model.input.RepoCollectionInput;
+import org.plos.crepo.model.input.RepoObjectInput;
+import org.plos.crepo.model.metadata.RepoCollectionList;
+import org.plos.crepo.service.InMemoryContentRepoService;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class CollectionMaterializationTest {
+
+  private static final String BUCKET_NAME = "bucketName";
+  private static final RepoVersionTag TAG = RepoVersionTag.create(BUCKET_NAME, "collection", "tag");
+  private static final int MEMBER_COUNT = 12;
+
+  private ExecutorService executor;
+  private BulkContentRepoService service;
+  private List<RepoVersion> members;
+  private Map<RepoVersion, byte[]> contents;
+
+  @Before
+  public void setUp() {
+    InMemoryContentRepoService backend = new InMemoryContentRepoService(BUCKET_NAME);
+    members = new ArrayList<>();
+    contents = new HashMap<>();
+    for (int i = 0; i < MEMBER_COUNT; i++) {
+      byte[] content = new byte[100 + i];
+      content[0] = (byte) i;
+      RepoVersion version = backend.createRepoObject(RepoObjectInput.builder(BUCKET_NAME, "key" + i)
+          .setByteContent(content).setContentType("text/plain").build()).getVersion();
+      members.add(version);
+      contents.put(version, content);
+    }
+    backend.createCollection(RepoCollectionInput.builder(BUCKET_NAME, "collection")
+        .setTag("tag").setObjects(members).build());
+
+    executor = Executors.newFixedThreadPool(4);
+    service = new BulkContentRepoService(backend, executor, 4, 10, TimeUnit.SECONDS);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testCallback() {
+    List<MaterializedObject> received = Collections.synchronizedList(new ArrayList<>());
+    RepoCollectionList collection = service.materializeCollection(TAG, 250, received::add);
+
+    assertEquals(MEMBER_COUNT, collection.getObjects().size());
+    assertEquals(MEMBER_COUNT, received.size());
+    for (MaterializedObject object : received) {
+      assertFalse(object.getFailure().isPresent());
+      assertArrayEquals(contents.get(object.getMetadata().getVersion()), object.getContent());
+    }
+  }
+
+  @Test
+  public void testOrderedStream() {
+    List<RepoVersion> received;
+    try (MaterializedCollection materialized = service.materializeCollection(TAG, 250)) {
+      received = materialized.stream()
+          .peek(object -> assertArrayEquals(contents.get(object.getMetadata().getVersion()), object.getContent()))
+          .map(object -> object.getMetadata().getVersion())
+          .collect(Collectors.toList());
+    }
+    assertEquals(members, received);
+  }
+
+  @Test
+  public void testObjectLargerThanBudget() {
+    try (MaterializedCollection materialized = service.materializeCollection(TAG, 50)) {
+      int count = 0;
+      for (MaterializedObject object : materialized) {
+        assertEquals(members.get(count++), object.getMetadata().getVersion());
+        assertFalse(object.getFailure().isPresent());
+      }
+      assertEquals(MEMBER_COUNT, count);
+    }
+  }
+
+  @Test
+  public void testTakenContentIsNotRetained() throws InterruptedException {
+    List<WeakReference<byte[]>> taken = new ArrayList<>();
+    try (MaterializedCollection materialized = service.materializeCollection(TAG, 250)) {
+      for (MaterializedObject object : materialized) {
+        taken.add(new WeakReference<>(object.getContent()));
+      }
+      assertEquals(MEMBER_COUNT, taken.size());
+
+      // The collection is still open and reachable, but must not be what keeps the content alive
+      for (int i = 0; i < 50 && taken.stream().anyMatch(ref -> ref.get() != null); i++) {
+        System.gc();
+        Thread.sleep(10);
+      }
+      for (WeakReference<byte[]> ref : taken) {
+        assertNull(ref.get());
+      }
+    }
+  }
+
+}
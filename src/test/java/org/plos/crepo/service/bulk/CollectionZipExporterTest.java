@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.bulk;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.identity.RepoVersionTag;
+import org.plos.crepo.model.input.RepoCollectionInput;
+import org.plos.crepo.model.input.RepoObjectInput;
+import org.plos.crepo.service.InMemoryContentRepoService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CollectionZipExporterTest {
+
+  private static final String BUCKET_NAME = "bucketName";
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testExport() throws Exception {
+    InMemoryContentRepoService backend = new InMemoryContentRepoService(BUCKET_NAME);
+    String[] downloadNames = {"article.xml", "figure.png", "figure.png", null, "../escape"};
+    List<RepoVersion> members = new ArrayList<>();
+    List<byte[]> contents = new ArrayList<>();
+    for (int i = 0; i < downloadNames.length; i++) {
+      byte[] content = new byte[1000 * (i + 1)];
+      content[i] = 1;
+      contents.add(content);
+      members.add(backend.createRepoObject(RepoObjectInput.builder(BUCKET_NAME, "key" + i)
+          .setDownloadName(downloadNames[i]).setByteContent(content).setContentType("text/plain").build())
+          .getVersion());
+    }
+    backend.createCollection(RepoCollectionInput.builder(BUCKET_NAME, "collection")
+        .setTag("tag").setObjects(members).build());
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new CollectionZipExporter(backend, executor, 2)
+        .export(RepoVersionTag.create(BUCKET_NAME, "collection", "tag"), output);
+
+    Map<String, byte[]> entries = new LinkedHashMap<>();
+    try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+      ZipEntry entry;
+      while ((entry = zip.getNextEntry()) != null) {
+        entries.put(entry.getName(), ByteStreams.toByteArray(zip));
+      }
+    }
+    assertEquals(ImmutableList.of("article.xml", "figure.png", "figure (2).png", "key3", ".._escape"),
+        ImmutableList.copyOf(entries.keySet()));
+    int i = 0;
+    for (byte[] content : entries.values()) {
+      assertArrayEquals(contents.get(i++), content);
+    }
+  }
+
+}
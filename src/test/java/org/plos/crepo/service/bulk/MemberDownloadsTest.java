@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.bulk;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.plos.crepo.exceptions.ContentRepoException;
+import org.plos.crepo.exceptions.ErrorType;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.input.RepoObjectInput;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+import org.plos.crepo.service.ContentRepoService;
+import org.plos.crepo.service.InMemoryContentRepoService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MemberDownloadsTest {
+
+  private static final String BUCKET_NAME = "bucketName";
+  private static final int MEMBER_COUNT = 4;
+
+  private List<RepoObjectMetadata> members;
+  private ContentRepoService stalled;
+  private CountDownLatch unstall;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    InMemoryContentRepoService backend = new InMemoryContentRepoService(BUCKET_NAME);
+    members = new ArrayList<>();
+    for (int i = 0; i < MEMBER_COUNT; i++) {
+      members.add(backend.createRepoObject(RepoObjectInput.builder(BUCKET_NAME, "key" + i)
+          .setByteContent(new byte[100]).setContentType("text/plain").build()));
+    }
+
+    // Downloads that ignore cancellation, so that every timed-out member is failed by the waiting thread
+    unstall = new CountDownLatch(1);
+    stalled = mock(ContentRepoService.class);
+    when(stalled.getRepoObject(any(RepoVersion.class))).thenAnswer(invocation -> {
+      Uninterruptibles.awaitUninterruptibly(unstall);
+      throw new IllegalStateException("stalled");
+    });
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    unstall.countDown();
+    executor.shutdownNow();
+  }
+
+  private MemberDownloads create(ContentRepoService service, MemberDownloads.Callback callback) {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+    return new MemberDownloads(service, executor, members, 1, 1000, deadline, callback);
+  }
+
+  private static void assertTimedOut(MaterializedObject object) {
+    assertTrue(object.getFailure().isPresent());
+    assertEquals(ErrorType.RequestTimedOut, ((ContentRepoException) object.getFailure().get()).getErrorType());
+  }
+
+  @Test
+  public void testCallbackTimeoutReleasesOnlyReservedMembers() throws InterruptedException {
+    List<MaterializedObject> received = Collections.synchronizedList(new ArrayList<>());
+    MemberDownloads downloads = create(stalled, received::add);
+    downloads.pump();
+    downloads.awaitAll();
+
+    assertEquals(MEMBER_COUNT, received.size());
+    received.forEach(MemberDownloadsTest::assertTimedOut);
+    assertEquals(0L, downloads.getBufferedBytes());
+  }
+
+  @Test
+  public void testIteratorTimeoutReleasesOnlyReservedMembers() {
+    MemberDownloads downloads = create(stalled, null);
+    downloads.pump();
+    for (int i = 0; i < MEMBER_COUNT; i++) {
+      assertTimedOut(downloads.next());
+    }
+    assertFalse(downloads.hasNext());
+    assertEquals(0L, downloads.getBufferedBytes());
+  }
+
+  @Test
+  public void testRejectedDownloadsAreDeliveredOutsideTheMonitor() throws InterruptedException {
+    AtomicReference<MemberDownloads> downloads = new AtomicReference<>();
+    List<Boolean> heldLock = Collections.synchronizedList(new ArrayList<>());
+    List<MaterializedObject> received = Collections.synchronizedList(new ArrayList<>());
+    downloads.set(new MemberDownloads(stalled, command -> {
+      throw new RejectedExecutionException();
+    }, members, 1, 1000, System.nanoTime() + TimeUnit.SECONDS.toNanos(10), object -> {
+      heldLock.add(Thread.holdsLock(downloads.get()));
+      received.add(object);
+    }));
+    downloads.get().pump();
+    downloads.get().awaitAll();
+
+    assertEquals(MEMBER_COUNT, received.size());
+    for (MaterializedObject object : received) {
+      assertTrue(object.getFailure().get() instanceof RejectedExecutionException);
+    }
+    assertFalse(heldLock.contains(true));
+    assertEquals(0L, downloads.get().getBufferedBytes());
+  }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.cache;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.plos.crepo.exceptions.ContentRepoException;
+import org.plos.crepo.exceptions.ErrorType;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.input.RepoObjectInput;
+import org.plos.crepo.service.InMemoryContentRepoService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class BlobCachingServiceTest {
+
+  private static final String BUCKET_NAME = "bucketName";
+  private static final byte[] CONTENT = "test content".getBytes();
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private InMemoryContentRepoService backend;
+  private Path directory;
+
+  @Before
+  public void setUp() {
+    backend = spy(new InMemoryContentRepoService(BUCKET_NAME));
+    directory = folder.getRoot().toPath().resolve("blobs");
+  }
+
+  private RepoVersion create(String key, byte[] content) {
+    return backend.createRepoObject(RepoObjectInput.builder(BUCKET_NAME, key)
+        .setByteContent(content).setContentType("text/plain").build()).getVersion();
+  }
+
+  private static byte[] read(InputStream stream) throws IOException {
+    try (InputStream s = stream) {
+      return ByteStreams.toByteArray(s);
+    }
+  }
+
+  @Test
+  public void testIdenticalContentIsStoredOnce() throws IOException {
+    RepoVersion first = create("first", CONTENT);
+    RepoVersion second = create("second", CONTENT);
+    DiskBlobCache blobCache = new DiskBlobCache(directory, 1024);
+    BlobCachingService service = new BlobCachingService(backend, blobCache);
+
+    assertArrayEquals(CONTENT, read(service.getRepoObject(first)));
+    assertArrayEquals(CONTENT, read(service.getRepoObject(second)));
+    assertArrayEquals(CONTENT, read(service.getRepoObject(first)));
+
+    verify(backend, times(1)).getRepoObject(any(RepoVersion.class));
+    assertEquals(1, blobCache.getFileCount());
+    assertEquals(CONTENT.length, blobCache.getTotalBytes());
+  }
+
+  @Test
+  public void testFilesAreAdoptedOnRestart() throws IOException {
+    RepoVersion version = create("key", CONTENT);
+    read(new BlobCachingService(backend, new DiskBlobCache(directory, 1024)).getRepoObject(version));
+
+    DiskBlobCache reopened = new DiskBlobCache(directory, 1024);
+    assertArrayEquals(CONTENT, read(new BlobCachingService(backend, reopened).getRepoObject(version)));
+    assertEquals(1, reopened.getFileCount());
+    verify(backend, times(1)).getRepoObject(version);
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+    RepoVersion first = create("first", new byte[600]);
+    RepoVersion second = create("second", new byte[500]);
+    DiskBlobCache blobCache = new DiskBlobCache(directory, 1024);
+    BlobCachingService service = new BlobCachingService(backend, blobCache);
+
+    read(service.getRepoObject(first));
+    assertEquals(500, read(service.getRepoObject(second)).length);
+
+    assertEquals(1, blobCache.getFileCount());
+    assertEquals(500, blobCache.getTotalBytes());
+  }
+
+  @Test
+  public void testChecksumMismatch() throws IOException {
+    RepoVersion version = create("key", CONTENT);
+    DiskBlobCache blobCache = new DiskBlobCache(directory, 1024, Hashing.md5());
+    try {
+      new BlobCachingService(backend, blobCache).getRepoObject(version);
+      fail("Expected exception");
+    } catch (ContentRepoException e) {
+      assertEquals(ErrorType.ErrorVerifyingObject, e.getErrorType());
+    }
+    assertEquals(0, blobCache.getFileCount());
+  }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.cache;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Before;
+import org.junit.Test;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.input.RepoObjectInput;
+import org.plos.crepo.service.InMemoryContentRepoService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class HotContentCachingServiceTest {
+
+  private static final String BUCKET_NAME = "bucketName";
+
+  private InMemoryContentRepoService backend;
+
+  @Before
+  public void setUp() {
+    backend = spy(new InMemoryContentRepoService(BUCKET_NAME));
+  }
+
+  private RepoVersion create(String key, byte[] content) {
+    return backend.createRepoObject(RepoObjectInput.builder(BUCKET_NAME, key)
+        .setByteContent(content).setContentType("text/plain").build()).getVersion();
+  }
+
+  private static byte[] read(InputStream stream) throws IOException {
+    try (InputStream s = stream) {
+      return ByteStreams.toByteArray(s);
+    }
+  }
+
+  @Test
+  public void testAdmittedOnSecondRead() throws IOException {
+    byte[] bytes = {1, 2, 3};
+    RepoVersion version = create("key", bytes);
+    HotContentCachingService service = new HotContentCachingService(backend, 1024, 100);
+
+    for (int i = 0; i < 4; i++) {
+      assertArrayEquals(bytes, read(service.getRepoObject(version)));
+    }
+
+    verify(backend, times(2)).getRepoObject(version);
+    assertEquals(2L, service.getStats().hitCount());
+  }
+
+  @Test
+  public void testLargeObjectsBypass() throws IOException {
+    byte[] bytes = new byte[101];
+    bytes[100] = 7;
+    RepoVersion version = create("key", bytes);
+    HotContentCachingService service = new HotContentCachingService(backend, 1024, 100);
+
+    for (int i = 0; i < 3; i++) {
+      assertArrayEquals(bytes, read(service.getRepoObject(version)));
+    }
+
+    verify(backend, times(3)).getRepoObject(version);
+    assertEquals(0L, service.getStats().hitCount());
+  }
+
+  @Test
+  public void testScanDoesNotFlushHotObjects() throws IOException {
+    RepoVersion hot = create("hot", new byte[50]);
+    List<RepoVersion> scanned = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      scanned.add(create("scanned" + i, new byte[50]));
+    }
+    HotContentCachingService service = new HotContentCachingService(backend, 1000, 100);
+
+    read(service.getRepoObject(hot));
+    read(service.getRepoObject(hot));
+    for (RepoVersion version : scanned) {
+      read(service.getRepoObject(version));
+    }
+    read(service.getRepoObject(hot));
+
+    verify(backend, times(2)).getRepoObject(hot);
+    assertEquals(0L, service.getStats().evictionCount());
+  }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.cache;
+
+import com.google.common.base.Ticker;
+import org.junit.Before;
+import org.junit.Test;
+import org.plos.crepo.model.identity.RepoId;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.identity.RepoVersionNumber;
+import org.plos.crepo.model.identity.RepoVersionTag;
+import org.plos.crepo.model.input.RepoCollectionInput;
+import org.plos.crepo.model.input.RepoObjectInput;
+import org.plos.crepo.model.metadata.RepoCollectionList;
+import org.plos.crepo.model.metadata.RepoCollectionMetadata;
+import org.plos.crepo.service.InMemoryContentRepoService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class LatestPointerCachingServiceTest {
+
+  private static final String BUCKET_NAME = "bucketName";
+  private static final RepoId ID = RepoId.create(BUCKET_NAME, "collection");
+
+  private static class ManualTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    private void advance(long duration, TimeUnit unit) {
+      nanos += unit.toNanos(duration);
+    }
+  }
+
+  private final ManualTicker ticker = new ManualTicker();
+  private final List<Runnable> refreshes = new ArrayList<>();
+
+  private InMemoryContentRepoService backend;
+  private LatestPointerCachingService service;
+  private List<RepoVersion> members;
+
+  private RepoCollectionInput input(String tag) {
+    return RepoCollectionInput.builder(BUCKET_NAME, ID.getKey()).setObjects(members).setTag(tag).build();
+  }
+
+  @Before
+  public void setUp() {
+    backend = spy(new InMemoryContentRepoService(BUCKET_NAME));
+    members = Collections.singletonList(backend.createRepoObject(RepoObjectInput.builder(BUCKET_NAME, "member")
+        .setByteContent(new byte[]{1}).setContentType("text/plain").build()).getVersion());
+    backend.createCollection(input("first"));
+    service = new LatestPointerCachingService(backend, 10, TimeUnit.SECONDS, refreshes::add, 100, ticker);
+  }
+
+  @Test
+  public void testReadsAreServedFromCache() {
+    RepoCollectionMetadata first = service.getLatestCollection(ID);
+    ticker.advance(4, TimeUnit.SECONDS);
+    RepoCollectionMetadata second = service.getLatestCollection(ID);
+
+    assertEquals(first, second);
+    assertTrue(refreshes.isEmpty());
+    verify(backend, times(1)).getLatestCollection(ID);
+  }
+
+  @Test
+  public void testRefreshAhead() {
+    service.getLatestCollection(ID);
+    RepoCollectionList newer = backend.versionCollection(input(null));
+
+    ticker.advance(6, TimeUnit.SECONDS);
+    RepoCollectionMetadata stale = service.getLatestCollection(ID);
+    service.getLatestCollection(ID);
+    assertEquals(0, stale.getVersionNumber().getNumber());
+    assertEquals(1, refreshes.size());
+
+    refreshes.get(0).run();
+    assertEquals(newer.getVersion(), service.getLatestCollection(ID).getVersion());
+    verify(backend, times(2)).getLatestCollection(ID);
+  }
+
+  @Test
+  public void testReadYourWrites() {
+    RepoVersionTag tag = RepoVersionTag.create(ID, "first");
+    service.getLatestCollection(ID);
+    service.getCollection(tag);
+
+    RepoCollectionList written = service.versionCollection(input("second"));
+
+    assertEquals(written, service.getLatestCollection(ID));
+    verify(backend, times(1)).getLatestCollection(ID);
+    service.getCollection(tag);
+    verify(backend, times(2)).getCollection(tag);
+  }
+
+  @Test
+  public void testRefreshDoesNotUndoWrite() {
+    service.getLatestCollection(ID);
+    ticker.advance(6, TimeUnit.SECONDS);
+    service.getLatestCollection(ID);
+    assertEquals(1, refreshes.size());
+
+    RepoCollectionList written = service.versionCollection(input(null));
+    service.deleteCollection(written.getVersion());
+    refreshes.get(0).run();
+
+    assertEquals(0, service.getLatestCollection(ID).getVersionNumber().getNumber());
+    verify(backend, times(3)).getLatestCollection(ID);
+  }
+
+  @Test
+  public void testReloadAfterInvalidationIsSingleFlight() throws InterruptedException {
+    service.versionCollection(input(null));
+    service.deleteCollection(RepoVersionNumber.create(ID, 1));
+
+    CountDownLatch release = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      release.await();
+      return invocation.callRealMethod();
+    }).when(backend).getLatestCollection(ID);
+
+    List<Thread> readers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Thread reader = new Thread(() -> service.getLatestCollection(ID));
+      reader.start();
+      readers.add(reader);
+    }
+    Thread.sleep(100);
+    release.countDown();
+    for (Thread reader : readers) {
+      reader.join();
+    }
+
+    assertEquals(0, service.getLatestCollection(ID).getVersionNumber().getNumber());
+    verify(backend, times(1)).getLatestCollection(ID);
+  }
+
+}
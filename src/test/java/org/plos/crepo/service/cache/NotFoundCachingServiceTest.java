@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.plos.crepo.exceptions.NotFoundException;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.identity.RepoVersionTag;
+import org.plos.crepo.model.input.RepoObjectInput;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+import org.plos.crepo.service.ContentRepoService;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NotFoundCachingServiceTest {
+
+  private static final String BUCKET_NAME = "bucketName";
+  private static final RepoVersionTag TAG = RepoVersionTag.create(BUCKET_NAME, "key", "tag");
+
+  private ContentRepoService backend;
+  private NotFoundCachingService service;
+
+  @Before
+  public void setUp() {
+    backend = mock(ContentRepoService.class);
+    when(backend.getRepoObjectMetadata(TAG)).thenThrow(new NotFoundException("not found"));
+    service = new NotFoundCachingService(backend, 1, TimeUnit.MINUTES);
+  }
+
+  private void assertNotFound() {
+    try {
+      service.getRepoObjectMetadata(TAG);
+      fail("Expected exception");
+    } catch (NotFoundException e) {
+      assertEquals("not found", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testMissIsRemembered() {
+    assertNotFound();
+    assertNotFound();
+    assertNotFound();
+
+    verify(backend, times(1)).getRepoObjectMetadata(TAG);
+    assertEquals(2L, service.getObjectStats().hitCount());
+  }
+
+  @Test
+  public void testCreateForgetsMiss() {
+    RepoObjectInput input = RepoObjectInput.builder(BUCKET_NAME, "key").build();
+    RepoObjectMetadata created = mock(RepoObjectMetadata.class);
+    when(created.getVersion()).thenReturn(RepoVersion.create(BUCKET_NAME, "key",
+        "31a6f1cd-ef28-49fa-b811-f881ac4811f5"));
+    when(backend.createRepoObject(input)).thenReturn(created);
+    assertNotFound();
+
+    assertSame(created, service.createRepoObject(input));
+    assertNotFound();
+
+    verify(backend, times(2)).getRepoObjectMetadata(TAG);
+  }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.cache;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.input.RepoCollectionInput;
+import org.plos.crepo.model.input.RepoObjectInput;
+import org.plos.crepo.model.metadata.RepoCollectionList;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+import org.plos.crepo.service.ContentRepoService;
+import org.plos.crepo.service.InMemoryContentRepoService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class VersionMetadataCachingServiceTest {
+
+  private static final String BUCKET_NAME = "bucketName";
+
+  private InMemoryContentRepoService backend;
+  private RepoObjectMetadata object;
+
+  @Before
+  public void setUp() {
+    InMemoryContentRepoService inMemory = new InMemoryContentRepoService(BUCKET_NAME);
+    object = inMemory.createRepoObject(RepoObjectInput.builder(BUCKET_NAME, "key")
+        .setByteContent(new byte[]{1, 2, 3}).setContentType("text/plain").build());
+    backend = spy(inMemory);
+  }
+
+  @Test
+  public void testObjectMetadataIsReadOnce() {
+    VersionMetadataCachingService service = new VersionMetadataCachingService(backend);
+    RepoVersion version = object.getVersion();
+
+    RepoObjectMetadata first = service.getRepoObjectMetadata(version);
+    RepoObjectMetadata second = service.getRepoObjectMetadata(version);
+
+    assertEquals(object, first);
+    assertSame(first, second);
+    verify(backend, times(1)).getRepoObjectMetadata(version);
+    assertEquals(1L, service.getObjectMetadataStats().hitCount());
+    assertEquals(1L, service.getObjectMetadataStats().missCount());
+  }
+
+  @Test
+  public void testFailuresAreNotCached() {
+    VersionMetadataCachingService service = new VersionMetadataCachingService(backend);
+    RepoVersion missing = RepoVersion.create(BUCKET_NAME, "missing", "31a6f1cd-ef28-49fa-b811-f881ac4811f5");
+
+    for (int i = 0; i < 2; i++) {
+      try {
+        service.getRepoObjectMetadata(missing);
+        fail("Expected exception");
+      } catch (InMemoryContentRepoService.InMemoryContentRepoServiceException expected) {
+        // the backend's own exception type should come through unwrapped
+      }
+    }
+    verify(backend, times(2)).getRepoObjectMetadata(missing);
+  }
+
+  @Test
+  public void testDeleteInvalidates() {
+    VersionMetadataCachingService service = new VersionMetadataCachingService(backend);
+    RepoVersion version = object.getVersion();
+
+    service.getRepoObjectMetadata(version);
+    service.deleteRepoObject(version);
+    service.getRepoObjectMetadata(version);
+
+    verify(backend, times(2)).getRepoObjectMetadata(version);
+  }
+
+  @Test
+  public void testCollectionsAreWeighedByMembers() {
+    RepoCollectionList small = backend.createCollection(
+        RepoCollectionInput.create(BUCKET_NAME, "small", ImmutableList.of(object.getVersion())));
+    RepoCollectionList other = backend.createCollection(
+        RepoCollectionInput.create(BUCKET_NAME, "other", ImmutableList.of(object.getVersion())));
+    VersionMetadataCachingService service = new VersionMetadataCachingService(backend, 10, 3);
+
+    service.getCollection(small.getVersion());
+    service.getCollection(other.getVersion());
+    service.getCollection(small.getVersion());
+
+    assertEquals(2L, service.getCollectionStats().evictionCount());
+    verify(backend, times(2)).getCollection(small.getVersion());
+  }
+
+  @Test
+  public void testWeighingDoesNotBuildMembers() {
+    RepoCollectionList collection = spy(backend.createCollection(
+        RepoCollectionInput.create(BUCKET_NAME, "collection", ImmutableList.of(object.getVersion()))));
+    ContentRepoService delegate = mock(ContentRepoService.class);
+    when(delegate.getCollection(collection.getVersion())).thenReturn(collection);
+    VersionMetadataCachingService service = new VersionMetadataCachingService(delegate);
+
+    assertSame(collection, service.getCollection(collection.getVersion()));
+    verify(collection).getObjectCount();
+    verify(collection, never()).getObjects();
+    verify(collection, never()).getObject(anyInt());
+  }
+
+  @Test
+  public void testObjectsAreWeighedByUserMetadata() {
+    RepoObjectMetadata large = backend.createRepoObject(RepoObjectInput.builder(BUCKET_NAME, "large")
+        .setByteContent(new byte[]{1}).setContentType("text/plain")
+        .setUserMetadata("\"" + Strings.repeat("x", 8 * 1024) + "\"").build());
+    VersionMetadataCachingService service = new VersionMetadataCachingService(backend, 10, 10);
+
+    service.getRepoObjectMetadata(object.getVersion());
+    service.getRepoObjectMetadata(large.getVersion());
+    assertEquals(0L, service.getObjectMetadataStats().evictionCount());
+
+    RepoObjectMetadata another = backend.createRepoObject(RepoObjectInput.builder(BUCKET_NAME, "another")
+        .setByteContent(new byte[]{1}).setContentType("text/plain").build());
+    service.getRepoObjectMetadata(another.getVersion());
+    assertEquals(1L, service.getObjectMetadataStats().evictionCount());
+  }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.coalesce;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.plos.crepo.exceptions.NotFoundException;
+import org.plos.crepo.model.identity.RepoVersionNumber;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+import org.plos.crepo.service.ContentRepoService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CoalescingContentRepoServiceTest {
+
+  private static final int CALLERS = 8;
+  private static final RepoVersionNumber NUMBER = RepoVersionNumber.create("bucketName", "key", 0);
+
+  private ContentRepoService backend;
+  private CoalescingContentRepoService service;
+  private ExecutorService executor;
+  private CountDownLatch release;
+
+  @Before
+  public void setUp() {
+    backend = mock(ContentRepoService.class);
+    service = new CoalescingContentRepoService(backend);
+    executor = Executors.newFixedThreadPool(CALLERS);
+    release = new CountDownLatch(1);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Start every caller, wait until all but the first are waiting on its call, then let the backend answer.
+   */
+  private List<Future<RepoObjectMetadata>> callConcurrently() throws InterruptedException {
+    List<Future<RepoObjectMetadata>> results = new ArrayList<>();
+    for (int i = 0; i < CALLERS; i++) {
+      results.add(executor.submit(() -> service.getRepoObjectMetadata(NUMBER)));
+    }
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!allWaiting() && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    release.countDown();
+    return results;
+  }
+
+  private boolean allWaiting() {
+    int waiting = 0;
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getState() == Thread.State.WAITING || thread.getState() == Thread.State.TIMED_WAITING) {
+        for (StackTraceElement frame : thread.getStackTrace()) {
+          if (frame.getClassName().equals(SingleFlight.class.getName())) {
+            waiting++;
+            break;
+          }
+        }
+      }
+    }
+    return waiting == CALLERS;
+  }
+
+  @Test
+  public void testConcurrentCallsShareResult() throws Exception {
+    RepoObjectMetadata metadata = mock(RepoObjectMetadata.class);
+    when(backend.getRepoObjectMetadata(NUMBER)).thenAnswer(invocation -> {
+      release.await();
+      return metadata;
+    });
+
+    for (Future<RepoObjectMetadata> result : callConcurrently()) {
+      assertSame(metadata, result.get(10, TimeUnit.SECONDS));
+    }
+    verify(backend, times(1)).getRepoObjectMetadata(NUMBER);
+
+    // Nothing is retained once the call completes
+    service.getRepoObjectMetadata(NUMBER);
+    verify(backend, times(2)).getRepoObjectMetadata(NUMBER);
+  }
+
+  @Test
+  public void testConcurrentCallsShareException() throws Exception {
+    NotFoundException notFound = new NotFoundException("not found");
+    when(backend.getRepoObjectMetadata(NUMBER)).thenAnswer(invocation -> {
+      release.await();
+      throw notFound;
+    });
+
+    for (Future<RepoObjectMetadata> result : callConcurrently()) {
+      try {
+        result.get(10, TimeUnit.SECONDS);
+        fail("Expected exception");
+      } catch (ExecutionException e) {
+        assertSame(notFound, e.getCause());
+      }
+    }
+    verify(backend, times(1)).getRepoObjectMetadata(NUMBER);
+  }
+
+  @Test
+  public void testListsAreCopied() {
+    List<RepoObjectMetadata> versions = new ArrayList<>();
+    when(backend.getRepoObjectVersions(NUMBER.getId())).thenReturn(versions);
+
+    List<RepoObjectMetadata> result = service.getRepoObjectVersions(NUMBER.getId());
+    result.add(mock(RepoObjectMetadata.class));
+    assertTrue(versions.isEmpty());
+    assertEquals(1, result.size());
+  }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.coalesce;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.plos.crepo.exceptions.NotFoundException;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.service.ContentRepoService;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SharedDownloadServiceTest {
+
+  private static final RepoVersion VERSION = RepoVersion.create("bucketName", "key", UUID.randomUUID());
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private ContentRepoService backend;
+  private byte[] content;
+
+  @Before
+  public void setUp() {
+    backend = mock(ContentRepoService.class);
+    content = new byte[300 * 1024];
+    new Random(0).nextBytes(content);
+  }
+
+  private void assertSpoolsDeleted() {
+    assertEquals(0, folder.getRoot().list().length);
+  }
+
+  @Test
+  public void testConcurrentReadersShareDownload() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    InputStream gated = new FilterInputStream(new ByteArrayInputStream(content)) {
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        return super.read(b, off, len);
+      }
+    };
+    when(backend.getRepoObject(VERSION)).thenReturn(gated);
+
+    ExecutorService executor = Executors.newCachedThreadPool();
+    try {
+      SharedDownloadService service = new SharedDownloadService(backend, folder.getRoot().toPath(), executor);
+      InputStream first = service.getRepoObject(VERSION);
+      InputStream second = service.getRepoObject(VERSION);
+      verify(backend, times(1)).getRepoObject(VERSION);
+
+      Future<byte[]> firstRead = executor.submit(() -> ByteStreams.toByteArray(first));
+      Future<byte[]> secondRead = executor.submit(() -> ByteStreams.toByteArray(second));
+      release.countDown();
+      assertArrayEquals(content, firstRead.get(10, TimeUnit.SECONDS));
+      assertArrayEquals(content, secondRead.get(10, TimeUnit.SECONDS));
+
+      first.close();
+      second.close();
+      assertEquals(0, service.getActiveDownloadCount());
+      assertSpoolsDeleted();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testFinishedDownloadIsReleased() throws Exception {
+    when(backend.getRepoObject(VERSION))
+        .thenReturn(new ByteArrayInputStream(content), new ByteArrayInputStream(content));
+    SharedDownloadService service = new SharedDownloadService(backend, folder.getRoot().toPath(), Runnable::run);
+
+    try (InputStream first = service.getRepoObject(VERSION)) {
+      // Joins the completed download while the first stream is still open
+      try (InputStream second = service.getRepoObject(VERSION)) {
+        assertArrayEquals(content, ByteStreams.toByteArray(second));
+      }
+      assertArrayEquals(content, ByteStreams.toByteArray(first));
+    }
+    verify(backend, times(1)).getRepoObject(VERSION);
+    assertSpoolsDeleted();
+
+    try (InputStream third = service.getRepoObject(VERSION)) {
+      assertArrayEquals(content, ByteStreams.toByteArray(third));
+    }
+    verify(backend, times(2)).getRepoObject(VERSION);
+    assertSpoolsDeleted();
+  }
+
+  @Test
+  public void testOpenFailurePropagates() {
+    NotFoundException notFound = new NotFoundException("not found");
+    when(backend.getRepoObject(VERSION)).thenThrow(notFound);
+    SharedDownloadService service = new SharedDownloadService(backend, folder.getRoot().toPath(), Runnable::run);
+
+    for (int i = 0; i < 2; i++) {
+      try {
+        service.getRepoObject(VERSION);
+        fail("Expected exception");
+      } catch (NotFoundException e) {
+        assertSame(notFound, e);
+      }
+    }
+    verify(backend, times(2)).getRepoObject(VERSION);
+    assertEquals(0, service.getActiveDownloadCount());
+    assertSpoolsDeleted();
+  }
+
+}
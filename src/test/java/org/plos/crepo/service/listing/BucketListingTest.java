@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.listing;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.plos.crepo.model.input.RepoCollectionInput;
+import org.plos.crepo.model.input.RepoObjectInput;
+import org.plos.crepo.model.metadata.RepoCollectionMetadata;
+import org.plos.crepo.service.InMemoryContentRepoService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BucketListingTest {
+
+  private static final String BUCKET_NAME = "bucketName";
+  private static final Executor DIRECT = Runnable::run;
+
+  @Test
+  public void testStreamRepoObjects() {
+    InMemoryContentRepoService backend = new InMemoryContentRepoService(BUCKET_NAME);
+    List<String> keys = new ArrayList<>();
+    for (int i = 0; i < 25; i++) {
+      String key = String.format("key%02d", i);
+      keys.add(key);
+      backend.createRepoObject(RepoObjectInput.builder(BUCKET_NAME, key)
+          .setByteContent(new byte[]{(byte) i}).setContentType("text/plain").build());
+    }
+
+    BucketListing listing = new BucketListing(backend, DIRECT, 10);
+    List<String> listed = listing.streamRepoObjects(BUCKET_NAME, false, null)
+        .map(metadata -> metadata.getVersion().getId().getKey())
+        .collect(Collectors.toList());
+    Collections.sort(listed);
+    assertEquals(keys, listed);
+
+    assertEquals(0, listing.streamCollections(BUCKET_NAME, false, null).count());
+  }
+
+  @Test
+  public void testIterateCollections() {
+    InMemoryContentRepoService backend = new InMemoryContentRepoService(BUCKET_NAME);
+    for (int i = 0; i < 6; i++) {
+      backend.createCollection(RepoCollectionInput.builder(BUCKET_NAME, "collection" + i)
+          .setTag(i % 2 == 0 ? "even" : "odd").setObjects(ImmutableList.of()).build());
+    }
+
+    try (PagedIterator<RepoCollectionMetadata> iterator = new BucketListing(backend, DIRECT, 2)
+        .iterateCollections(BUCKET_NAME, false, "even")) {
+      int count = 0;
+      while (iterator.hasNext()) {
+        assertEquals("even", iterator.next().getTag().get().getTag());
+        count++;
+      }
+      assertEquals(3, count);
+    }
+  }
+
+  @Test
+  public void testPrefetchesNextPage() {
+    List<Integer> requestedOffsets = new CopyOnWriteArrayList<>();
+    PageFetcher<Integer> fetcher = (offset, limit) -> {
+      requestedOffsets.add(offset);
+      return IntStream.range(offset, Math.min(offset + limit, 25)).boxed().collect(Collectors.toList());
+    };
+
+    PagedIterator<Integer> iterator = new PagedIterator<>(fetcher, DIRECT, 10);
+    assertEquals(ImmutableList.of(0), requestedOffsets);
+    assertEquals(0, iterator.next().intValue());
+    assertEquals(ImmutableList.of(0, 10), requestedOffsets);
+
+    List<Integer> rest = new ArrayList<>();
+    iterator.forEachRemaining(rest::add);
+    assertEquals(24, rest.size());
+    assertEquals(24, rest.get(23).intValue());
+    assertEquals(ImmutableList.of(0, 10, 20), requestedOffsets);
+    assertFalse(iterator.hasNext());
+
+    PagedIterator<Integer> abandoned = new PagedIterator<>(fetcher, DIRECT, 10);
+    assertTrue(abandoned.hasNext());
+    abandoned.close();
+    assertFalse(abandoned.hasNext());
+  }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.service.listing;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.plos.crepo.model.input.RepoObjectInput;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+import org.plos.crepo.service.ForwardingContentRepoService;
+import org.plos.crepo.service.InMemoryContentRepoService;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParallelBucketScannerTest {
+
+  private static final String BUCKET_NAME = "bucketName";
+  private static final int OBJECT_COUNT = 95;
+
+  private ExecutorService executor;
+  private InMemoryContentRepoService backend;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+    backend = new InMemoryContentRepoService(BUCKET_NAME);
+    for (int i = 0; i < OBJECT_COUNT; i++) {
+      backend.createRepoObject(RepoObjectInput.builder(BUCKET_NAME, "key" + i)
+          .setByteContent(new byte[]{(byte) i}).setContentType("text/plain").build());
+    }
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Records how many page fetches run at once.
+   */
+  private static class CountingService extends ForwardingContentRepoService {
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final int failingOffset;
+
+    private CountingService(InMemoryContentRepoService delegate, int failingOffset) {
+      super(delegate);
+      this.failingOffset = failingOffset;
+    }
+
+    @Override
+    public List<RepoObjectMetadata> getRepoObjects(String bucketName, int offset, int limit, boolean includeDeleted, String tag) {
+      requests.incrementAndGet();
+      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      try {
+        if (offset == failingOffset) throw new IllegalStateException("page " + offset);
+        Thread.sleep(5);
+        return super.getRepoObjects(bucketName, offset, limit, includeDeleted, tag);
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      } finally {
+        running.decrementAndGet();
+      }
+    }
+  }
+
+  @Test
+  public void testScanRepoObjects() {
+    CountingService service = new CountingService(backend, -1);
+    ParallelBucketScanner scanner = new ParallelBucketScanner(service, executor, 3, 10);
+
+    Set<String> keys = ConcurrentHashMap.newKeySet();
+    AtomicInteger count = new AtomicInteger();
+    scanner.scanRepoObjects(BUCKET_NAME, false, null, metadata -> {
+      keys.add(metadata.getVersion().getId().getKey());
+      count.incrementAndGet();
+    });
+    assertEquals(OBJECT_COUNT, count.get());
+    assertEquals(OBJECT_COUNT, keys.size());
+    assertTrue(service.maxRunning.get() <= 3);
+    // Ten pages hold the bucket; the short tenth page stops the scan within the concurrency window
+    assertTrue(service.requests.get() <= 10 + 2);
+  }
+
+  @Test
+  public void testStreamRepoObjects() {
+    ParallelBucketScanner scanner = new ParallelBucketScanner(backend, executor, 4, 7);
+    Set<String> keys = scanner.streamRepoObjects(BUCKET_NAME, false, null).parallel()
+        .map(metadata -> metadata.getVersion().getId().getKey())
+        .collect(Collectors.toSet());
+    assertEquals(OBJECT_COUNT, keys.size());
+
+    // An exact multiple of the page size ends on an empty page
+    assertEquals(OBJECT_COUNT, new ParallelBucketScanner(backend, executor, 2, 19)
+        .streamRepoObjects(BUCKET_NAME, false, null).count());
+    assertEquals(0, scanner.streamCollections(BUCKET_NAME, false, null).count());
+  }
+
+  @Test
+  public void testFailureStopsScan() {
+    CountingService service = new CountingService(backend, 50);
+    try {
+      new ParallelBucketScanner(service, executor, 2, 10).scanRepoObjects(BUCKET_NAME, false, null, metadata -> {
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("page 50", e.getMessage());
+    }
+    // Six pages through the failing one, plus at most one concurrency window started before the failure is seen
+    assertTrue(service.requests.get() <= 6 + 2);
+
+    try {
+      new ParallelBucketScanner(service, executor, 2, 10).streamRepoObjects(BUCKET_NAME, false, null).count();
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("page 50", e.getMessage());
+    }
+  }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package org.plos.crepo.transport;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.plos.crepo.exceptions.NotFoundException;
+import org.plos.crepo.model.identity.RepoVersion;
+import org.plos.crepo.model.identity.RepoVersionNumber;
+import org.plos.crepo.model.input.RepoCollectionInput;
+import org.plos.crepo.model.input.RepoObjectInput;
+import org.plos.crepo.model.metadata.RepoCollectionList;
+import org.plos.crepo.model.metadata.RepoObjectMetadata;
+import org.plos.crepo.service.ContentRepoService;
+import org.plos.crepo.service.ContentRepoServiceImpl;
+import org.plos.crepo.util.EmbeddedRepoServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.plos.crepo.util.EmbeddedRepoServer.BUCKET_NAME;
+import static org.plos.crepo.util.EmbeddedRepoServer.UUID_VALUE;
+import static org.plos.crepo.util.EmbeddedRepoServer.respond;
+
+/**
+ * Runs the service over a {@link RepoTransport}. Subclasses run the same tests over other transports.
+ */
+public class TransportClientFunctionTest {
+
+  private static final String OBJECT_JSON = "{\"key\":\"key\",\"uuid\":\"" + UUID_VALUE + "\",\"versionNumber\":0}";
+
+  @Rule
+  public EmbeddedRepoServer server = new EmbeddedRepoServer();
+
+  private RepoTransport transport;
+  private ContentRepoService service;
+  private byte[] content;
+
+  private volatile String uploadContentType;
+  private volatile byte[] upload;
+
+  protected RepoTransport createTransport() {
+    return new ApacheRepoTransport(HttpClients.createDefault());
+  }
+
+  @Before
+  public void setUp() {
+    content = new byte[256 * 1024];
+    new Random(0).nextBytes(content);
+
+    server.handle("/objects/meta/" + BUCKET_NAME, exchange -> {
+      if (exchange.getRequestURI().getQuery().contains("key=missing")) {
+        respond(exchange, 404, "{\"message\":\"Object not found\"}");
+      } else {
+        respond(exchange, 200, OBJECT_JSON);
+      }
+    });
+    server.handle("/objects/" + BUCKET_NAME, exchange -> respond(exchange, 200, content));
+    server.handle("/objects", exchange -> {
+      receive(exchange);
+      respond(exchange, 201, OBJECT_JSON);
+    });
+    server.handle("/collections", exchange -> {
+      receive(exchange);
+      respond(exchange, 201, "{\"key\":\"collection\",\"uuid\":\"" + UUID_VALUE + "\",\"versionNumber\":0," +
+          "\"objects\":[" + OBJECT_JSON + "]}");
+    });
+
+    transport = createTransport();
+    service = new ContentRepoServiceImpl(server.getUrl(), new TransportClientFunction(transport));
+  }
+
+  private void receive(HttpExchange exchange) throws IOException {
+    uploadContentType = exchange.getRequestHeaders().getFirst("Content-Type");
+    upload = ByteStreams.toByteArray(exchange.getRequestBody());
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    transport.close();
+  }
+
+  @Test
+  public void testGetMetadata() {
+    RepoObjectMetadata metadata = service.getRepoObjectMetadata(RepoVersionNumber.create(BUCKET_NAME, "key", 0));
+    assertEquals(RepoVersion.create(BUCKET_NAME, "key", UUID_VALUE), metadata.getVersion());
+  }
+
+  @Test
+  public void testNotFound() {
+    try {
+      service.getRepoObjectMetadata(RepoVersionNumber.create(BUCKET_NAME, "missing", 0));
+      fail("Expected exception");
+    } catch (NotFoundException e) {
+      assertEquals("Object not found", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testStreamContent() throws IOException {
+    for (int i = 0; i < 3; i++) {
+      try (InputStream stream = service.getRepoObject(RepoVersion.create(BUCKET_NAME, "key", UUID_VALUE))) {
+        assertArrayEquals(content, ByteStreams.toByteArray(stream));
+      }
+    }
+  }
+
+  @Test
+  public void testUploadObject() {
+    RepoObjectMetadata metadata = service.createRepoObject(RepoObjectInput.builder(BUCKET_NAME, "key")
+        .setContentType("text/plain").setByteContent(content).build());
+    assertEquals(UUID_VALUE, metadata.getVersion().getUuid());
+
+    assertTrue(uploadContentType.startsWith("multipart/form-data"));
+    String body = new String(upload, Charsets.ISO_8859_1);
+    assertTrue(body.contains(new String(content, Charsets.ISO_8859_1)));
+  }
+
+  @Test
+  public void testUploadCollection() {
+    RepoCollectionList collection = service.createCollection(RepoCollectionInput.builder(BUCKET_NAME, "collection")
+        .setObjects(ImmutableList.of(RepoVersion.create(BUCKET_NAME, "key", UUID_VALUE))).build());
+    assertEquals(1, collection.getObjectCount());
+
+    assertTrue(uploadContentType.startsWith("application/json"));
+    assertTrue(new String(upload, Charsets.UTF_8).contains(UUID_VALUE.toString()));
+  }
+
+}
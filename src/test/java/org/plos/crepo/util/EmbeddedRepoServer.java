@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.util;
+
+import com.google.common.base.Charsets;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.rules.ExternalResource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An embedded HTTP server that stands in for the content repo in tests that go over a real socket. It listens on a free
+ * local port for the duration of each test; tests add a handler per path with {@link #handle}.
+ */
+public class EmbeddedRepoServer extends ExternalResource {
+
+  public static final String BUCKET_NAME = "bucketName";
+  public static final UUID UUID_VALUE = UUID.fromString("31a6f1cd-ef28-49fa-b811-f881ac4811f5");
+
+  private final boolean threaded;
+  private HttpServer server;
+  private ExecutorService executor;
+
+  /**
+   * Creates a server that handles one exchange at a time.
+   */
+  public EmbeddedRepoServer() {
+    this(false);
+  }
+
+  private EmbeddedRepoServer(boolean threaded) {
+    this.threaded = threaded;
+  }
+
+  /**
+   * @return a server that handles each exchange on its own thread, so that slow handlers do not hold up other requests
+   */
+  public static EmbeddedRepoServer threaded() {
+    return new EmbeddedRepoServer(true);
+  }
+
+  @Override
+  protected void before() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    if (threaded) {
+      executor = Executors.newCachedThreadPool();
+      server.setExecutor(executor);
+    }
+    server.start();
+  }
+
+  @Override
+  protected void after() {
+    server.stop(0);
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  public void handle(String path, HttpHandler handler) {
+    server.createContext(path, handler);
+  }
+
+  /**
+   * @return the address to give a service as its repo server
+   */
+  public String getUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  public static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    respond(exchange, status, body.getBytes(Charsets.UTF_8));
+  }
+
+  /**
+   * Sends a complete response, labelled as JSON, and closes the exchange.
+   */
+  public static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.util;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.entity.BasicHttpEntity;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ResponseContentStreamTest {
+
+  /**
+   * Content that records how much of it was consumed and whether it was closed.
+   */
+  private static class TrackedContent extends ByteArrayInputStream {
+    private boolean closed;
+
+    private TrackedContent(int length) {
+      super(new byte[length]);
+      for (int i = 0; i < length; i++) {
+        buf[i] = (byte) i;
+      }
+    }
+
+    private int consumed() {
+      return pos;
+    }
+
+    private byte[] bytes() {
+      return buf.clone();
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+  private static CloseableHttpResponse mockResponse(InputStream content, long contentLength) {
+    BasicHttpEntity entity = new BasicHttpEntity();
+    entity.setContent(content);
+    entity.setContentLength(contentLength);
+    CloseableHttpResponse response = mock(CloseableHttpResponse.class);
+    when(response.getEntity()).thenReturn(entity);
+    return response;
+  }
+
+  @Test
+  public void testReleaseOnEof() throws IOException {
+    TrackedContent content = new TrackedContent(300);
+    CloseableHttpResponse response = mockResponse(content, 300);
+
+    ResponseContentStream stream = ResponseContentStream.open(response);
+    byte[] read = new byte[300];
+    assertEquals(300, stream.read(read, 0, 300));
+    assertArrayEquals(content.bytes(), read);
+    verify(response, never()).close();
+
+    assertEquals(-1, stream.read());
+    assertTrue(content.closed);
+    verify(response).close();
+
+    assertEquals(-1, stream.read());
+    stream.close();
+    verify(response).close();
+  }
+
+  @Test
+  public void testDrainSmallRemainder() throws IOException {
+    TrackedContent content = new TrackedContent(1000);
+    CloseableHttpResponse response = mockResponse(content, 1000);
+
+    ResponseContentStream stream = ResponseContentStream.open(response, 1024);
+    assertEquals(0, stream.read());
+    stream.close();
+    assertEquals(1000, content.consumed());
+    assertTrue(content.closed);
+    verify(response).close();
+
+    try {
+      stream.read();
+      fail("Expected read after close to fail");
+    } catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void testAbortLargeRemainder() throws IOException {
+    TrackedContent content = new TrackedContent(10000);
+    CloseableHttpResponse response = mockResponse(content, 10000);
+
+    ResponseContentStream stream = ResponseContentStream.open(response, 1024);
+    assertEquals(100, stream.read(new byte[100]));
+    stream.close();
+    assertEquals(100, content.consumed());
+    assertFalse(content.closed);
+    verify(response).close();
+  }
+
+  @Test
+  public void testAbortUnknownLength() throws IOException {
+    TrackedContent content = new TrackedContent(10000);
+    CloseableHttpResponse response = mockResponse(content, -1);
+
+    ResponseContentStream.open(response, 1024).close();
+    assertTrue(content.consumed() <= 1024 + 8192);
+    assertFalse(content.closed);
+    verify(response).close();
+
+    TrackedContent shortContent = new TrackedContent(500);
+    CloseableHttpResponse shortResponse = mockResponse(shortContent, -1);
+    ResponseContentStream.open(shortResponse, 1024).close();
+    assertTrue(shortContent.closed);
+    verify(shortResponse).close();
+  }
+
+  @Test
+  public void testOpenFailureClosesResponse() throws IOException {
+    CloseableHttpResponse response = mock(CloseableHttpResponse.class);
+    try {
+      ResponseContentStream.open(response); // no entity
+      fail("Expected opening without an entity to fail");
+    } catch (NullPointerException expected) {
+    }
+    verify(response).close();
+  }
+
+}
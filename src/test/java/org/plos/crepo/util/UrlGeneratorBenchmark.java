@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.util;
+
+import org.apache.commons.lang3.text.StrSubstitutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares URL generation against the map-and-{@link StrSubstitutor} approach it replaced. Run with
+ * <pre>
+ *   mvn test-compile exec:java -Dexec.mainClass=org.plos.crepo.util.UrlGeneratorBenchmark -Dexec.classpathScope=test
+ * </pre>
+ * The GC profiler's <code>gc.alloc.rate.norm</code> column gives the bytes allocated per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlGeneratorBenchmark {
+
+  private static final String TEMPLATE = "${repoServer}/objects/meta/${bucketName}?key=${objectKey}&version=${versionNumber}";
+
+  private final String repoServer = "http://localhost:8080/repo";
+  private final String bucketName = "corpus";
+  private final String key = "10.1371/journal.pone.0123456.g001.PNG_M";
+  private final int versionNumber = 4;
+
+  @Benchmark
+  public String substitutor() {
+    Map<String, String> values = new HashMap<>();
+    values.put("repoServer", repoServer);
+    values.put("bucketName", bucketName);
+    values.put("objectKey", key);
+    values.put("versionNumber", String.valueOf(versionNumber));
+    return new StrSubstitutor(values).replace(TEMPLATE);
+  }
+
+  @Benchmark
+  public String template() {
+    return ObjectUrlGenerator.getObjectMetaUsingVersionNumUrl(repoServer, bucketName, key, versionNumber);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(UrlGeneratorBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build()).run();
+  }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 Public Library of Science
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.plos.crepo.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class UrlGeneratorTest {
+
+  private static final String REPO_SERVER = "http://localhost:8080/repo";
+
+  @Test
+  public void testRender() {
+    assertEquals(REPO_SERVER + "/objects", ObjectUrlGenerator.getCreateObjectUrl(REPO_SERVER));
+    assertEquals(REPO_SERVER + "/buckets/bucket", BucketUrlGenerator.getBucketUrl(REPO_SERVER, "bucket"));
+    assertEquals(REPO_SERVER + "/status", ConfigUrlGenerator.getRepoStatusUrl(REPO_SERVER));
+    assertEquals(REPO_SERVER + "/objects/meta/bucket?key=key&version=3",
+        ObjectUrlGenerator.getObjectMetaUsingVersionNumUrl(REPO_SERVER, "bucket", "key", 3));
+    assertEquals(REPO_SERVER + "/collections?bucketName=bucket&offset=10&limit=20&includeDeleted=true&tag=final",
+        CollectionUrlGenerator.getCollectionsUsingTagUrl(REPO_SERVER, "bucket", 10, 20, true, "final"));
+  }
+
+  @Test
+  public void testEncoding() {
+    assertEquals(REPO_SERVER + "/objects/bucket?key=10.1371%2Fjournal.pone.0001%20a%26b%3Dc%2B&uuid=u",
+        ObjectUrlGenerator.getObjectUsingUuidUrl(REPO_SERVER, "bucket", "10.1371/journal.pone.0001 a&b=c+", "u"));
+    assertEquals(REPO_SERVER + "/collections/my%20bucket?key=k&tag=%C3%A9t%C3%A9~%E2%98%83",
+        CollectionUrlGenerator.getCollectionTagUrl(REPO_SERVER, "my bucket", "k", "\u00e9t\u00e9~\u2603"));
+  }
+
+  @Test
+  public void testCompile() {
+    UrlTemplate template = UrlTemplate.compile("${a}/x/${b}").extend("?c=${c}&d");
+    assertEquals("a/x/b%2F?c=null&d", template.render("a", "b/", null));
+    assertEquals("plain", UrlTemplate.compile("plain").render());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongArity() {
+    UrlTemplate.compile("${a}/${b}").render("a");
+  }
+
+}